@@ -0,0 +1,46 @@
+package benchmarks;
+
+import enums.BookCategory;
+import models.Book;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * 基准测试数据与输出控制
+ * 管理器在增删、借还时会输出提示信息，测量期间把System.out重定向到空输出，
+ * 避免控制台输出成为被测量的主要开销
+ */
+final class BenchmarkData {
+    // 标题词汇：中文书名 + 英文单词，覆盖两种分词路径
+    private static final String[] CJK_WORDS = {"三体", "活着", "算法", "设计", "模式", "编程", "思想", "数据", "结构", "网络"};
+    private static final String[] LATIN_WORDS = {"Java", "Python", "Systems", "Design", "Patterns", "Algorithms", "Data", "Network"};
+    private static final BookCategory[] CATEGORIES = BookCategory.values();
+
+    private static final PrintStream ORIGINAL_OUT = System.out;
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成第i本测试图书（ID、标题、作者、分类均由i确定，便于复现）
+     */
+    static Book book(int i) {
+        String title = CJK_WORDS[i % CJK_WORDS.length] + CJK_WORDS[(i / 10) % CJK_WORDS.length]
+                + " " + LATIN_WORDS[i % LATIN_WORDS.length] + " " + i;
+        return new Book(bookId(i), title, "作者" + (i % 5000), "978-7-" + i, CATEGORIES[i % CATEGORIES.length]);
+    }
+
+    static String bookId(int i) {
+        return "K" + i;
+    }
+
+    static void silence() {
+        System.setOut(NULL_OUT);
+    }
+
+    static void restore() {
+        System.setOut(ORIGINAL_OUT);
+    }
+}
@@ -0,0 +1,130 @@
+package benchmarks;
+
+import enums.BookCategory;
+import models.Book;
+import models.Teacher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import services.LibraryService;
+import utils.EpochDays;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图书管理器热点路径基准测试
+ * 数组版(array)、集合版(collection)、线程安全版(concurrent)在相同目录规模下逐项对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BookManagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"array", "collection", "concurrent"})
+    public String implementation;
+
+    // 借阅者在借图书数量（"我的借阅"查询）
+    private static final int LOANS_PER_USER = 10;
+
+    private CatalogAdapter catalog;
+    private LibraryService libraryService;
+    private Teacher borrower;
+    private Teacher cycleUser;
+    private int cursor;
+    private int nextNewId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkData.silence();
+        catalog = CatalogAdapter.create(implementation);
+        for (int i = 0; i < catalogSize; i++) {
+            catalog.addBook(BenchmarkData.book(i));
+        }
+
+        libraryService = new LibraryService();
+        borrower = new Teacher("BENCH-T1", "基准教师", "TEA-B1");
+        borrower.setMaxBorrowLimit(Integer.MAX_VALUE);
+        cycleUser = new Teacher("BENCH-T2", "基准教师2", "TEA-B2");
+        cycleUser.setMaxBorrowLimit(Integer.MAX_VALUE);
+
+        // 让约一成的图书处于借出状态，并给borrower固定数量的借阅
+        for (int i = 0; i < catalogSize; i += 10) {
+            Book book = catalog.findBookById(BenchmarkData.bookId(i));
+            Teacher user = i < LOANS_PER_USER * 10 ? borrower : cycleUser;
+            libraryService.borrowBook(user, book, EpochDays.today());
+        }
+        nextNewId = catalogSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.restore();
+    }
+
+    /**
+     * 轮流选取下一本图书的序号
+     */
+    private int nextIndex() {
+        int i = cursor++;
+        if (cursor >= catalogSize) {
+            cursor = 0;
+        }
+        return i;
+    }
+
+    @Benchmark
+    public Book findBookById() {
+        return catalog.findBookById(BenchmarkData.bookId(nextIndex()));
+    }
+
+    /**
+     * 添加一本新书后立即删除，保持目录规模不变
+     */
+    @Benchmark
+    public boolean addThenDeleteBook() {
+        String id = "NEW" + nextNewId++;
+        catalog.addBook(new Book(id, "新书", "作者", "978-0-0", BookCategory.GENERAL));
+        return catalog.deleteBook(id);
+    }
+
+    @Benchmark
+    public int getAvailableBooks() {
+        return catalog.availableBooks();
+    }
+
+    @Benchmark
+    public int getBooksBorrowedByUser() {
+        return catalog.booksBorrowedByUser(borrower.getId());
+    }
+
+    /**
+     * 借出并归还同一本图书（经过事务服务，包含所有索引维护）
+     */
+    @Benchmark
+    public boolean borrowReturnCycle() throws Exception {
+        Book book = catalog.findBookById(BenchmarkData.bookId(nextIndex()));
+        if (!book.isAvailable()) {
+            return false;
+        }
+        int today = EpochDays.today();
+        libraryService.borrowBook(cycleUser, book, today);
+        libraryService.returnBook(cycleUser, book, today);
+        return true;
+    }
+}
@@ -0,0 +1,140 @@
+package benchmarks;
+
+import managers.BookManager;
+import managers.BookManagerEnhanced;
+import managers.BookManagerV2;
+import models.Book;
+
+/**
+ * 图书管理器适配接口
+ * 数组版、集合版、线程安全版管理器的返回类型不同，
+ * 基准测试通过该接口以相同的方式调用它们，便于横向对比
+ */
+interface CatalogAdapter {
+    boolean addBook(Book book);
+
+    boolean deleteBook(String bookId);
+
+    Book findBookById(String bookId);
+
+    /**
+     * @return 可借图书数量（强制物化结果）
+     */
+    int availableBooks();
+
+    /**
+     * @return 该用户在借图书数量（强制物化结果）
+     */
+    int booksBorrowedByUser(String userId);
+
+    /**
+     * 根据实现名称创建适配器
+     * @param implementation array / collection / concurrent
+     * @return 适配器
+     */
+    static CatalogAdapter create(String implementation) {
+        switch (implementation) {
+            case "array":
+                return new ArrayCatalog(new BookManager());
+            case "collection":
+                return new CollectionCatalog(new BookManagerEnhanced());
+            case "concurrent":
+                return new ConcurrentCatalog(new BookManagerV2());
+            default:
+                throw new IllegalArgumentException("未知的实现: " + implementation);
+        }
+    }
+
+    /**
+     * 数组版（BookManager）
+     */
+    final class ArrayCatalog implements CatalogAdapter {
+        private final BookManager manager;
+
+        ArrayCatalog(BookManager manager) {
+            this.manager = manager;
+        }
+
+        public boolean addBook(Book book) {
+            return manager.addBook(book);
+        }
+
+        public boolean deleteBook(String bookId) {
+            return manager.deleteBook(bookId);
+        }
+
+        public Book findBookById(String bookId) {
+            return manager.findBookById(bookId);
+        }
+
+        public int availableBooks() {
+            return manager.getAvailableBooks().length;
+        }
+
+        public int booksBorrowedByUser(String userId) {
+            return manager.getBooksByUser(userId).length;
+        }
+    }
+
+    /**
+     * 集合版（BookManagerEnhanced）
+     */
+    final class CollectionCatalog implements CatalogAdapter {
+        private final BookManagerEnhanced manager;
+
+        CollectionCatalog(BookManagerEnhanced manager) {
+            this.manager = manager;
+        }
+
+        public boolean addBook(Book book) {
+            return manager.addBook(book);
+        }
+
+        public boolean deleteBook(String bookId) {
+            return manager.deleteBook(bookId);
+        }
+
+        public Book findBookById(String bookId) {
+            return manager.findBookById(bookId);
+        }
+
+        public int availableBooks() {
+            return manager.getAvailableBooks().size();
+        }
+
+        public int booksBorrowedByUser(String userId) {
+            return manager.getBooksBorrowedByUser(userId).size();
+        }
+    }
+
+    /**
+     * 线程安全版（BookManagerV2）
+     */
+    final class ConcurrentCatalog implements CatalogAdapter {
+        private final BookManagerV2 manager;
+
+        ConcurrentCatalog(BookManagerV2 manager) {
+            this.manager = manager;
+        }
+
+        public boolean addBook(Book book) {
+            return manager.addBook(book);
+        }
+
+        public boolean deleteBook(String bookId) {
+            return manager.deleteBook(bookId);
+        }
+
+        public Book findBookById(String bookId) {
+            return manager.findBookById(bookId);
+        }
+
+        public int availableBooks() {
+            return manager.getAvailableBooks().size();
+        }
+
+        public int booksBorrowedByUser(String userId) {
+            return manager.getBooksBorrowedByUser(userId).size();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import managers.BookManagerEnhanced;
+import managers.BookManagerV2;
+import models.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 标题搜索基准测试
+ * 数组版管理器没有搜索功能，这里对比集合版（倒排索引）与线程安全版（线性扫描）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"collection", "concurrent"})
+    public String implementation;
+
+    // 中文二元词、英文单词前缀、精确到单本书的组合查询
+    @Param({"三体", "java", "算法 Data 42"})
+    public String keyword;
+
+    private BookManagerEnhanced collection;
+    private BookManagerV2 concurrent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silence();
+        if ("collection".equals(implementation)) {
+            collection = new BookManagerEnhanced();
+            for (int i = 0; i < catalogSize; i++) {
+                collection.addBook(BenchmarkData.book(i));
+            }
+        } else {
+            concurrent = new BookManagerV2();
+            for (int i = 0; i < catalogSize; i++) {
+                concurrent.addBook(BenchmarkData.book(i));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.restore();
+    }
+
+    @Benchmark
+    public List<Book> searchByTitle() {
+        return collection != null ? collection.searchByTitle(keyword) : concurrent.searchByTitle(keyword);
+    }
+}
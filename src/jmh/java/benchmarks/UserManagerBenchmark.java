@@ -0,0 +1,73 @@
+package benchmarks;
+
+import managers.UserManagerEnhanced;
+import models.Student;
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户管理器基准测试
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class UserManagerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    private UserManagerEnhanced userManager;
+    private int cursor;
+    private int nextNewId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.silence();
+        userManager = new UserManagerEnhanced();
+        for (int i = 0; i < userCount; i++) {
+            userManager.addUser(new Student("U" + i, "学生" + i, "STU" + i));
+        }
+        nextNewId = userCount;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.restore();
+    }
+
+    @Benchmark
+    public User findUserById() {
+        int i = cursor++;
+        if (cursor >= userCount) {
+            cursor = 0;
+        }
+        return userManager.findUserById("U" + i);
+    }
+
+    /**
+     * 添加一个新用户后立即删除，保持用户规模不变
+     */
+    @Benchmark
+    public boolean addThenDeleteUser() {
+        String id = "NEW" + nextNewId++;
+        userManager.addUser(new Student(id, "新同学", "STU-NEW"));
+        return userManager.deleteUser(id);
+    }
+}
@@ -1,4 +1,392 @@
 package cache;
 
+import models.Book;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 图书读穿透缓存
+ * 有界LRU缓存 + TinyLFU准入策略：缓存满时，只有访问频率高于淘汰候选者的新图书才会被放入，
+ * 避免一次性的冷门查询把热门图书挤出缓存
+ * 未命中时通过加载函数从堆外数据源读取图书（如MappedCatalog.newBookCache()以映射的目录快照为数据源），
+ * 缓存只在堆上保留有限条目，被淘汰的图书对象可以被回收；
+ * 数据已全部在堆上的管理器（如BookManagerEnhanced的槽位容器）直接按ID查找即可，不需要再加一层缓存
+ *
+ * 并发：读取不加锁——数据存放在ConcurrentHashMap中，命中只做一次查找，
+ * 访问记录写入按线程分条的有损环形缓冲区；LRU顺序和频率估计器由策略锁保护，
+ * 缓冲区积累到一定数量时由抢到锁的线程批量重放（tryLock，抢不到的线程直接返回）。
+ * 缓冲区满时丢弃访问记录，只影响淘汰顺序的精度，不影响读取结果
+ */
 public class BookCache {
+    // 默认最大缓存条目数
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    // 读缓冲区条数（2的幂）、每条容量（2的幂）和触发重放的积压数
+    private static final int READ_BUFFER_STRIPES = 16;
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    // 数据：读取路径只访问这里
+    private final ConcurrentHashMap<String, Book> data = new ConcurrentHashMap<>();
+
+    // 以下策略结构受policyLock保护
+    private final ReentrantLock policyLock = new ReentrantLock();
+    // LRU顺序：accessOrder=true，最久未访问的条目位于链表头部（与data中的键一致）
+    private final LinkedHashMap<String, Book> accessOrder;
+    // 访问频率估计器
+    private final FrequencySketch sketch;
+
+    // 按线程分条的访问记录缓冲区
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+
+    // 失效次数：未命中加载期间若发生失效，加载结果可能已过期，不放入缓存
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // 未命中时的加载函数
+    private final Function<String, Book> loader;
+
+    // 最大条目数
+    private final int maxEntries;
+
+    // 统计信息
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+
+    /**
+     * 构造方法（使用默认容量）
+     * @param loader 未命中时的加载函数，返回null表示图书不存在
+     */
+    public BookCache(Function<String, Book> loader) {
+        this(DEFAULT_MAX_ENTRIES, loader);
+    }
+
+    /**
+     * 构造方法
+     * @param maxEntries 最大缓存条目数
+     * @param loader 未命中时的加载函数，返回null表示图书不存在
+     */
+    public BookCache(int maxEntries, Function<String, Book> loader) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.loader = loader;
+        this.accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(maxEntries);
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * 读取图书：命中直接返回，未命中通过加载函数读取并按准入策略决定是否缓存
+     * 命中路径不加锁
+     * @param bookId 图书ID
+     * @return 图书对象，不存在返回null
+     */
+    public Book get(String bookId) {
+        Book book = data.get(bookId);
+        recordAccess(bookId);
+        if (book != null) {
+            hitCount.increment();
+            return book;
+        }
+
+        missCount.increment();
+        long stamp = invalidations.get();
+        book = loader.apply(bookId);
+        if (book != null) {
+            policyLock.lock();
+            try {
+                drainReadBuffers();
+                // 加载期间发生过失效则不缓存（可能是刚被删除的图书）
+                if (invalidations.get() == stamp && !data.containsKey(bookId)) {
+                    admit(bookId, book);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return book;
+    }
+
+    /**
+     * 使缓存中的图书失效（图书被删除或替换时调用）
+     * @param bookId 图书ID
+     */
+    public void invalidate(String bookId) {
+        invalidations.incrementAndGet();
+        policyLock.lock();
+        try {
+            data.remove(bookId);
+            accessOrder.remove(bookId);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * 清空缓存（统计信息保留）
+     */
+    public void clear() {
+        invalidations.incrementAndGet();
+        policyLock.lock();
+        try {
+            drainReadBuffers();
+            data.clear();
+            accessOrder.clear();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次访问（内部方法）
+     * 写入当前线程所在分条的缓冲区，积压较多时尝试重放；缓冲区满时丢弃本次记录
+     */
+    private void recordAccess(String bookId) {
+        ReadBuffer buffer = readBuffers[spreadThread() & (READ_BUFFER_STRIPES - 1)];
+        long pendingCount = buffer.offer(bookId);
+        if (pendingCount >= READ_BUFFER_DRAIN_THRESHOLD && policyLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 重放所有缓冲区中的访问记录：更新频率估计和LRU顺序（调用方持有policyLock）
+     */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            String key;
+            while ((key = buffer.poll()) != null) {
+                sketch.increment(key);
+                accessOrder.get(key);
+            }
+        }
+    }
+
+    /**
+     * 按准入策略放入缓存（调用方持有policyLock）
+     * 缓存未满直接放入；已满时与LRU队首的候选淘汰者比较访问频率
+     */
+    private void admit(String bookId, Book book) {
+        if (accessOrder.size() < maxEntries) {
+            accessOrder.put(bookId, book);
+            data.put(bookId, book);
+            return;
+        }
+
+        Iterator<Map.Entry<String, Book>> it = accessOrder.entrySet().iterator();
+        Map.Entry<String, Book> victim = it.next();
+        if (sketch.frequency(bookId) > sketch.frequency(victim.getKey())) {
+            data.remove(victim.getKey());
+            it.remove();
+            evictionCount.increment();
+            accessOrder.put(bookId, book);
+            data.put(bookId, book);
+        } else {
+            rejectionCount.increment();
+        }
+    }
+
+    /**
+     * 当前线程的分条下标（内部方法）
+     */
+    private static int spreadThread() {
+        int h = System.identityHashCode(Thread.currentThread());
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 获取当前缓存条目数
+     * @return 条目数
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * 获取最大缓存条目数
+     * @return 最大条目数
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejectionCount.sum();
+    }
+
+    /**
+     * 获取命中率
+     * @return 命中率（0~1），尚无请求时返回0
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * 获取统计信息摘要
+     * @return 格式化的统计字符串
+     */
+    public String getStatistics() {
+        return String.format("缓存: %d/%d | 命中: %d | 未命中: %d | 命中率: %.1f%% | 淘汰: %d | 拒绝准入: %d",
+                data.size(), maxEntries, getHitCount(), getMissCount(),
+                getHitRate() * 100, getEvictionCount(), getRejectionCount());
+    }
+
+    /**
+     * 有损环形缓冲区（多个读线程写入，持有policyLock的线程读出）
+     * 写入时用CAS占位，缓冲区满时放弃写入
+     */
+    private static final class ReadBuffer {
+        private static final int MASK = READ_BUFFER_SIZE - 1;
+
+        private final AtomicReferenceArray<String> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writeIndex = new AtomicLong();
+        private volatile long readIndex;   // 只由持有policyLock的线程推进
+
+        /**
+         * 写入一条访问记录
+         * @return 写入后的积压数（写入失败时为当前积压数）
+         */
+        long offer(String key) {
+            long write = writeIndex.get();
+            long pendingCount = write - readIndex;
+            if (pendingCount >= READ_BUFFER_SIZE || !writeIndex.compareAndSet(write, write + 1)) {
+                return pendingCount;
+            }
+            slots.lazySet((int) (write & MASK), key);
+            return pendingCount + 1;
+        }
+
+        /**
+         * 读出一条访问记录（调用方持有policyLock）
+         * @return 访问的键，没有记录或写入方尚未完成写入时返回null
+         */
+        String poll() {
+            long read = readIndex;
+            if (read >= writeIndex.get()) {
+                return null;
+            }
+            int index = (int) (read & MASK);
+            String key = slots.get(index);
+            if (key == null) {
+                return null;
+            }
+            slots.lazySet(index, null);
+            readIndex = read + 1;
+            return key;
+        }
+    }
+
+    /**
+     * Count-Min Sketch 频率估计器（TinyLFU）
+     * 每个计数器4位，16个计数器打包在一个long中；
+     * 累计增量达到采样上限时所有计数器减半，使频率随时间衰减（只在持有policyLock时访问）
+     */
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int[] SEEDS = {0x97cb3127, 0xbbe1f3ab, 0xc4ceb9fe, 0x9e3779b9};
+
+        private final long[] table;
+        private final int tableMask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int size = Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1;
+            this.table = new long[size];
+            this.tableMask = size - 1;
+            this.sampleSize = 10 * maxEntries;
+        }
+
+        /**
+         * 估计键的访问频率（取4行中的最小值）
+         */
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(hash, row);
+                int offset = counterOffset(hash, row);
+                int count = (int) ((table[index] >>> offset) & 0xF);
+                min = Math.min(min, count);
+            }
+            return min;
+        }
+
+        /**
+         * 增加键的访问计数（计数器饱和于15）
+         */
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(hash, row);
+                int offset = counterOffset(hash, row);
+                if (((table[index] >>> offset) & 0xF) != 0xF) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /**
+         * 所有计数器减半（老化）
+         */
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions >>>= 1;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            return (h ^ (h >>> 16)) & tableMask;
+        }
+
+        private int counterOffset(int hash, int row) {
+            return (((hash >>> (row << 3)) & 3) + (row << 2)) << 2;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 17;
+            h *= 0xed5ad4bb;
+            h ^= h >>> 11;
+            return h;
+        }
+    }
 }
@@ -1,4 +1,426 @@
 package concurrent;
 
+import enums.BookCategory;
+import exception.LibraryException;
+import managers.BookManagerEnhanced;
+import managers.UserManagerEnhanced;
+import models.Book;
+import models.Student;
+import models.Teacher;
+import models.User;
+import services.LibraryService;
+import utils.EpochDays;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多线程借还压力测试
+ * 多个线程在限定时间内随机执行借书、还书、搜索操作，
+ * 统计吞吐量和各操作的延迟分布（p50/p99/p999），并检查数据一致性：
+ * 1. 图书状态：不可借的图书必须有借阅者，可借的图书不能有借阅者
+ * 2. 借阅计数：用户的borrowedCount必须等于实际借出给该用户的图书数
+ * 3. 管理器索引：可借列表、"我的借阅"列表必须与图书实际状态一致
+ *
+ * 用法：java concurrent.ConcurrentTest threads=16 seconds=10 books=10000 users=1000 borrow=45 return=45 virtual=false direct=false
+ * direct=true 时绕过LibraryService直接调用Book.borrow/User.borrowItem（无事务锁），用于验证检查器能发现竞态
+ */
 public class ConcurrentTest {
+    // ========== 测试参数 ==========
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int durationSeconds = 10;
+    private int bookCount = 10_000;
+    private int userCount = 1_000;
+    private int borrowPercent = 45;      // 借书操作占比
+    private int returnPercent = 45;      // 还书操作占比（其余为搜索）
+    private boolean virtualThreads = false;
+    private boolean direct = false;
+
+    // 搜索关键词
+    private static final String[] KEYWORDS = {"Java", "数据", "算法", "设计", "网络", "系统", "python", "结构"};
+    private static final String[] TITLE_WORDS = {"Java", "Python", "数据", "结构", "算法", "设计", "网络", "系统", "原理", "实践"};
+
+    // ========== 测试对象 ==========
+    private BookManagerEnhanced bookManager;
+    private UserManagerEnhanced userManager;
+    private LibraryService libraryService;
+    private List<Book> books;
+    private List<User> users;
+
+    // ========== 统计结果 ==========
+    private final LatencyHistogram borrowLatency = new LatencyHistogram();
+    private final LatencyHistogram returnLatency = new LatencyHistogram();
+    private final LatencyHistogram searchLatency = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();          // 业务拒绝（已借出、达上限等）
+    private final LongAdder errors = new LongAdder();            // 非预期异常
+    private final LongAdder liveViolations = new LongAdder();    // 运行期间抽查发现的图书状态不一致
+    private final List<String> violations = new ArrayList<>();   // 结束后检查发现的问题
+
+    public ConcurrentTest() {
+    }
+
+    // ========== 参数设置 ==========
+
+    public ConcurrentTest threads(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public ConcurrentTest seconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+        return this;
+    }
+
+    public ConcurrentTest books(int bookCount) {
+        this.bookCount = bookCount;
+        return this;
+    }
+
+    public ConcurrentTest users(int userCount) {
+        this.userCount = userCount;
+        return this;
+    }
+
+    /**
+     * 设置操作比例
+     * @param borrowPercent 借书占比（%）
+     * @param returnPercent 还书占比（%），剩余部分为搜索
+     */
+    public ConcurrentTest mix(int borrowPercent, int returnPercent) {
+        if (borrowPercent < 0 || returnPercent < 0 || borrowPercent + returnPercent > 100) {
+            throw new IllegalArgumentException("操作比例无效: borrow=" + borrowPercent + ", return=" + returnPercent);
+        }
+        this.borrowPercent = borrowPercent;
+        this.returnPercent = returnPercent;
+        return this;
+    }
+
+    public ConcurrentTest virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public ConcurrentTest direct(boolean direct) {
+        this.direct = direct;
+        return this;
+    }
+
+    // ========== 执行测试 ==========
+
+    /**
+     * 执行压力测试并输出报告
+     * @return true-没有发现一致性问题, false-发现问题或出现非预期异常
+     */
+    public boolean run() throws InterruptedException {
+        PrintStream console = System.out;
+        // 管理器在借还时会输出提示信息，测试期间屏蔽，避免控制台输出成为瓶颈
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long elapsedNanos;
+        try {
+            prepareData();
+            elapsedNanos = runWorkers();
+            checkFinalState();
+        } finally {
+            System.setOut(console);
+        }
+
+        printReport(elapsedNanos);
+        return violations.isEmpty() && liveViolations.sum() == 0 && errors.sum() == 0;
+    }
+
+    /**
+     * 准备测试数据（内部方法）
+     */
+    private void prepareData() {
+        bookManager = new BookManagerEnhanced(false);
+        userManager = new UserManagerEnhanced(false);
+        libraryService = new LibraryService();
+
+        BookCategory[] categories = BookCategory.values();
+        books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            String title = TITLE_WORDS[i % TITLE_WORDS.length] + TITLE_WORDS[(i / 7) % TITLE_WORDS.length] + " " + i;
+            Book book = new Book("LB" + i, title, "作者" + (i % 100), "ISBN-" + i, categories[i % categories.length]);
+            bookManager.addBook(book);
+            books.add(book);
+        }
+
+        users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            // 每5个用户中1个教师，其余为学生（学生借阅上限低，容易触发上限检查）
+            User user = i % 5 == 0
+                    ? new Teacher("LT" + i, "教师" + i, "TEA" + i)
+                    : new Student("LS" + i, "学生" + i, "STU" + i);
+            userManager.addUser(user);
+            users.add(user);
+        }
+    }
+
+    /**
+     * 启动工作线程并等待测试结束（内部方法）
+     * @return 实际运行时间（纳秒）
+     */
+    private long runWorkers() throws InterruptedException {
+        ExecutorService executor = createExecutor();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            futures.add(executor.submit(() -> work(deadline)));
+        }
+        // 额外的抽查线程：持图书锁检查单本图书状态
+        Thread checker = new Thread(() -> sampleBooks(deadline), "invariant-checker");
+        checker.setDaemon(true);
+        checker.start();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                errors.increment();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        checker.join();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return elapsed;
+    }
+
+    /**
+     * 创建线程池：虚拟线程或平台线程（内部方法）
+     */
+    private ExecutorService createExecutor() {
+        return virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threadCount);
+    }
+
+    /**
+     * 工作线程主循环（内部方法）
+     */
+    private void work(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int dice = random.nextInt(100);
+            try {
+                if (dice < borrowPercent) {
+                    doBorrow(random);
+                } else if (dice < borrowPercent + returnPercent) {
+                    doReturn(random);
+                } else {
+                    doSearch(random);
+                }
+            } catch (LibraryException e) {
+                rejected.increment();
+            } catch (RuntimeException e) {
+                errors.increment();
+            }
+        }
+    }
+
+    private void doBorrow(ThreadLocalRandom random) throws LibraryException {
+        User user = users.get(random.nextInt(users.size()));
+        String bookId = books.get(random.nextInt(books.size())).getId();
+        long start = System.nanoTime();
+        try {
+            Book book = bookManager.findBookById(bookId);
+            int today = EpochDays.today();
+            if (direct) {
+                // 不加事务锁：检查与修改之间可能被其他线程插入
+                if (!user.hasReachedBorrowLimit() && book.borrow(user, today)) {
+                    user.borrowItem();
+                } else {
+                    rejected.increment();
+                }
+            } else {
+                libraryService.borrowBook(user, book, today);
+            }
+        } finally {
+            borrowLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void doReturn(ThreadLocalRandom random) throws LibraryException {
+        User user = users.get(random.nextInt(users.size()));
+        long start = System.nanoTime();
+        try {
+            List<Book> loans = bookManager.getBooksBorrowedByUser(user.getId());
+            if (loans.isEmpty()) {
+                rejected.increment();
+                return;
+            }
+            Book book = loans.get(random.nextInt(loans.size()));
+            int today = EpochDays.today();
+            if (direct) {
+                if (book.returnItem(today)) {
+                    user.returnItem();
+                } else {
+                    rejected.increment();
+                }
+            } else {
+                libraryService.returnBook(user, book, today);
+            }
+        } finally {
+            returnLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void doSearch(ThreadLocalRandom random) {
+        String keyword = KEYWORDS[random.nextInt(KEYWORDS.length)];
+        long start = System.nanoTime();
+        bookManager.searchByTitle(keyword);
+        searchLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * 运行期间抽查图书状态（内部方法）
+     * 持有图书锁读取，因此看到的是借还操作之间的稳定状态
+     */
+    private void sampleBooks(long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Book book = books.get(random.nextInt(books.size()));
+            synchronized (book) {
+                if (checkBook(book) != null) {
+                    liveViolations.increment();
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 检查单本图书的状态一致性
+     * @return 问题描述，没有问题时返回null
+     */
+    private static String checkBook(Book book) {
+        if (!book.isAvailable() && book.getBorrowerId() == null) {
+            return "图书 " + book.getId() + " 不可借但没有借阅者";
+        }
+        if (book.isAvailable() && book.getBorrowerId() != null) {
+            return "图书 " + book.getId() + " 可借但仍记录借阅者 " + book.getBorrowerId();
+        }
+        return null;
+    }
+
+    /**
+     * 测试结束后（无并发修改时）做全量一致性检查（内部方法）
+     */
+    private void checkFinalState() {
+        Map<String, Integer> loansByUser = new HashMap<>();
+        int availableCount = 0;
+        for (Book book : books) {
+            String problem = checkBook(book);
+            if (problem != null) {
+                violations.add(problem);
+            }
+            if (book.isAvailable()) {
+                availableCount++;
+            } else if (book.getBorrowerId() != null) {
+                loansByUser.merge(book.getBorrowerId(), 1, Integer::sum);
+            }
+        }
+
+        for (User user : users) {
+            int actual = loansByUser.getOrDefault(user.getId(), 0);
+            if (user.getBorrowedCount() != actual) {
+                violations.add("用户 " + user.getId() + " 借阅计数为 " + user.getBorrowedCount() + "，实际借出 " + actual + " 本");
+            }
+            if (actual > user.getBorrowLimit()) {
+                violations.add("用户 " + user.getId() + " 借出 " + actual + " 本，超过上限 " + user.getBorrowLimit());
+            }
+            int indexed = bookManager.getBooksBorrowedByUser(user.getId()).size();
+            if (indexed != actual) {
+                violations.add("用户 " + user.getId() + " 的借阅索引有 " + indexed + " 本，实际借出 " + actual + " 本");
+            }
+        }
+
+        int indexedAvailable = bookManager.getAvailableBooks().size();
+        if (indexedAvailable != availableCount) {
+            violations.add("可借图书索引有 " + indexedAvailable + " 本，实际可借 " + availableCount + " 本");
+        }
+    }
+
+    /**
+     * 输出测试报告（内部方法）
+     */
+    private void printReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long operations = borrowLatency.getCount() + returnLatency.getCount() + searchLatency.getCount();
+
+        System.out.println("\n=== 并发借还压力测试报告 ===");
+        System.out.printf("线程: %d (%s)，运行: %.1f秒，图书: %d，用户: %d，模式: %s%n",
+                threadCount, virtualThreads ? "虚拟线程" : "平台线程", seconds, bookCount, userCount,
+                direct ? "直接调用（无事务锁）" : "LibraryService事务");
+        System.out.printf("总操作数: %d，吞吐量: %.0f 次/秒%n", operations, operations / seconds);
+        System.out.println("借书: " + borrowLatency.getSummary());
+        System.out.println("还书: " + returnLatency.getSummary());
+        System.out.println("搜索: " + searchLatency.getSummary());
+        System.out.println("业务拒绝: " + rejected.sum() + "，非预期异常: " + errors.sum());
+        System.out.println("运行期间抽查发现的问题: " + liveViolations.sum());
+        System.out.println("结束后检查发现的问题: " + violations.size());
+        for (int i = 0; i < Math.min(10, violations.size()); i++) {
+            System.out.println("  - " + violations.get(i));
+        }
+        if (violations.size() > 10) {
+            System.out.println("  ...（共 " + violations.size() + " 条）");
+        }
+    }
+
+    /**
+     * 命令行入口
+     * @param args key=value 形式的参数，见类注释
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentTest test = new ConcurrentTest();
+        int borrow = test.borrowPercent;
+        int giveBack = test.returnPercent;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("参数格式应为 key=value: " + arg);
+            }
+            switch (pair[0]) {
+                case "threads":
+                    test.threads(Integer.parseInt(pair[1]));
+                    break;
+                case "seconds":
+                    test.seconds(Integer.parseInt(pair[1]));
+                    break;
+                case "books":
+                    test.books(Integer.parseInt(pair[1]));
+                    break;
+                case "users":
+                    test.users(Integer.parseInt(pair[1]));
+                    break;
+                case "borrow":
+                    borrow = Integer.parseInt(pair[1]);
+                    break;
+                case "return":
+                    giveBack = Integer.parseInt(pair[1]);
+                    break;
+                case "virtual":
+                    test.virtualThreads(Boolean.parseBoolean(pair[1]));
+                    break;
+                case "direct":
+                    test.direct(Boolean.parseBoolean(pair[1]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + pair[0]);
+            }
+        }
+        test.mix(borrow, giveBack);
+        System.exit(test.run() ? 0 : 1);
+    }
 }
@@ -0,0 +1,161 @@
+package concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图（对数分桶，单位纳秒）
+ * 每个2的幂区间再等分为16个子桶，相对误差不超过1/16（约6%），
+ * 覆盖0到2^62纳秒，共约1000个桶，内存占用固定，记录操作只有一次原子自增
+ *
+ * 多个线程可以同时记录；读取分位数时不阻塞记录线程，结果是近似的实时快照
+ */
+public class LatencyHistogram {
+    // 每个2的幂区间的子桶数（2^SUB_BUCKET_BITS）
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 小于该值的延迟每个数值独占一个桶（精确记录）
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次延迟
+     * @param nanos 延迟（纳秒，负数按0处理）
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * 获取指定分位数的延迟（按桶上界估算，偏保守）
+     * @param percentile 分位数（0-100，如99.9）
+     * @return 延迟（纳秒），没有记录时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * 合并另一个直方图的记录（用于汇总各线程或各操作的结果）
+     * @param other 另一个直方图
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long value = other.buckets.get(i);
+            if (value != 0) {
+                buckets.addAndGet(i, value);
+            }
+        }
+        count.add(other.count.sum());
+        totalNanos.add(other.totalNanos.sum());
+        maxNanos.accumulateAndGet(other.maxNanos.get(), Math::max);
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 获取平均延迟
+     * @return 平均延迟（纳秒），没有记录时返回0
+     */
+    public double getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) totalNanos.sum() / n;
+    }
+
+    /**
+     * 获取统计摘要（微秒）
+     * @return 如 "count=1000, mean=12.3µs, p50=10.0µs, p99=45.0µs, p999=120.0µs, max=300.0µs"
+     */
+    public String getSummary() {
+        return String.format("count=%d, mean=%.1fµs, p50=%.1fµs, p99=%.1fµs, p999=%.1fµs, max=%.1fµs",
+                getCount(), getMeanNanos() / 1000.0,
+                getValueAtPercentile(50) / 1000.0,
+                getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0,
+                getMaxNanos() / 1000.0);
+    }
+
+    // ========== 分桶计算（内部方法） ==========
+
+    /**
+     * 计算延迟所在的桶下标
+     * 小于LINEAR_LIMIT的值直接作为下标；更大的值取最高位所在的2的幂区间，
+     * 再用最高位之后的SUB_BUCKET_BITS位确定子桶
+     */
+    private static int bucketIndex(long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        int top = (int) (nanos >>> shift);   // 范围 [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + (top - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * 计算桶覆盖的最大延迟
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int shift = offset / SUB_BUCKET_COUNT + 1;
+        long top = SUB_BUCKET_COUNT + offset % SUB_BUCKET_COUNT;
+        return ((top + 1) << shift) - 1;
+    }
+}
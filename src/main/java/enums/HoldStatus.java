@@ -0,0 +1,9 @@
+package enums;
+
+public enum HoldStatus {
+    WAITING,           // 排队中
+    READY,             // 已到书，等待取书
+    FULFILLED,         // 已取书
+    CANCELLED,         // 已取消
+    EXPIRED            // 超过取书期限
+}
@@ -0,0 +1,7 @@
+package enums;
+
+public enum UserType {
+    STUDENT,           // 学生
+    TEACHER,           // 教师
+    LIBRARIAN          // 管理员
+}
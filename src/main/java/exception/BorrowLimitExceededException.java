@@ -1,5 +1,7 @@
 package exception;
 
+import enums.BookCategory;
+
 /**
  * 借阅上限超出异常
  */
@@ -18,6 +20,19 @@ public class BorrowLimitExceededException extends LibraryException {
         this.limit = limit;
     }
 
+    /**
+     * 构造方法（同类图书在借上限）
+     * @param userId 用户ID
+     * @param category 图书分类（可为null）
+     * @param limit 该分类的在借上限
+     */
+    public BorrowLimitExceededException(String userId, BookCategory category, int limit) {
+        super("用户 " + userId + " 的" + (category == null ? "未分类" : category.name()) + "图书借阅数量已达上限（"
+                + limit + "本）", "LIB_2002", "BorrowService");
+        this.userId = userId;
+        this.limit = limit;
+    }
+
     /**
      * 获取用户ID
      * @return 用户ID
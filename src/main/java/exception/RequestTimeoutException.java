@@ -0,0 +1,26 @@
+package exception;
+
+/**
+ * 请求超时异常
+ * 请求在截止时间之前没有办理完成（包括排队等待并发名额的时间）
+ */
+public class RequestTimeoutException extends LibraryException {
+    private long timeoutMillis;
+
+    /**
+     * 构造方法
+     * @param timeoutMillis 超时时间（毫秒）
+     */
+    public RequestTimeoutException(long timeoutMillis) {
+        super("请求未能在 " + timeoutMillis + " 毫秒内完成", "LIB_5001", "LibraryService");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 获取超时时间
+     * @return 超时时间（毫秒）
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,15 @@
+package interfaces;
+
+import models.LibraryItem;
+    /**
+     *可借状态监听接口
+     *物品可借状态发生变化时回调，用于维护管理器中的可借位图
+     */
+public interface IAvailabilityListener {
+    /**
+     *可借状态已变化
+     *@paramitem状态变化的物品
+     *@paramavailable新的可借状态
+     */
+    void onAvailabilityChanged(LibraryItem item, boolean available);
+}
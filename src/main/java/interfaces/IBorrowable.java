@@ -13,6 +13,13 @@ public interface IBorrowable {
      *@return借阅是否成功
      */
     boolean borrow(User user, Date borrowDate);
+    /**
+     *借阅物品（日序号版本，不创建日期对象）
+     *@paramuser借阅用户
+     *@paramborrowEpochDay借阅日（自1970-01-01起的天数，见utils.EpochDays）
+     *@return借阅是否成功
+     */
+    boolean borrow(User user, int borrowEpochDay);
     /**
      *检查是否可以借阅
      *@paramuser借阅用户
@@ -24,6 +31,11 @@ public interface IBorrowable {
      *@return应归还日期
      */
     Date getDueDate();
+    /**
+     *获取应归还日（日序号）
+     *@return应归还日，未被借出时返回EpochDays.NONE
+     */
+    int getDueEpochDay();
     /**
      *获取借阅者ID
      *@return当前借阅者ID（如果未被借出则返回null）
@@ -0,0 +1,19 @@
+package interfaces;
+
+import models.Book;
+    /**
+     *借阅事件监听接口
+     *由图书在借出/归还时回调，用于维护管理器中的二级索引
+     */
+public interface ILoanListener {
+    /**
+     *图书已借出（借阅者、借阅日期、应还日期均已设置）
+     *@parambook被借出的图书
+     */
+    void onBorrowed(Book book);
+    /**
+     *图书即将归还（借阅信息尚未清除，可读取借阅者和应还日期）
+     *@parambook即将归还的图书
+     */
+    void onReturning(Book book);
+}
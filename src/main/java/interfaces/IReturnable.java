@@ -11,22 +11,46 @@ public interface IReturnable {
      *@return归还是否成功
      */
     boolean returnItem(Date returnDate);
+    /**
+     *归还物品（日序号版本）
+     *@paramreturnEpochDay归还日
+     *@return归还是否成功
+     */
+    boolean returnItem(int returnEpochDay);
     /**
                 *计算逾期罚款
     *@paramcurrentDate当前日期（计算到该日期的罚款）
                     *@return罚款金额，如果未逾期返回0
     */
     double calculateFine(Date currentDate);
+    /**
+     *计算逾期罚款（日序号版本）
+     *@paramcurrentEpochDay当前日
+     *@return罚款金额，如果未逾期返回0
+     */
+    double calculateFine(int currentEpochDay);
     /**
      *检查是否逾期
      *@paramcurrentDate当前日期
      *@return是否已逾期
      */
     boolean isOverdue(Date currentDate);
+    /**
+     *检查是否逾期（日序号版本）
+     *@paramcurrentEpochDay当前日
+     *@return是否已逾期
+     */
+    boolean isOverdue(int currentEpochDay);
     /**
      *获取逾期天数
      *@paramcurrentDate当前日期
      *@return逾期天数，如果未逾期返回0
      */
     int getOverdueDays(Date currentDate);
+    /**
+     *获取逾期天数（日序号版本）
+     *@paramcurrentEpochDay当前日
+     *@return逾期天数，如果未逾期返回0
+     */
+    int getOverdueDays(int currentEpochDay);
 }
\ No newline at end of file
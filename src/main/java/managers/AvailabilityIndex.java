@@ -0,0 +1,62 @@
+package managers;
+
+import java.util.BitSet;
+
+/**
+ * 可借状态位图索引
+ * 每个存储槽位对应一位：1表示可借，0表示已借出，并单独维护可借数量，
+ * 统计为O(1)，列出可借/已借图书时只遍历相应的位
+ * 方法均为同步方法，借还事件可能来自任意线程
+ */
+class AvailabilityIndex {
+    private final BitSet bits = new BitSet();
+    private int availableCount;
+
+    /**
+     * 设置槽位的可借状态
+     * @param slot 槽位号
+     * @param available 是否可借
+     */
+    synchronized void set(int slot, boolean available) {
+        if (bits.get(slot) != available) {
+            bits.set(slot, available);
+            availableCount += available ? 1 : -1;
+        }
+    }
+
+    /**
+     * 把槽位from的状态移动到槽位to，并清除from（配合"末尾填补空缺"式删除）
+     * @param from 原槽位
+     * @param to 目标槽位
+     */
+    synchronized void move(int from, int to) {
+        set(to, bits.get(from));
+        set(from, false);
+    }
+
+    /**
+     * 下一个可借槽位
+     * @param from 起始槽位（包含）
+     * @return 槽位号，没有则返回-1
+     */
+    synchronized int nextAvailable(int from) {
+        return bits.nextSetBit(from);
+    }
+
+    /**
+     * 下一个已借出槽位
+     * @param from 起始槽位（包含）
+     * @return 槽位号（可能等于或超过槽位总数，调用方需检查边界）
+     */
+    synchronized int nextBorrowed(int from) {
+        return bits.nextClearBit(from);
+    }
+
+    /**
+     * 获取可借数量
+     * @return 可借槽位数
+     */
+    synchronized int availableCount() {
+        return availableCount;
+    }
+}
@@ -1,32 +1,90 @@
 package managers;
 
+import interfaces.IAvailabilityListener;
 import models.Book;
 import enums.BookCategory;
+import services.LibraryStatistics;
+import utils.Isbn;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 /**
  * 图书管理类
  * 负责图书的增删改查、状态管理和统计功能
- * 使用数组存储图书数据，支持最多100本图书
+ * 使用可扩容数组存储图书数据，并通过开放寻址哈希索引实现ID到槽位的O(1)查找
  */
 public class BookManager {
 
-    // 图书数据存储数组
+    // 不限容量时的上限（数组长度的安全上限）
+    public static final int UNLIMITED = Integer.MAX_VALUE - 8;
+
+    // 初始数组容量
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 图书数据存储数组（容量不足时按1.5倍扩容）
     private Book[] books;
 
     // 当前图书数量
     private int bookCount;
 
-    // 最大图书容量（常量）
-    private final int MAX_BOOKS = 100;
+    // 最大图书容量（可配置，默认不限）
+    private final int maxBooks;
+
+    // ID到数组槽位的索引
+    private final IdSlotIndex bookSlotIndex;
+
+    // 书号到数组槽位的索引（扫码查书）
+    private final IsbnIndex isbnIndex;
+
+    // 借阅者二级索引（由图书借还事件维护）
+    private final BorrowerIndex borrowerIndex;
+
+    // 可借状态位图（按数组槽位，由图书的可借状态变化事件维护）
+    private final AvailabilityIndex availabilityIndex;
+
+    // 可借状态监听器：把图书状态变化同步到位图
+    private final IAvailabilityListener availabilityListener;
+
+    // 增量统计（增删图书、可借状态变化、借还事件时更新）
+    private final LibraryStatistics statistics;
 
     /**
-     * 图书管理器构造方法
+     * 图书管理器构造方法（不限容量）
      * 初始化数组并添加示例数据
      */
     public BookManager() {
-        books = new Book[MAX_BOOKS];  // 创建容量为100的图书数组
-        bookCount = 0;                // 初始图书数量为0
-        initSampleBooks();           // 初始化示例图书
+        this(UNLIMITED);
+    }
+
+    /**
+     * 图书管理器构造方法
+     * @param maxBooks 最大图书容量
+     */
+    public BookManager(int maxBooks) {
+        if (maxBooks <= 0 || maxBooks > UNLIMITED) {
+            throw new IllegalArgumentException("图书容量必须在1到" + UNLIMITED + "之间: " + maxBooks);
+        }
+        this.maxBooks = maxBooks;
+        books = new Book[Math.min(INITIAL_CAPACITY, maxBooks)];  // 按需扩容
+        bookCount = 0;                                            // 初始图书数量为0
+        // 监听器只捕获局部变量，不捕获this（注册到图书上时管理器尚未构造完成）
+        IdSlotIndex slots = new IdSlotIndex(INITIAL_CAPACITY);
+        AvailabilityIndex availability = new AvailabilityIndex();
+        LibraryStatistics stats = new LibraryStatistics();
+        bookSlotIndex = slots;
+        isbnIndex = new IsbnIndex(INITIAL_CAPACITY);
+        borrowerIndex = new BorrowerIndex();
+        availabilityIndex = availability;
+        statistics = stats;
+        availabilityListener = (item, available) -> {
+            int slot = slots.get(item.getId());
+            if (slot != IdSlotIndex.NOT_FOUND) {
+                availability.set(slot, available);
+                stats.availabilityChanged(item, available);
+            }
+        };
+        initSampleBooks();                                        // 初始化示例图书
     }
 
     /**
@@ -51,12 +109,12 @@ public class BookManager {
      * 添加图书
      * @param book 要添加的图书对象
      * @return 添加成功返回true，失败返回false
-     * 失败原因：1. 已达容量上限 2. 图书ID已存在
+     * 失败原因：1. 已达配置的容量上限 2. 图书ID已存在
      */
-    public boolean addBook(Book book) {
+    public final boolean addBook(Book book) {
         // 检查容量
-        if (bookCount >= MAX_BOOKS) {
-            System.out.println("错误：图书数量已达上限！");
+        if (bookCount >= maxBooks) {
+            System.out.println("错误：图书数量已达上限（" + maxBooks + "本）！");
             return false;
         }
 
@@ -66,9 +124,21 @@ public class BookManager {
             return false;
         }
 
-        // 添加图书到数组末尾
+        // 数组已满时扩容（均摊O(1)）
+        if (bookCount == books.length) {
+            grow();
+        }
+
+        // 添加图书到数组末尾并记录槽位
         books[bookCount] = book;
+        bookSlotIndex.put(book.getId(), bookCount);
+        isbnIndex.add(book, bookCount);
         bookCount++;
+        borrowerIndex.track(book);
+        book.addAvailabilityListener(availabilityListener);
+        availabilityIndex.set(bookCount - 1, book.isAvailable());
+        statistics.bookAdded(book);
+        book.addLoanListener(statistics);
         System.out.println("成功添加图书：" + book.getTitle());
         return true;
     }
@@ -77,22 +147,34 @@ public class BookManager {
      * 删除图书
      * @param bookId 要删除的图书ID
      * @return 删除成功返回true，失败返回false
-     * 注意：删除后需要移动数组元素以填补空缺
+     * 注意：删除时用最后一本图书填补空缺（O(1)），因此图书的存储顺序会改变
      */
     public boolean deleteBook(String bookId) {
-        int index = findBookIndexById(bookId);
-        if (index == -1) {
+        int index = bookSlotIndex.remove(bookId);
+        if (index == IdSlotIndex.NOT_FOUND) {
             System.out.println("错误：未找到 ID 为 " + bookId + " 的图书");
             return false;
         }
 
-        // 将后面的元素前移，填补空缺
-        for (int i = index; i < bookCount - 1; i++) {
-            books[i] = books[i + 1];
+        // 停止跟踪该图书的借阅状态
+        Book deleted = books[index];
+        borrowerIndex.untrack(deleted);
+        deleted.removeAvailabilityListener(availabilityListener);
+        deleted.removeLoanListener(statistics);
+        statistics.bookRemoved(deleted);
+        isbnIndex.remove(deleted, index);
+
+        // 将最后一本图书移到空缺位置，并更新其槽位和可借位
+        int last = bookCount - 1;
+        if (index != last) {
+            books[index] = books[last];
+            bookSlotIndex.put(books[index].getId(), index);
+            isbnIndex.move(books[index], last, index);
         }
+        availabilityIndex.move(last, index);
 
         // 清理最后一个元素并减少计数
-        books[bookCount - 1] = null;
+        books[last] = null;
         bookCount--;
         System.out.println("成功删除图书 ID：" + bookId);
         return true;
@@ -104,12 +186,16 @@ public class BookManager {
      * @return 找到返回索引，未找到返回-1
      */
     private int findBookIndexById(String bookId) {
-        for (int i = 0; i < bookCount; i++) {
-            if (books[i].getId().equals(bookId)) {
-                return i;
-            }
-        }
-        return -1;
+        return bookSlotIndex.get(bookId);
+    }
+
+    /**
+     * 数组扩容（内部方法）
+     * 按1.5倍增长，不超过配置的最大容量
+     */
+    private void grow() {
+        int newCapacity = (int) Math.min((long) books.length + (books.length >> 1) + 1, maxBooks);
+        books = Arrays.copyOf(books, newCapacity);
     }
 
     /**
@@ -122,69 +208,139 @@ public class BookManager {
         return index != -1 ? books[index] : null;
     }
 
+    /**
+     * 根据书号查找图书（扫码查书）
+     * 有效的ISBN/ISSN通过书号索引O(1)查找；书号无效时退回逐本比较原文
+     * @param isbn ISBN-13、ISBN-10、ISSN或EAN-13条码
+     * @return 找到返回图书对象（同书号有多本时返回其中一本），未找到返回null
+     */
+    public Book findBookByISBN(String isbn) {
+        long key = Isbn.toKey(isbn);
+        if (key != Isbn.INVALID) {
+            int slot = isbnIndex.get(key);
+            return slot != IsbnIndex.NOT_FOUND ? books[slot] : null;
+        }
+        for (int i = 0; i < bookCount; i++) {
+            if (Isbn.sameText(books[i].getISBN(), isbn)) {
+                return books[i];
+            }
+        }
+        return null;
+    }
+
     /**
      * 获取所有可借阅的图书
+     * 只遍历位图中的可借位，结果数组大小由可借计数直接确定
      * @return 可借阅图书数组（无null元素）
      */
     public Book[] getAvailableBooks() {
-        Book[] available = new Book[bookCount];
+        Book[] result = new Book[availabilityIndex.availableCount()];
         int count = 0;
-
-        // 筛选可借阅图书
-        for (int i = 0; i < bookCount; i++) {
-            if (books[i].isAvailable()) {
-                available[count++] = books[i];
-            }
+        for (int i = availabilityIndex.nextAvailable(0);
+             i >= 0 && i < bookCount && count < result.length;
+             i = availabilityIndex.nextAvailable(i + 1)) {
+            result[count++] = books[i];
         }
-
-        // 创建大小合适的数组返回
-        Book[] result = new Book[count];
-        System.arraycopy(available, 0, result, 0, count);
-        return result;
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
     /**
      * 获取所有已借出的图书
+     * 只遍历位图中的已借出位
      * @return 已借出图书数组（无null元素）
      */
     public Book[] getBorrowedBooks() {
-        Book[] borrowed = new Book[bookCount];
+        Book[] result = new Book[bookCount - availabilityIndex.availableCount()];
         int count = 0;
-
-        for (int i = 0; i < bookCount; i++) {
-            if (!books[i].isAvailable()) {
-                borrowed[count++] = books[i];
-            }
+        for (int i = availabilityIndex.nextBorrowed(0);
+             i < bookCount && count < result.length;
+             i = availabilityIndex.nextBorrowed(i + 1)) {
+            result[count++] = books[i];
         }
-
-        Book[] result = new Book[count];
-        System.arraycopy(borrowed, 0, result, 0, count);
-        return result;
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
     /**
      * 获取指定用户借阅的所有图书
      * @param userId 用户ID
-     * @return 该用户借阅的图书数组
-     * 注意：需要通过IBorrowable接口获取借阅者信息
+     * @return 该用户借阅的图书数组（按应还日期排序）
+     * 注意：通过借阅者索引查询，耗时只与该用户的借阅数量有关
      */
     public Book[] getBooksByUser(String userId) {
-        Book[] userBooks = new Book[bookCount];
-        int count = 0;
+        return borrowerIndex.getLoans(userId).toArray(new Book[0]);
+    }
 
-        for (int i = 0; i < bookCount; i++) {
-            if (!books[i].isAvailable()) {
-                // 强制转换以访问借阅者ID（需要Book实现IBorrowable接口）
-                String borrowerId = ((interfaces.IBorrowable) books[i]).getBorrowerId();
-                if (borrowerId != null && borrowerId.equals(userId)) {
-                    userBooks[count++] = books[i];
-                }
-            }
-        }
+    // ========== 分页与流式遍历 ==========
+
+    /**
+     * 分页获取所有图书（按数组顺序）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页图书
+     */
+    public Page<Book> getBooksPage(String token, int pageSize) {
+        return SlotCursor.page("all", token, pageSize, bookCount, slot -> slot, slot -> books[slot]);
+    }
+
+    /**
+     * 分页获取可借阅的图书（沿位图跳过已借出的图书）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页可借图书
+     */
+    public Page<Book> getAvailableBooksPage(String token, int pageSize) {
+        return SlotCursor.page("available", token, pageSize, bookCount,
+                availabilityIndex::nextAvailable, slot -> books[slot]);
+    }
+
+    /**
+     * 分页获取已借出的图书
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页已借出图书
+     */
+    public Page<Book> getBorrowedBooksPage(String token, int pageSize) {
+        return SlotCursor.page("borrowed", token, pageSize, bookCount,
+                availabilityIndex::nextBorrowed, slot -> books[slot]);
+    }
+
+    /**
+     * 惰性遍历所有图书（不复制数组）
+     * @return 图书流
+     */
+    public Stream<Book> streamBooks() {
+        return SlotCursor.stream(() -> bookCount, slot -> slot, slot -> books[slot]);
+    }
+
+    /**
+     * 惰性遍历可借阅的图书
+     * @return 可借图书流
+     */
+    public Stream<Book> streamAvailableBooks() {
+        return SlotCursor.stream(() -> bookCount, availabilityIndex::nextAvailable, slot -> books[slot]);
+    }
 
-        Book[] result = new Book[count];
-        System.arraycopy(userBooks, 0, result, 0, count);
-        return result;
+    /**
+     * 惰性遍历已借出的图书
+     * @return 已借出图书流
+     */
+    public Stream<Book> streamBorrowedBooks() {
+        return SlotCursor.stream(() -> bookCount, availabilityIndex::nextBorrowed, slot -> books[slot]);
+    }
+
+    /**
+     * 显示一页图书（控制台输出，只读取本页的图书）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 下一页的令牌，已是最后一页时返回null
+     */
+    public String displayBooksPage(String token, int pageSize) {
+        Page<Book> page = getBooksPage(token, pageSize);
+        for (Book book : page.getItems()) {
+            System.out.println(formatBookInfo(book));
+        }
+        System.out.println("本页 " + page.size() + " 本，共 " + bookCount + " 本图书");
+        return page.getNextToken();
     }
 
     /**
@@ -216,23 +372,18 @@ public class BookManager {
      * 显示图书统计信息（控制台输出）
      */
     public void displayStatistics() {
-        int availableCount = 0;
-        int borrowedCount = 0;
-
-        // 统计可借和已借数量
-        for (int i = 0; i < bookCount; i++) {
-            if (books[i].isAvailable()) {
-                availableCount++;
-            } else {
-                borrowedCount++;
-            }
-        }
+        // 各项计数由增量统计引擎直接给出，不扫描数组
+        LibraryStatistics.Snapshot snapshot = statistics.snapshot();
 
         System.out.println("\n--- 图书统计信息 ---");
-        System.out.println("总图书数量: " + bookCount);
-        System.out.println("可借阅图书: " + availableCount);
-        System.out.println("已借出图书: " + borrowedCount);
-        System.out.println("可用容量: " + (MAX_BOOKS - bookCount));
+        System.out.println("总图书数量: " + snapshot.getTotalBooks());
+        System.out.println("可借阅图书: " + snapshot.getAvailableBooks());
+        System.out.println("已借出图书: " + snapshot.getBorrowedBooks());
+        System.out.println("逾期未还: " + snapshot.getOverdueLoans());
+        System.out.println("按分类（可借/总数）: " + snapshot.getCategorySummary());
+        if (maxBooks != UNLIMITED) {
+            System.out.println("可用容量: " + (maxBooks - bookCount));
+        }
     }
 
     /**
@@ -243,5 +394,21 @@ public class BookManager {
         return bookCount;
     }
 
+    /**
+     * 获取增量统计引擎（监控程序可通过 snapshot() 高频轮询）
+     * @return 统计引擎
+     */
+    public LibraryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 获取最大图书容量
+     * @return 最大容量，不限容量时为UNLIMITED
+     */
+    public int getMaxBooks() {
+        return maxBooks;
+    }
+
 
 }
\ No newline at end of file
@@ -1,38 +1,124 @@
 package managers;
 
+import interfaces.IAvailabilityListener;
+import interfaces.ILoanListener;
 import models.Book;
 import enums.BookCategory;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import persistence.FilePersistenceManager;
+import services.LibraryStatistics;
+import utils.Isbn;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 /**
  * 增强版图书管理器 - 使用集合框架
- * 替换数组为ArrayList和HashMap，提供更高效的数据管理
+ * 图书存放在泛型槽位容器中（按ID O(1)查找和删除），可借位图、书号索引按槽位组织，
+ * 删除图书时容器用最后一本图书填补空位，并通过槽位监听器同步这些索引
  */
 public class BookManagerEnhanced {
-    // 主数据源：使用ArrayList存储所有图书
-    private final List<Book> bookList;
+    // 主数据源：泛型槽位容器（主键为图书ID）
+    private final GenericContainer<Book> bookContainer;
 
-    // 索引：使用HashMap实现ID到Book对象的快速查找
-    private final Map<String, Book> bookIdIndex;
+    // 借阅者二级索引：借阅者ID → 按应还日期排序的在借图书
+    private final BorrowerIndex borrowerIndex;
 
-    // 可选：泛型容器
-    private GenericContainer<Book> bookContainer;
+    // 按槽位记录可借状态的位图
+    private final AvailabilityIndex availabilityIndex;
+    private final IAvailabilityListener availabilityListener;
 
-    // 统计信息
-    private int totalOperations;
+    // 书号到槽位的索引（扫码查书）
+    private final IsbnIndex isbnIndex;
+
+    // 标题、作者倒排索引（增删图书时同步维护）
+    private final TextIndex titleIndex;
+    private final TextIndex authorIndex;
+
+    // 管理器级借阅事件监听器：注册一次即可收到本管理器所有图书的借还事件
+    private final LoanDispatcher loanDispatcher;
+
+    // 增量统计（可与用户管理器共用一个，得到合并的快照）
+    private final LibraryStatistics statistics;
+
+    // 可选：持久化管理器（设置后增删图书写入日志）
+    private FilePersistenceManager persistenceManager;
+
+    // 操作指标：按操作计时（无锁，多线程下不丢计数）
+    private final MetricsRegistry metrics;
+    private final OperationTimer findTimer;
+    private final OperationTimer findByIsbnTimer;
+    private final OperationTimer addTimer;
+    private final OperationTimer deleteTimer;
+    private final OperationTimer deleteBatchTimer;
+    private final OperationTimer listTimer;
+    private final OperationTimer searchTimer;
 
     /**
-     * 构造方法
+     * 构造方法（加载示例数据）
      */
     public BookManagerEnhanced() {
-        bookList = new ArrayList<>();
-        bookIdIndex = new HashMap<>();
-        bookContainer = new GenericContainer<>("图书容器");
-        totalOperations = 0;
+        this(true);
+    }
+
+    /**
+     * 构造方法
+     * @param loadSampleData 是否加载示例图书（从持久化文件恢复时传false）
+     */
+    public BookManagerEnhanced(boolean loadSampleData) {
+        this(loadSampleData, new LibraryStatistics());
+    }
+
+    /**
+     * 构造方法
+     * @param loadSampleData 是否加载示例图书
+     * @param statistics 增量统计引擎（可与用户管理器共用）
+     */
+    public BookManagerEnhanced(boolean loadSampleData, LibraryStatistics statistics) {
+        this.statistics = statistics;
+        // 监听器只捕获局部变量，不捕获this（注册到图书上时管理器尚未构造完成）
+        GenericContainer<Book> container = new GenericContainer<>("图书容器", Book::getId);
+        AvailabilityIndex availability = new AvailabilityIndex();
+        IsbnIndex isbns = new IsbnIndex(16);
+        bookContainer = container;
+        availabilityIndex = availability;
+        isbnIndex = isbns;
+        borrowerIndex = new BorrowerIndex();
+        TextIndex titles = new TextIndex(Book::getTitle);
+        TextIndex authors = new TextIndex(Book::getAuthor);
+        titleIndex = titles;
+        authorIndex = authors;
+        availabilityListener = (item, available) -> {
+            int slot = container.slotOf(item.getId());
+            if (slot != IdSlotIndex.NOT_FOUND) {
+                availability.set(slot, available);
+                statistics.availabilityChanged(item, available);
+            }
+        };
+        // 删除图书时最后一本图书移到空出的槽位，位图、书号索引和倒排索引随之移动
+        container.setSlotListener((moved, from, to) -> {
+            availability.move(from, to);
+            isbns.move(moved, from, to);
+            titles.move(moved, from, to);
+            authors.move(moved, from, to);
+        });
+        loanDispatcher = new LoanDispatcher();
+        loanDispatcher.add(statistics);
+        metrics = new MetricsRegistry("books");
+        findTimer = metrics.timer("findById");
+        findByIsbnTimer = metrics.timer("findByIsbn");
+        addTimer = metrics.timer("add");
+        deleteTimer = metrics.timer("delete");
+        deleteBatchTimer = metrics.timer("deleteBatch");
+        listTimer = metrics.timer("list");
+        searchTimer = metrics.timer("search");
 
         // 初始化示例数据
-        initSampleBooks();
+        if (loadSampleData) {
+            initSampleBooks();
+        }
     }
 
     /**
@@ -56,35 +142,123 @@ public class BookManagerEnhanced {
      * @param book 要添加的图书
      * @return 添加是否成功
      */
-    public boolean addBook(Book book) {
-        // 检查ID是否已存在
-        if (bookIdIndex.containsKey(book.getId())) {
+    public final boolean addBook(Book book) {
+        long start = System.nanoTime();
+        if (!linkBook(book)) {
+            addTimer.recordSince(start, false);
             System.out.println("添加失败：图书ID " + book.getId() + " 已存在！");
             return false;
         }
 
-        // 添加到主列表
-        bookList.add(book);
+        // 写入持久化日志；写入失败时撤销添加，内存中不留下日志里没有的图书
+        if (persistenceManager != null) {
+            try {
+                persistenceManager.logAddBook(book);
+            } catch (RuntimeException e) {
+                unlinkBook(book, bookContainer.slotOf(book.getId()));
+                addTimer.recordSince(start, false);
+                throw e;
+            }
+        }
 
-        // 更新索引
-        bookIdIndex.put(book.getId(), book);
+        addTimer.recordSince(start);
+        System.out.println("成功添加图书：" + book.getTitle());
+        return true;
+    }
 
-        // 可选：添加到泛型容器
-        bookContainer.add(book);
+    /**
+     * 恢复图书（持久化恢复专用）：只建立索引，不输出、不写日志
+     * @param book 图书对象
+     * @return 添加是否成功（ID已存在时失败）
+     */
+    public boolean restoreBook(Book book) {
+        return linkBook(book);
+    }
 
-        totalOperations++;
-        System.out.println("成功添加图书：" + book.getTitle());
+    /**
+     * 删除恢复中的图书（持久化恢复专用）：不输出、不写日志
+     * @param bookId 图书ID
+     * @return 删除是否成功
+     */
+    public boolean discardBook(String bookId) {
+        int slot = bookContainer.slotOf(bookId);
+        if (slot == IdSlotIndex.NOT_FOUND) {
+            return false;
+        }
+        unlinkBook(bookContainer.getAt(slot), slot);
         return true;
     }
 
     /**
-     * 根据ID查找图书（O(1)时间复杂度）
+     * 把图书加入容器并建立各索引（内部方法）
+     * @param book 图书
+     * @return 添加是否成功（ID已存在时失败）
+     */
+    private boolean linkBook(Book book) {
+        // 添加到容器（ID已存在时失败）
+        if (!bookContainer.add(book)) {
+            return false;
+        }
+
+        // 更新索引（新图书位于最后一个槽位）
+        int slot = bookContainer.size() - 1;
+        isbnIndex.add(book, slot);
+        availabilityIndex.set(slot, book.isAvailable());
+        statistics.bookAdded(book);
+        book.addAvailabilityListener(availabilityListener);
+        titleIndex.add(book, slot);
+        authorIndex.add(book, slot);
+        book.addLoanListener(loanDispatcher);
+
+        // 跟踪借阅状态
+        borrowerIndex.track(book);
+        return true;
+    }
+
+    /**
+     * 根据ID查找图书（O(1)时间复杂度，直接查容器的ID索引）
      * @param bookId 图书ID
      * @return 图书对象，未找到返回null
      */
     public Book findBookById(String bookId) {
-        totalOperations++;
-        return bookIdIndex.get(bookId);
+        long start = System.nanoTime();
+        Book book = bookContainer.get(bookId);
+        findTimer.recordSince(start);
+        return book;
+    }
+
+    /**
+     * 直接从容器查找图书（不计时，供持久化恢复等批量场景使用）
+     * @param bookId 图书ID
+     * @return 图书对象，未找到返回null
+     */
+    public Book findBookUncached(String bookId) {
+        return bookContainer.get(bookId);
+    }
+
+    /**
+     * 根据书号查找图书（扫码查书）
+     * 有效的ISBN/ISSN通过书号索引O(1)查找；书号无效时退回逐本比较原文
+     * @param isbn ISBN-13、ISBN-10、ISSN或EAN-13条码
+     * @return 图书对象（同书号有多本时返回其中一本），未找到返回null
+     */
+    public Book findBookByISBN(String isbn) {
+        long start = System.nanoTime();
+        Book found = null;
+        long key = Isbn.toKey(isbn);
+        if (key != Isbn.INVALID) {
+            int slot = isbnIndex.get(key);
+            found = slot != IsbnIndex.NOT_FOUND ? bookContainer.getAt(slot) : null;
+        } else {
+            for (Book book : bookContainer) {
+                if (Isbn.sameText(book.getISBN(), isbn)) {
+                    found = book;
+                    break;
+                }
+            }
+        }
+        findByIsbnTimer.recordSince(start);
+        return found;
     }
 
     /**
@@ -93,70 +267,189 @@ public class BookManagerEnhanced {
      * @return 删除是否成功
      */
     public boolean deleteBook(String bookId) {
-        Book book = bookIdIndex.get(bookId);
-        if (book == null) {
+        long start = System.nanoTime();
+        int slot = bookContainer.slotOf(bookId);
+        if (slot == IdSlotIndex.NOT_FOUND) {
+            deleteTimer.recordSince(start, false);
             System.out.println("删除失败：未找到ID为 " + bookId + " 的图书");
             return false;
         }
+        Book book = bookContainer.getAt(slot);
+        unlinkBook(book, slot);
+        if (persistenceManager != null) {
+            persistenceManager.logDeleteBook(bookId);
+        }
 
-        // 从主列表删除
-        bookList.remove(book);
+        deleteTimer.recordSince(start);
+        System.out.println("成功删除图书：" + book.getTitle());
+        return true;
+    }
 
-        // 从索引删除
-        bookIdIndex.remove(bookId);
+    /**
+     * 批量删除图书（如剔旧下架）
+     * 每本图书的删除都是O(1)（同书号的图书由书号索引的槽位链表直接接替），整批删除为O(k)
+     * @param bookIds 图书ID集合（不存在的ID跳过）
+     * @return 实际删除的图书数量
+     */
+    public int deleteBooks(Collection<String> bookIds) {
+        long start = System.nanoTime();
+        int deleted = 0;
+        int skipped = 0;     // 不存在或重复的ID
+        for (String bookId : bookIds) {
+            int slot = bookContainer.slotOf(bookId);
+            if (slot == IdSlotIndex.NOT_FOUND) {
+                skipped++;
+                continue;
+            }
+            unlinkBook(bookContainer.getAt(slot), slot);
+            if (persistenceManager != null) {
+                persistenceManager.logDeleteBook(bookId);
+            }
+            deleted++;
+        }
 
-        // 可选：从泛型容器删除
-        bookContainer.remove(book);
+        deleteBatchTimer.recordSince(start);
+        System.out.println("批量删除完成：删除 " + deleted + " 本图书，跳过 " + skipped + " 个ID");
+        return deleted;
+    }
 
-        totalOperations++;
-        System.out.println("成功删除图书：" + book.getTitle());
-        return true;
+    /**
+     * 把图书从容器和各索引中移除（内部方法，O(1)）
+     * @param book 图书
+     * @param slot 图书所在槽位
+     */
+    private void unlinkBook(Book book, int slot) {
+        // 先清理被删除图书在槽位索引中的记录，再从容器删除（最后一本图书移入该槽位）
+        isbnIndex.remove(book, slot);
+        availabilityIndex.set(slot, false);
+        titleIndex.remove(book, slot);
+        authorIndex.remove(book, slot);
+        bookContainer.removeByKey(book.getId());
+
+        book.removeAvailabilityListener(availabilityListener);
+        book.removeLoanListener(loanDispatcher);
+        statistics.bookRemoved(book);
+
+        // 停止跟踪借阅状态
+        borrowerIndex.untrack(book);
     }
 
     /**
-     * 获取所有可借阅的图书（使用Stream API过滤）
+     * 获取所有可借阅的图书（只遍历位图中的可借位）
      * @return 可借阅图书列表
      */
     public List<Book> getAvailableBooks() {
-        totalOperations++;
-        return bookList.stream()
-                .filter(Book::isAvailable)
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Book> result = new ArrayList<>(availabilityIndex.availableCount());
+        for (int i = availabilityIndex.nextAvailable(0); i >= 0 && i < bookContainer.size();
+             i = availabilityIndex.nextAvailable(i + 1)) {
+            result.add(bookContainer.getAt(i));
+        }
+        listTimer.recordSince(start);
+        return result;
     }
 
     /**
-     * 获取所有已借出的图书
+     * 获取所有已借出的图书（只遍历位图中的已借出位）
      * @return 已借出图书列表
      */
     public List<Book> getBorrowedBooks() {
-        totalOperations++;
-        return bookList.stream()
-                .filter(book -> !book.isAvailable())
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Book> result = new ArrayList<>(bookContainer.size() - availabilityIndex.availableCount());
+        for (int i = availabilityIndex.nextBorrowed(0); i < bookContainer.size();
+             i = availabilityIndex.nextBorrowed(i + 1)) {
+            result.add(bookContainer.getAt(i));
+        }
+        listTimer.recordSince(start);
+        return result;
+    }
+
+    // ========== 分页与流式遍历 ==========
+
+    /**
+     * 分页获取所有图书（按槽位顺序）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页图书
+     */
+    public Page<Book> getBooksPage(String token, int pageSize) {
+        long start = System.nanoTime();
+        Page<Book> page = SlotCursor.page("all", token, pageSize, bookContainer.size(),
+                slot -> slot, bookContainer::getAt);
+        listTimer.recordSince(start);
+        return page;
+    }
+
+    /**
+     * 分页获取可借阅的图书（沿位图跳过已借出的图书）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页可借图书
+     */
+    public Page<Book> getAvailableBooksPage(String token, int pageSize) {
+        long start = System.nanoTime();
+        Page<Book> page = SlotCursor.page("available", token, pageSize, bookContainer.size(),
+                availabilityIndex::nextAvailable, bookContainer::getAt);
+        listTimer.recordSince(start);
+        return page;
+    }
+
+    /**
+     * 分页获取已借出的图书
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页已借出图书
+     */
+    public Page<Book> getBorrowedBooksPage(String token, int pageSize) {
+        long start = System.nanoTime();
+        Page<Book> page = SlotCursor.page("borrowed", token, pageSize, bookContainer.size(),
+                availabilityIndex::nextBorrowed, bookContainer::getAt);
+        listTimer.recordSince(start);
+        return page;
+    }
+
+    /**
+     * 惰性遍历所有图书（直接读取容器，不生成列表）
+     * @return 图书流
+     */
+    public Stream<Book> streamBooks() {
+        return bookContainer.stream();
+    }
+
+    /**
+     * 惰性遍历可借阅的图书
+     * @return 可借图书流
+     */
+    public Stream<Book> streamAvailableBooks() {
+        return SlotCursor.stream(bookContainer::size, availabilityIndex::nextAvailable, bookContainer::getAt);
+    }
+
+    /**
+     * 惰性遍历已借出的图书
+     * @return 已借出图书流
+     */
+    public Stream<Book> streamBorrowedBooks() {
+        return SlotCursor.stream(bookContainer::size, availabilityIndex::nextBorrowed, bookContainer::getAt);
     }
 
     /**
      * 获取指定用户借阅的图书，并按应归还日期排序
+     * 通过借阅者索引查询（O(k)，k为该用户的借阅数量），索引本身已按应还日期有序
      * @param userId 用户ID
      * @return 排序后的图书列表
      */
     public List<Book> getBooksBorrowedByUser(String userId) {
-        totalOperations++;
-        return bookList.stream()
-                .filter(book -> !book.isAvailable()) // 已被借出
-                .filter(book -> userId.equals(book.getBorrowerId()))
-                .sorted(Comparator.comparing(book -> {
-                    // 注意：这里需要Book实现getDueDate方法
-                    return book.getDueDate() != null ? book.getDueDate() : new Date(0);
-                }))
-                .collect(Collectors.toList());
+        long start = System.nanoTime();
+        List<Book> loans = borrowerIndex.getLoans(userId);
+        listTimer.recordSince(start);
+        return loans;
     }
 
     /**
      * 显示所有图书
      */
     public void displayAllBooks() {
-        displayBooks(bookList, "所有图书列表");
+        displayBooks(bookContainer.asList(), "所有图书列表");
     }
 
     /**
@@ -193,44 +486,130 @@ public class BookManagerEnhanced {
     }
 
     /**
-     * 显示统计信息（使用Stream API）
+     * 显示统计信息（各项计数由增量统计引擎直接给出）
      */
     public void displayStatistics() {
-        // 使用流API进行统计
-        long totalCount = bookList.size();
-        long availableCount = bookList.stream().filter(Book::isAvailable).count();
-        long borrowedCount = totalCount - availableCount;
+        LibraryStatistics.Snapshot snapshot = statistics.snapshot();
 
         System.out.println("\n=== 图书统计信息 ===");
-        System.out.println("总图书数量: " + totalCount);
-        System.out.println("可借阅图书: " + availableCount);
-        System.out.println("已借出图书: " + borrowedCount);
-        System.out.println("总操作次数: " + totalOperations);
-
-        // 可选：显示泛型容器信息
-        System.out.println("泛型容器中的图书数量: " + bookContainer.size());
+        System.out.println("总图书数量: " + snapshot.getTotalBooks());
+        System.out.println("可借阅图书: " + snapshot.getAvailableBooks());
+        System.out.println("已借出图书: " + snapshot.getBorrowedBooks());
+        System.out.println("逾期未还: " + snapshot.getOverdueLoans());
+        System.out.println("按分类（可借/总数）: " + snapshot.getCategorySummary());
+        System.out.println(metrics.getSummary());
+
+        // 容器结构内存估算
+        System.out.println(bookContainer.getSummary());
     }
 
     /**
-     * 根据标题关键词搜索图书
+     * 根据标题关键词搜索图书（通过倒排索引）
      * @param keyword 关键词
      * @return 匹配的图书列表
      */
     public List<Book> searchByTitle(String keyword) {
-        return bookList.stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
+        return search(titleIndex, Book::getTitle, keyword);
     }
 
     /**
-     * 根据作者搜索图书
+     * 根据作者搜索图书（通过倒排索引）
      * @param author 作者名
      * @return 匹配的图书列表
      */
     public List<Book> searchByAuthor(String author) {
-        return bookList.stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+        return search(authorIndex, Book::getAuthor, author);
+    }
+
+    /**
+     * 通用搜索方法
+     * 先由倒排索引得到候选槽位（已按槽位升序），再对候选做原文包含比对（忽略大小写），结果按槽位顺序返回，
+     * 关键词恰好是一个完整词项时省去比对；
+     * 关键词中没有可索引的词项（如只有标点）时退回全表扫描
+     * @param index 倒排索引
+     * @param field 被搜索的字段
+     * @param keyword 关键词
+     * @return 匹配的图书列表
+     */
+    private List<Book> search(TextIndex index, Function<Book, String> field, String keyword) {
+        long start = System.nanoTime();
+        TextIndex.SlotList candidates = index.candidates(keyword);
+
+        List<Book> result = new ArrayList<>();
+        if (candidates != null) {
+            // 关键词本身就是一个完整词项时，候选即结果
+            boolean verify = !index.isSingleTerm(keyword);
+            for (int i = 0; i < candidates.size(); i++) {
+                Book book = bookContainer.getAt(candidates.get(i));
+                if (!verify || TextIndex.containsIgnoreCase(field.apply(book), keyword)) {
+                    result.add(book);
+                }
+            }
+        } else {
+            for (Book book : bookContainer) {
+                if (TextIndex.containsIgnoreCase(field.apply(book), keyword)) {
+                    result.add(book);
+                }
+            }
+        }
+        searchTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 注册管理器级借阅事件监听器（对已有和今后加入的图书都生效）
+     * @param listener 监听器
+     */
+    public void addLoanListener(ILoanListener listener) {
+        loanDispatcher.add(listener);
+    }
+
+    /**
+     * 移除管理器级借阅事件监听器
+     * @param listener 监听器
+     */
+    public void removeLoanListener(ILoanListener listener) {
+        loanDispatcher.remove(listener);
+    }
+
+    /**
+     * 设置持久化管理器（设置为null则停止记录）
+     * @param persistenceManager 持久化管理器
+     */
+    public void setPersistenceManager(FilePersistenceManager persistenceManager) {
+        this.persistenceManager = persistenceManager;
+    }
+
+    /**
+     * 获取所有图书（只读视图）
+     * @return 所有图书列表
+     */
+    public List<Book> getAllBooks() {
+        return bookContainer.asList();
+    }
+
+    /**
+     * 获取增量统计引擎（监控程序可通过 snapshot() 高频轮询）
+     * @return 统计引擎
+     */
+    public LibraryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 获取操作指标注册表（用于JMX注册或导出Prometheus文本）
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取总操作次数
+     * @return 操作次数
+     */
+    public long getTotalOperations() {
+        return metrics.getTotalOperations();
     }
 
     /**
@@ -238,6 +617,6 @@ public class BookManagerEnhanced {
      * @return 图书总数
      */
     public int getBookCount() {
-        return bookList.size();
+        return bookContainer.size();
     }
 }
\ No newline at end of file
@@ -1,4 +1,346 @@
 package managers;
 
+import interfaces.ILoanListener;
+import models.Book;
+import enums.BookCategory;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import utils.Isbn;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 线程安全版图书管理器 - 面向多个借还书台并发访问
+ * 使用ConcurrentHashMap存储图书，无锁的指标注册表（LongAdder计数、延迟直方图计时）统计各项操作
+ * 所有读操作（查找、筛选、搜索）均不加锁，写操作只竞争单个哈希桶
+ */
 public class BookManagerV2 {
+    // 主数据源兼索引：ID到Book对象的并发映射
+    private final ConcurrentHashMap<String, Book> books;
+
+    // 书号索引：规范化的EAN-13书号键 → 该书号的所有图书（不可变数组，在compute中整体替换，读取不加锁）
+    private final ConcurrentHashMap<Long, Book[]> isbnIndex;
+
+    // 操作指标（计时器与计数器都是无锁的，多线程累加无竞争）
+    private final MetricsRegistry metrics;
+    private final OperationTimer findTimer;
+    private final OperationTimer findByIsbnTimer;
+    private final OperationTimer addTimer;
+    private final OperationTimer deleteTimer;
+    private final OperationTimer listTimer;
+    private final OperationTimer searchTimer;
+    private final LongAdder addCount;
+    private final LongAdder deleteCount;
+
+    // 管理器级借阅事件监听器（如逾期跟踪器），通过loanDispatcher转发每本图书的借还事件
+    private final LoanDispatcher loanDispatcher;
+
+    /**
+     * 构造方法
+     */
+    public BookManagerV2() {
+        books = new ConcurrentHashMap<>();
+        isbnIndex = new ConcurrentHashMap<>();
+        metrics = new MetricsRegistry("books_v2");
+        findTimer = metrics.timer("findById");
+        findByIsbnTimer = metrics.timer("findByIsbn");
+        addTimer = metrics.timer("add");
+        deleteTimer = metrics.timer("delete");
+        listTimer = metrics.timer("list");
+        searchTimer = metrics.timer("search");
+        addCount = metrics.counter("added");
+        deleteCount = metrics.counter("deleted");
+        loanDispatcher = new LoanDispatcher();
+
+        // 初始化示例数据
+        initSampleBooks();
+    }
+
+    /**
+     * 初始化示例图书
+     */
+    private void initSampleBooks() {
+        System.out.println("--- 线程安全版图书管理器初始化 ---");
+        addBook(new Book("B001", "Java编程思想", "Bruce Eckel", "978-7-111-21382-6", BookCategory.TEXTBOOK));
+        addBook(new Book("B002", "算法导论", "Erich Gamma", "978-7-111-07575-2", BookCategory.TEXTBOOK));
+        addBook(new Book("B003", "代码大全", "Steve McConnell", "978-7-111-18777-6", BookCategory.TEXTBOOK));
+        addBook(new Book("B004", "JavaEE", "Steve McConnell", "978-7-111-15847-2", BookCategory.REFERENCE_BOOK));
+        addBook(new Book("B005", "设计模式", "Erich Gamma", "978-7-111-12575-8", BookCategory.REFERENCE_BOOK));
+        addBook(new Book("B006", "三体", "刘慈欣", "978-7-5366-9293-0", BookCategory.FICTION));
+        addBook(new Book("B007", "活着", "余华", "978-7-5063-8649-8", BookCategory.FICTION));
+        addBook(new Book("B008", "计算机科学", "计算机科学杂志社", "1002-137X", BookCategory.PERIODICAL));
+        addBook(new Book("B009", "昭通学院学报", "昭通学院出版社", "1005-1805", BookCategory.PERIODICAL));
+    }
+
+    /**
+     * 添加图书（ID检查与插入是一个原子操作）
+     * @param book 要添加的图书
+     * @return 添加是否成功
+     */
+    public final boolean addBook(Book book) {
+        long start = System.nanoTime();
+        if (books.putIfAbsent(book.getId(), book) != null) {
+            addTimer.recordSince(start, false);
+            System.out.println("添加失败：图书ID " + book.getId() + " 已存在！");
+            return false;
+        }
+
+        book.addLoanListener(loanDispatcher);
+        long key = book.getIsbnKey();
+        if (key != Isbn.INVALID) {
+            isbnIndex.merge(key, new Book[]{book}, (copies, added) -> {
+                Book[] grown = Arrays.copyOf(copies, copies.length + 1);
+                grown[copies.length] = added[0];
+                return grown;
+            });
+        }
+        addCount.increment();
+        addTimer.recordSince(start);
+        System.out.println("成功添加图书：" + book.getTitle());
+        return true;
+    }
+
+    /**
+     * 根据ID查找图书（无锁读取）
+     * @param bookId 图书ID
+     * @return 图书对象，未找到返回null
+     */
+    public Book findBookById(String bookId) {
+        long start = System.nanoTime();
+        Book book = books.get(bookId);
+        findTimer.recordSince(start);
+        return book;
+    }
+
+    /**
+     * 根据书号查找图书（扫码查书，无锁读取）
+     * 有效的ISBN/ISSN通过书号索引O(1)查找；书号无效时退回逐本比较原文
+     * @param isbn ISBN-13、ISBN-10、ISSN或EAN-13条码
+     * @return 图书对象（同书号有多本时返回其中一本），未找到返回null
+     */
+    public Book findBookByISBN(String isbn) {
+        long start = System.nanoTime();
+        Book found = null;
+        long key = Isbn.toKey(isbn);
+        if (key != Isbn.INVALID) {
+            Book[] copies = isbnIndex.get(key);
+            found = copies != null ? copies[0] : null;
+        } else {
+            for (Book book : books.values()) {
+                if (Isbn.sameText(book.getISBN(), isbn)) {
+                    found = book;
+                    break;
+                }
+            }
+        }
+        findByIsbnTimer.recordSince(start);
+        return found;
+    }
+
+    /**
+     * 删除图书
+     * @param bookId 图书ID
+     * @return 删除是否成功
+     */
+    public boolean deleteBook(String bookId) {
+        long start = System.nanoTime();
+        Book book = books.remove(bookId);
+        if (book == null) {
+            deleteTimer.recordSince(start, false);
+            System.out.println("删除失败：未找到ID为 " + bookId + " 的图书");
+            return false;
+        }
+
+        book.removeLoanListener(loanDispatcher);
+        unindexIsbn(book);
+        deleteCount.increment();
+        deleteTimer.recordSince(start);
+        System.out.println("成功删除图书：" + book.getTitle());
+        return true;
+    }
+
+    /**
+     * 把被删除的图书移出书号索引（内部方法，只改动该书号自己的条目，同书号的其他图书直接接替）
+     */
+    private void unindexIsbn(Book book) {
+        long key = book.getIsbnKey();
+        if (key == Isbn.INVALID) {
+            return;
+        }
+        isbnIndex.computeIfPresent(key, (k, copies) -> {
+            for (int i = 0; i < copies.length; i++) {
+                if (copies[i] == book) {
+                    if (copies.length == 1) {
+                        return null;
+                    }
+                    Book[] shrunk = new Book[copies.length - 1];
+                    System.arraycopy(copies, 0, shrunk, 0, i);
+                    System.arraycopy(copies, i + 1, shrunk, i, copies.length - i - 1);
+                    return shrunk;
+                }
+            }
+            return copies;
+        });
+    }
+
+    /**
+     * 获取所有可借阅的图书（弱一致性遍历，不加锁）
+     * @return 可借阅图书列表
+     */
+    public List<Book> getAvailableBooks() {
+        long start = System.nanoTime();
+        List<Book> result = books.values().stream()
+                .filter(Book::isAvailable)
+                .collect(Collectors.toList());
+        listTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 获取所有已借出的图书
+     * @return 已借出图书列表
+     */
+    public List<Book> getBorrowedBooks() {
+        long start = System.nanoTime();
+        List<Book> result = books.values().stream()
+                .filter(book -> !book.isAvailable())
+                .collect(Collectors.toList());
+        listTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 获取指定用户借阅的图书，并按应归还日期排序
+     * @param userId 用户ID
+     * @return 排序后的图书列表
+     */
+    public List<Book> getBooksBorrowedByUser(String userId) {
+        long start = System.nanoTime();
+        List<Book> result = books.values().stream()
+                .filter(book -> userId.equals(book.getBorrowerId()))
+                .sorted(Comparator.comparingInt(Book::getDueEpochDay))
+                .collect(Collectors.toList());
+        listTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 根据标题关键词搜索图书
+     * @param keyword 关键词
+     * @return 匹配的图书列表
+     */
+    public List<Book> searchByTitle(String keyword) {
+        long start = System.nanoTime();
+        String lowerKeyword = keyword.toLowerCase();
+        List<Book> result = books.values().stream()
+                .filter(book -> book.getTitle().toLowerCase().contains(lowerKeyword))
+                .collect(Collectors.toList());
+        searchTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 根据作者搜索图书
+     * @param author 作者名
+     * @return 匹配的图书列表
+     */
+    public List<Book> searchByAuthor(String author) {
+        long start = System.nanoTime();
+        String lowerAuthor = author.toLowerCase();
+        List<Book> result = books.values().stream()
+                .filter(book -> book.getAuthor().toLowerCase().contains(lowerAuthor))
+                .collect(Collectors.toList());
+        searchTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 显示所有图书（按ID排序）
+     */
+    public void displayAllBooks() {
+        List<Book> sorted = new ArrayList<>(books.values());
+        sorted.sort(Comparator.comparing(Book::getId));
+
+        if (sorted.isEmpty()) {
+            System.out.println("\n所有图书列表：当前没有图书");
+            return;
+        }
+
+        System.out.println("\n=== 所有图书列表 ===");
+        for (int i = 0; i < sorted.size(); i++) {
+            System.out.println((i + 1) + ". " + formatBookInfo(sorted.get(i)));
+        }
+        System.out.println("总计: " + sorted.size() + " 本图书");
+    }
+
+    /**
+     * 格式化图书信息
+     * @param book 图书对象
+     * @return 格式化后的字符串
+     */
+    private String formatBookInfo(Book book) {
+        return String.format("ID: %-6s | 状态: %s | ISBN: %-18s | 《%s》 %s",
+                book.getId(),
+                book.isAvailable() ? "可借" : "借出",
+                book.getISBN(),
+                book.getTitle(),
+                book.getAuthor());
+    }
+
+    /**
+     * 显示统计信息
+     */
+    public void displayStatistics() {
+        long totalCount = books.size();
+        long availableCount = books.values().stream().filter(Book::isAvailable).count();
+
+        System.out.println("\n=== 图书统计信息 ===");
+        System.out.println("总图书数量: " + totalCount);
+        System.out.println("可借阅图书: " + availableCount);
+        System.out.println("已借出图书: " + (totalCount - availableCount));
+        System.out.println("累计添加: " + addCount.sum() + " | 累计删除: " + deleteCount.sum());
+        System.out.println(metrics.getSummary());
+    }
+
+    /**
+     * 注册管理器级借阅事件监听器（对已有和今后加入的图书都生效）
+     * @param listener 监听器
+     */
+    public void addLoanListener(ILoanListener listener) {
+        loanDispatcher.add(listener);
+    }
+
+    /**
+     * 移除管理器级借阅事件监听器
+     * @param listener 监听器
+     */
+    public void removeLoanListener(ILoanListener listener) {
+        loanDispatcher.remove(listener);
+    }
+
+    /**
+     * 获取图书数量
+     * @return 图书总数
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+
+    /**
+     * 获取总操作次数
+     * @return 操作次数
+     */
+    public long getTotalOperations() {
+        return metrics.getTotalOperations();
+    }
+
+    /**
+     * 获取操作指标注册表（用于JMX注册或导出Prometheus文本）
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,94 @@
+package managers;
+
+import interfaces.ILoanListener;
+import models.Book;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 借阅者二级索引
+ * 维护 借阅者ID → 按应还日期排序的在借图书集合，
+ * 由图书的借出/归还事件实时更新，"我的借阅"查询只与该用户的借阅数量有关
+ */
+class BorrowerIndex implements ILoanListener {
+    // 排序规则：先按应还日期，再按图书ID（保证同一天到期的图书不会被去重）
+    private static final Comparator<Book> BY_DUE_DATE = Comparator
+            .comparingInt(Book::getDueEpochDay)
+            .thenComparing(Book::getId);
+
+    private final ConcurrentHashMap<String, NavigableSet<Book>> loansByBorrower = new ConcurrentHashMap<>();
+
+    /**
+     * 图书已借出：加入借阅者的集合
+     * 插入必须在compute内完成：否则同一借阅者的归还可能在插入前把空集合从映射中删掉，借阅记录随之丢失
+     */
+    @Override
+    public void onBorrowed(Book book) {
+        loansByBorrower.compute(book.getBorrowerId(), (id, loans) -> {
+            loans = loans == null ? new ConcurrentSkipListSet<>(BY_DUE_DATE) : loans;
+            loans.add(book);
+            return loans;
+        });
+    }
+
+    /**
+     * 图书即将归还：从借阅者的集合中移除（此时应还日期仍有效，可定位元素）
+     */
+    @Override
+    public void onReturning(Book book) {
+        String borrowerId = book.getBorrowerId();
+        if (borrowerId == null) {
+            return;
+        }
+        loansByBorrower.computeIfPresent(borrowerId, (id, loans) -> {
+            loans.remove(book);
+            return loans.isEmpty() ? null : loans;
+        });
+    }
+
+    /**
+     * 开始跟踪图书（加入管理器时调用；若图书已借出则立即建立索引）
+     * @param book 图书对象
+     */
+    void track(Book book) {
+        book.addLoanListener(this);
+        if (!book.isAvailable() && book.getBorrowerId() != null) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 停止跟踪图书（从管理器删除时调用）
+     * @param book 图书对象
+     */
+    void untrack(Book book) {
+        book.removeLoanListener(this);
+        onReturning(book);
+    }
+
+    /**
+     * 获取用户借阅的图书（按应还日期升序）
+     * @param borrowerId 借阅者ID
+     * @return 图书列表，无借阅时返回空列表
+     */
+    List<Book> getLoans(String borrowerId) {
+        NavigableSet<Book> loans = loansByBorrower.get(borrowerId);
+        return loans == null ? Collections.emptyList() : new ArrayList<>(loans);
+    }
+
+    /**
+     * 获取用户借阅的图书数量
+     * @param borrowerId 借阅者ID
+     * @return 在借数量
+     */
+    int countLoans(String borrowerId) {
+        NavigableSet<Book> loans = loansByBorrower.get(borrowerId);
+        return loans == null ? 0 : loans.size();
+    }
+}
@@ -0,0 +1,301 @@
+package managers;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 泛型槽位容器 - 增强版管理器的共享存储后端
+ * 元素按槽位连续存放在数组中，由可插拔的键提取函数（如 Book::getId）生成主键，
+ * 主键到槽位的索引使用开放寻址哈希表（IdSlotIndex），槽位是int，不装箱
+ *
+ * - 添加：追加到末尾，O(1)均摊
+ * - 按键查找、按键删除：O(1)；删除时用最后一个元素填补空位，被移动的元素通过SlotListener通知，
+ *   管理器据此同步按槽位组织的二级索引（可借位图、书号索引等）
+ * - 遍历：按槽位顺序；删除后顺序会改变
+ *
+ * 非线程安全，由所属管理器保证单线程访问
+ *
+ * @param <T> 元素类型
+ */
+public class GenericContainer<T> implements Iterable<T> {
+
+    /**
+     * 槽位移动监听器
+     * @param <T> 元素类型
+     */
+    @FunctionalInterface
+    public interface SlotListener<T> {
+        /**
+         * 元素从一个槽位移到另一个槽位（删除其他元素时用于填补空位）
+         * @param item 被移动的元素
+         * @param from 原槽位
+         * @param to 新槽位
+         */
+        void onSlotMoved(T item, int from, int to);
+    }
+
+    // 初始容量
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 估算内存用：对象头、数组头、引用大小（64位JVM，开启压缩指针）
+    private static final int OBJECT_HEADER_BYTES = 12;
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private final String name;
+    private final Function<? super T, String> keyExtractor;
+    private final IdSlotIndex keyIndex;
+    private Object[] items;
+    private int size;
+    private SlotListener<? super T> slotListener;
+
+    /**
+     * 构造方法
+     * @param name 容器名称（用于显示）
+     * @param keyExtractor 主键提取函数（如 Book::getId），主键不能为null且在容器内唯一
+     */
+    public GenericContainer(String name, Function<? super T, String> keyExtractor) {
+        this(name, keyExtractor, INITIAL_CAPACITY);
+    }
+
+    /**
+     * 构造方法
+     * @param name 容器名称（用于显示）
+     * @param keyExtractor 主键提取函数
+     * @param expectedSize 预计元素数
+     */
+    public GenericContainer(String name, Function<? super T, String> keyExtractor, int expectedSize) {
+        this.name = name;
+        this.keyExtractor = keyExtractor;
+        this.keyIndex = new IdSlotIndex(expectedSize);
+        this.items = new Object[Math.max(INITIAL_CAPACITY, expectedSize)];
+        this.size = 0;
+    }
+
+    /**
+     * 设置槽位移动监听器（每个容器一个，由所属管理器设置）
+     * @param slotListener 监听器
+     */
+    public void setSlotListener(SlotListener<? super T> slotListener) {
+        this.slotListener = slotListener;
+    }
+
+    // ========== 增删 ==========
+
+    /**
+     * 添加元素（追加到末尾，新元素的槽位为 size()-1）
+     * @param item 元素
+     * @return true-添加成功, false-主键已存在
+     */
+    public boolean add(T item) {
+        String key = keyExtractor.apply(item);
+        if (keyIndex.get(key) != IdSlotIndex.NOT_FOUND) {
+            return false;
+        }
+        if (size == items.length) {
+            items = Arrays.copyOf(items, items.length + (items.length >> 1));
+        }
+        items[size] = item;
+        keyIndex.put(key, size);
+        size++;
+        return true;
+    }
+
+    /**
+     * 按主键删除元素（用最后一个元素填补空位，O(1)）
+     * @param key 主键
+     * @return 被删除的元素，未找到返回null
+     */
+    public T removeByKey(String key) {
+        int slot = keyIndex.remove(key);
+        if (slot == IdSlotIndex.NOT_FOUND) {
+            return null;
+        }
+        T removed = elementAt(slot);
+        int last = size - 1;
+        if (slot != last) {
+            T moved = elementAt(last);
+            items[slot] = moved;
+            keyIndex.put(keyExtractor.apply(moved), slot);
+            if (slotListener != null) {
+                slotListener.onSlotMoved(moved, last, slot);
+            }
+        }
+        items[last] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * 删除元素（按元素的主键定位，不做equals线性查找）
+     * @param item 元素
+     * @return true-删除成功, false-容器中没有该元素
+     */
+    public boolean remove(T item) {
+        String key = keyExtractor.apply(item);
+        int slot = keyIndex.get(key);
+        if (slot == IdSlotIndex.NOT_FOUND || items[slot] != item) {
+            return false;
+        }
+        removeByKey(key);
+        return true;
+    }
+
+    /**
+     * 清空容器
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        keyIndex.clear();
+        size = 0;
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 按主键查找元素
+     * @param key 主键
+     * @return 元素，未找到返回null
+     */
+    public T get(String key) {
+        int slot = keyIndex.get(key);
+        return slot == IdSlotIndex.NOT_FOUND ? null : elementAt(slot);
+    }
+
+    /**
+     * 检查主键是否存在
+     * @param key 主键
+     * @return true-存在
+     */
+    public boolean containsKey(String key) {
+        return keyIndex.get(key) != IdSlotIndex.NOT_FOUND;
+    }
+
+    /**
+     * 获取主键所在槽位
+     * @param key 主键
+     * @return 槽位号，未找到返回-1
+     */
+    public int slotOf(String key) {
+        return keyIndex.get(key);
+    }
+
+    /**
+     * 按槽位获取元素
+     * @param slot 槽位号（0 ~ size()-1）
+     * @return 元素
+     */
+    public T getAt(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("槽位越界: " + slot + "，元素数: " + size);
+        }
+        return elementAt(slot);
+    }
+
+    /**
+     * 获取元素数量
+     * @return 元素数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 检查容器是否为空
+     * @return true-为空
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获取容器名称
+     * @return 名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 只读列表视图（按槽位顺序，随容器变化）
+     * @return 列表视图
+     */
+    public List<T> asList() {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return getAt(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * 按槽位顺序遍历
+     * @return 迭代器
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public T next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return elementAt(next++);
+            }
+        };
+    }
+
+    /**
+     * 按槽位顺序的流
+     * @return 元素流
+     */
+    public Stream<T> stream() {
+        return asList().stream();
+    }
+
+    /**
+     * 估算容器自身结构占用的内存（元素数组和主键索引，不含元素对象本身）
+     * @return 字节数
+     */
+    public long footprintBytes() {
+        long self = align(OBJECT_HEADER_BYTES + 5L * REFERENCE_BYTES + 4);
+        long itemArray = align(ARRAY_HEADER_BYTES + (long) items.length * REFERENCE_BYTES);
+        return self + itemArray + keyIndex.footprintBytes();
+    }
+
+    /**
+     * 获取容器摘要信息
+     * @return 名称、元素数、容量与内存估算
+     */
+    public String getSummary() {
+        return String.format("%s: %d 个元素 | 容量: %d | 结构占用: %.1f KB",
+                name, size, items.length, footprintBytes() / 1024.0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int slot) {
+        return (T) items[slot];
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
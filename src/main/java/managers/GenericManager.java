@@ -1,7 +1,12 @@
 package managers;
 
+import metrics.MetricsRegistry;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.stream.Collectors;
 
 /**
@@ -11,7 +16,7 @@ import java.util.stream.Collectors;
  */
 public abstract class GenericManager<T> {
     protected List<T> items;
-    protected int totalOperations;
+    protected final MetricsRegistry metrics;
     protected String managerName;
 
     /**
@@ -21,7 +26,7 @@ public abstract class GenericManager<T> {
     public GenericManager(String managerName) {
         this.managerName = managerName;
         this.items = new ArrayList<>();
-        this.totalOperations = 0;
+        this.metrics = new MetricsRegistry(managerName);
     }
 
     /**
@@ -50,8 +55,39 @@ public abstract class GenericManager<T> {
      * @return 所有项目的列表
      */
     public List<T> getAllItems() {
-        totalOperations++;
-        return new ArrayList<>(items);
+        long start = System.nanoTime();
+        List<T> copy = new ArrayList<>(items);
+        metrics.timer("list").recordSince(start);
+        return copy;
+    }
+
+    /**
+     * 分页获取项目（按加入顺序）
+     * @param token 续页令牌（第一页传null）
+     * @param pageSize 页大小
+     * @return 一页项目
+     */
+    public Page<T> getPage(String token, int pageSize) {
+        long start = System.nanoTime();
+        Page<T> page = SlotCursor.page("items", token, pageSize, items.size(), index -> index, items::get);
+        metrics.timer("list").recordSince(start);
+        return page;
+    }
+
+    /**
+     * 惰性遍历所有项目（不复制列表）
+     * @return 项目流
+     */
+    public Stream<T> stream() {
+        return items.stream();
+    }
+
+    /**
+     * 只读迭代器（不复制列表）
+     * @return 迭代器
+     */
+    public Iterator<T> iterator() {
+        return Collections.unmodifiableList(items).iterator();
     }
 
     /**
@@ -63,11 +99,19 @@ public abstract class GenericManager<T> {
     }
 
     /**
-     * 获取总操作次数
+     * 获取总操作次数（子类通过 metrics.timer(操作名) 记录的所有操作）
      * @return 操作次数
      */
-    public int getTotalOperations() {
-        return totalOperations;
+    public long getTotalOperations() {
+        return metrics.getTotalOperations();
+    }
+
+    /**
+     * 获取操作指标注册表
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
     }
 
     /**
@@ -76,15 +120,16 @@ public abstract class GenericManager<T> {
     public void displayStatistics() {
         System.out.println("\n=== " + managerName + " 统计信息 ===");
         System.out.println("总项目数量: " + getCount());
-        System.out.println("总操作次数: " + totalOperations);
+        System.out.println(metrics.getSummary());
     }
 
     /**
      * 清空所有项目
      */
     public void clear() {
+        long start = System.nanoTime();
         items.clear();
-        totalOperations++;
+        metrics.timer("clear").recordSince(start);
         System.out.println(managerName + " 已清空");
     }
 
@@ -0,0 +1,168 @@
+package managers;
+
+import java.util.Arrays;
+
+/**
+ * ID到存储槽位的索引（开放寻址哈希表）
+ * 键为字符串ID，值为int槽位号，使用线性探测，删除时后移回填（不留墓碑）
+ * 值以int数组保存，避免Integer装箱
+ * 非线程安全，由使用方加锁（管理器的存储、罚款引擎的行号索引）
+ */
+public class IdSlotIndex {
+    // 空槽位标记
+    public static final int NOT_FOUND = -1;
+
+    private String[] keys;
+    private int[] slots;
+    private int size;
+    private int mask;
+
+    /**
+     * 构造方法
+     * @param expectedSize 预计条目数
+     */
+    public IdSlotIndex(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new String[capacity];
+        slots = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 查找ID对应的槽位
+     * @param id 图书ID
+     * @return 槽位号，未找到返回NOT_FOUND
+     */
+    public int get(String id) {
+        int i = hash(id) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(id)) {
+                return slots[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 写入或更新ID对应的槽位
+     * @param id 图书ID
+     * @param slot 槽位号
+     */
+    public void put(String id, int slot) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        int i = hash(id) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(id)) {
+                slots[i] = slot;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slots[i] = slot;
+        size++;
+    }
+
+    /**
+     * 删除ID，并把后续冲突链上的条目前移，保证查找不被中断
+     * @param id 图书ID
+     * @return 被删除的槽位号，未找到返回NOT_FOUND
+     */
+    public int remove(String id) {
+        int i = hash(id) & mask;
+        String k;
+        while ((k = keys[i]) != null) {
+            if (k.equals(id)) {
+                int removed = slots[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * 获取条目数
+     * @return 条目数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 估算索引占用的内存（键数组与槽位数组，不含键字符串本身；64位JVM开启压缩指针）
+     * @return 字节数
+     */
+    long footprintBytes() {
+        long keyArray = (16 + 4L * keys.length + 7) & ~7L;
+        long slotArray = (16 + 4L * slots.length + 7) & ~7L;
+        return 32 + keyArray + slotArray;
+    }
+
+    /**
+     * 后移回填（内部方法）
+     * 从空出的位置向后扫描，把可以前移的条目移到空位上
+     */
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            String k = keys[i];
+            if (k == null) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // 条目的理想位置不在 (hole, i] 区间内时，才能移到hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = k;
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+    }
+
+    private void resize(int newCapacity) {
+        String[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new String[newCapacity];
+        slots = new int[newCapacity];
+        mask = newCapacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            String k = oldKeys[j];
+            if (k != null) {
+                int i = hash(k) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int n = Math.max(16, expectedSize * 2);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -0,0 +1,233 @@
+package managers;
+
+import enums.BookCategory;
+import models.BookCopy;
+import models.TitleRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 馆藏管理器 - 一条书目、多本副本
+ * 书目记录按ISBN驻留，同一ISBN的所有副本共享一份书名、作者等信息；
+ * 副本按条码号索引，每个书目维护自己的副本列表
+ *
+ * 可选地关联一个线程安全版图书管理器，新增/注销的副本同步加入/移出流通
+ */
+public class InventoryManager {
+    // ISBN → 书目记录（驻留表）
+    private final ConcurrentHashMap<String, TitleRecord> titlesByIsbn;
+
+    // 条码号 → 副本
+    private final ConcurrentHashMap<String, BookCopy> copiesByBarcode;
+
+    // ISBN → 该书目的副本列表（读多写少）
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<BookCopy>> copiesByIsbn;
+
+    // 可选：流通用的图书管理器
+    private final BookManagerV2 circulation;
+
+    /**
+     * 构造方法（副本不加入流通）
+     */
+    public InventoryManager() {
+        this(null);
+    }
+
+    /**
+     * 构造方法
+     * @param circulation 流通用的图书管理器（为null时副本不加入流通）
+     */
+    public InventoryManager(BookManagerV2 circulation) {
+        this.titlesByIsbn = new ConcurrentHashMap<>();
+        this.copiesByBarcode = new ConcurrentHashMap<>();
+        this.copiesByIsbn = new ConcurrentHashMap<>();
+        this.circulation = circulation;
+    }
+
+    // ========== 书目 ==========
+
+    /**
+     * 登记书目（同一ISBN已登记时返回已有的书目记录）
+     * @param ISBN 国际标准书号
+     * @param title 书名
+     * @param author 作者
+     * @param category 图书分类
+     * @return 驻留的书目记录
+     */
+    public TitleRecord registerTitle(String ISBN, String title, String author, BookCategory category) {
+        return titlesByIsbn.computeIfAbsent(ISBN.trim(), isbn -> new TitleRecord(isbn, title, author, category));
+    }
+
+    /**
+     * 根据ISBN查找书目
+     * @param ISBN 国际标准书号
+     * @return 书目记录，未找到返回null
+     */
+    public TitleRecord findTitle(String ISBN) {
+        return titlesByIsbn.get(ISBN.trim());
+    }
+
+    /**
+     * 检查书目是否有可借副本（O(1)）
+     * @param ISBN 国际标准书号
+     * @return true-有可借副本
+     */
+    public boolean isAnyCopyAvailable(String ISBN) {
+        TitleRecord record = findTitle(ISBN);
+        return record != null && record.hasAvailableCopy();
+    }
+
+    // ========== 副本 ==========
+
+    /**
+     * 新增副本
+     * @param barcode 条码号
+     * @param record 所属书目（应为registerTitle返回的记录）
+     * @return 新副本，条码号已存在时返回null
+     */
+    public BookCopy addCopy(String barcode, TitleRecord record) {
+        BookCopy copy = new BookCopy(barcode, record);
+        // 持有副本锁登记：条码登记成功后才计入书目计数，计数之前其他线程不能借出该副本
+        synchronized (copy) {
+            if (copiesByBarcode.putIfAbsent(barcode, copy) != null) {
+                System.out.println("添加失败：条码 " + barcode + " 已存在！");
+                return null;
+            }
+            copy.register();
+        }
+        copiesByIsbn.computeIfAbsent(record.getISBN(), isbn -> new CopyOnWriteArrayList<>()).add(copy);
+        if (circulation != null) {
+            circulation.addBook(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * 批量新增副本（如整套教材入库），条码号为 前缀 + 序号（从1开始，3位补零）
+     * @param record 所属书目
+     * @param barcodePrefix 条码号前缀
+     * @param count 副本数量
+     * @return 成功新增的副本
+     */
+    public List<BookCopy> addCopies(TitleRecord record, String barcodePrefix, int count) {
+        List<BookCopy> added = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            BookCopy copy = addCopy(String.format("%s%03d", barcodePrefix, i), record);
+            if (copy != null) {
+                added.add(copy);
+            }
+        }
+        System.out.println("《" + record.getTitle() + "》入库 " + added.size() + " 册");
+        return added;
+    }
+
+    /**
+     * 注销副本（借出中的副本不能注销）
+     * @param barcode 条码号
+     * @return 注销是否成功
+     */
+    public boolean removeCopy(String barcode) {
+        BookCopy copy = copiesByBarcode.get(barcode);
+        if (copy == null) {
+            System.out.println("注销失败：未找到条码为 " + barcode + " 的副本");
+            return false;
+        }
+        synchronized (copy) {
+            if (!copy.isAvailable()) {
+                System.out.println("注销失败：副本 " + barcode + " 尚未归还");
+                return false;
+            }
+            if (!copiesByBarcode.remove(barcode, copy)) {
+                return false;
+            }
+            // 先移出流通再更新计数，都在副本锁内完成，期间不会有借出改变可借计数
+            if (circulation != null) {
+                circulation.deleteBook(barcode);
+            }
+            copy.withdraw();
+        }
+        List<BookCopy> copies = copiesByIsbn.get(copy.getISBN());
+        if (copies != null) {
+            copies.remove(copy);
+        }
+        return true;
+    }
+
+    /**
+     * 根据条码号查找副本
+     * @param barcode 条码号
+     * @return 副本，未找到返回null
+     */
+    public BookCopy findCopy(String barcode) {
+        return copiesByBarcode.get(barcode);
+    }
+
+    /**
+     * 查找书目的一本可借副本（没有可借副本时O(1)返回）
+     * @param ISBN 国际标准书号
+     * @return 可借副本，没有时返回null
+     */
+    public BookCopy findAvailableCopy(String ISBN) {
+        TitleRecord record = findTitle(ISBN);
+        if (record == null || !record.hasAvailableCopy()) {
+            return null;
+        }
+        for (BookCopy copy : getCopies(record.getISBN())) {
+            if (copy.isAvailable() && copy.getReservedFor() == null) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取书目的全部副本
+     * @param ISBN 国际标准书号
+     * @return 副本列表（只读）
+     */
+    public List<BookCopy> getCopies(String ISBN) {
+        List<BookCopy> copies = copiesByIsbn.get(ISBN.trim());
+        return copies == null ? Collections.emptyList() : Collections.unmodifiableList(copies);
+    }
+
+    // ========== 统计与显示 ==========
+
+    /**
+     * 获取书目数量
+     * @return 书目数
+     */
+    public int getTitleCount() {
+        return titlesByIsbn.size();
+    }
+
+    /**
+     * 获取副本总数
+     * @return 副本数
+     */
+    public int getCopyCount() {
+        return copiesByBarcode.size();
+    }
+
+    /**
+     * 显示馆藏（按书名排序）
+     */
+    public void displayInventory() {
+        List<TitleRecord> titles = new ArrayList<>(titlesByIsbn.values());
+        if (titles.isEmpty()) {
+            System.out.println("\n馆藏列表：当前没有书目");
+            return;
+        }
+        titles.sort(Comparator.comparing(TitleRecord::getTitle));
+
+        System.out.println("\n=== 馆藏列表 ===");
+        for (int i = 0; i < titles.size(); i++) {
+            System.out.println((i + 1) + ". " + titles.get(i).getDetails());
+        }
+        System.out.println("总计: " + titles.size() + " 种书目，" + copiesByBarcode.size() + " 册副本");
+    }
+}
@@ -0,0 +1,150 @@
+package managers;
+
+import models.Book;
+import utils.Isbn;
+
+import java.util.Arrays;
+
+/**
+ * 书号到存储槽位的索引（供基于槽位的图书管理器使用）
+ * 键为规范化的EAN-13书号键（long），值为槽位号，查找不计算字符串哈希
+ *
+ * 同一书号有多本图书（如多个副本）时，这些槽位用按槽位编号的双向链表串起来，
+ * 哈希表只记录链表头（最先加入的一本）；删除链表头时由下一本直接接替，
+ * 增、删、移动都是O(1)，不需要在馆藏中扫描替补
+ * 书号无效（格式错误或校验位不符）的图书不进入索引
+ */
+class IsbnIndex {
+    // 未找到时返回的槽位
+    static final int NOT_FOUND = LongIntHashMap.NOT_FOUND;
+
+    // 链表结尾
+    private static final int NONE = -1;
+
+    private final LongIntHashMap heads;   // 书号键 → 链表头槽位
+    private int[] next;                   // 槽位 → 同书号的下一个槽位
+    private int[] prev;                   // 槽位 → 同书号的上一个槽位（链表头为NONE）
+
+    /**
+     * 构造方法
+     * @param expectedSize 预计图书数
+     */
+    IsbnIndex(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        heads = new LongIntHashMap(expectedSize);
+        next = new int[capacity];
+        prev = new int[capacity];
+    }
+
+    /**
+     * 查找书号对应的槽位
+     * @param isbnKey 书号键
+     * @return 槽位号（同书号有多本时为最先加入的一本），未找到返回NOT_FOUND
+     */
+    int get(long isbnKey) {
+        return isbnKey == Isbn.INVALID ? NOT_FOUND : heads.get(isbnKey);
+    }
+
+    /**
+     * 图书加入指定槽位
+     * @param book 图书
+     * @param slot 槽位号
+     */
+    void add(Book book, int slot) {
+        long key = book.getIsbnKey();
+        if (key == Isbn.INVALID) {
+            return;
+        }
+        ensureCapacity(slot + 1);
+        int head = heads.get(key);
+        if (head == NOT_FOUND) {
+            heads.put(key, slot);
+            prev[slot] = NONE;
+            next[slot] = NONE;
+            return;
+        }
+        // 插在链表头之后，链表头仍是最先加入的一本
+        int after = next[head];
+        prev[slot] = head;
+        next[slot] = after;
+        next[head] = slot;
+        if (after != NONE) {
+            prev[after] = slot;
+        }
+    }
+
+    /**
+     * 图书从指定槽位删除（删除的是链表头时由下一本同书号图书接替）
+     * @param book 图书
+     * @param slot 槽位号
+     */
+    void remove(Book book, int slot) {
+        long key = book.getIsbnKey();
+        if (key == Isbn.INVALID) {
+            return;
+        }
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            if (after == NONE) {
+                heads.remove(key);
+            } else {
+                heads.put(key, after);
+                prev[after] = NONE;
+            }
+        } else {
+            next[before] = after;
+            if (after != NONE) {
+                prev[after] = before;
+            }
+        }
+    }
+
+    /**
+     * 图书在存储中移动了位置
+     * @param book 图书
+     * @param from 原槽位号
+     * @param to 新槽位号
+     */
+    void move(Book book, int from, int to) {
+        long key = book.getIsbnKey();
+        if (key == Isbn.INVALID) {
+            return;
+        }
+        int before = prev[from];
+        int after = next[from];
+        prev[to] = before;
+        next[to] = after;
+        if (before == NONE) {
+            heads.put(key, to);
+        } else {
+            next[before] = to;
+        }
+        if (after != NONE) {
+            prev[after] = to;
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    void clear() {
+        heads.clear();
+    }
+
+    /**
+     * 获取已索引的书号数
+     * @return 书号数
+     */
+    int size() {
+        return heads.size();
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > next.length) {
+            int capacity = Math.max(required, next.length + (next.length >> 1));
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package managers;
+
+import interfaces.ILoanListener;
+import models.Book;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 管理器级借阅事件分发器
+ * 注册到管理器的每本图书上，把借还事件转发给所有管理器级监听器；
+ * 不持有管理器本身，构造管理器时注册到图书上不会泄漏未构造完成的管理器
+ */
+class LoanDispatcher implements ILoanListener {
+    private final CopyOnWriteArrayList<ILoanListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onBorrowed(Book book) {
+        for (ILoanListener listener : listeners) {
+            listener.onBorrowed(book);
+        }
+    }
+
+    @Override
+    public void onReturning(Book book) {
+        for (ILoanListener listener : listeners) {
+            listener.onReturning(book);
+        }
+    }
+
+    /**
+     * 添加监听器
+     * @param listener 借阅事件监听器
+     */
+    void add(ILoanListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 移除监听器
+     * @param listener 借阅事件监听器
+     */
+    void remove(ILoanListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,165 @@
+package managers;
+
+import java.util.Arrays;
+
+/**
+ * long键到int值的哈希表（开放寻址）
+ * 键和值都保存在基本类型数组中，没有装箱，也不计算字符串哈希；
+ * 使用线性探测，删除时后移回填（不留墓碑），与IdSlotIndex相同
+ *
+ * 键不能为Long.MIN_VALUE（用作空位标记）
+ */
+class LongIntHashMap {
+    // 未找到时返回的值
+    static final int NOT_FOUND = -1;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * 构造方法
+     * @param expectedSize 预计条目数
+     */
+    LongIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * 查找键对应的值
+     * @param key 键
+     * @return 值，未找到返回NOT_FOUND
+     */
+    int get(long key) {
+        int i = hash(key) & mask;
+        long k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 写入或更新键对应的值
+     * @param key 键
+     * @param value 值
+     */
+    void put(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        int i = hash(key) & mask;
+        long k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * 删除键，并把后续冲突链上的条目前移
+     * @param key 键
+     * @return 被删除的值，未找到返回NOT_FOUND
+     */
+    int remove(long key) {
+        int i = hash(key) & mask;
+        long k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key) {
+                int removed = values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 清空
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * 获取条目数
+     * @return 条目数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 后移回填（内部方法）
+     */
+    private void shiftBack(int hole) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == EMPTY) {
+                break;
+            }
+            int home = hash(k) & mask;
+            // 条目的理想位置不在 (hole, i] 区间内时，才能移到hole
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = k;
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+        Arrays.fill(keys, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != EMPTY) {
+                int i = hash(k) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * 64位混合哈希（书号键的低位变化少，需要充分打散）
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int n = Math.max(16, expectedSize * 2);
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
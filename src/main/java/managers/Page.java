@@ -0,0 +1,64 @@
+package managers;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分页结果（不可变）
+ * 只包含本页的元素和一个不透明的续页令牌：把令牌原样传回同一个分页方法即可取得下一页，
+ * 取一页的时间和内存只与页大小有关，不需要先生成完整列表
+ *
+ * 令牌记录的是存储中的位置；翻页期间有删除时（删除会把最后一个元素移入空位），
+ * 个别元素可能被漏掉或重复出现一次，与并发集合的弱一致性遍历相同
+ *
+ * @param <T> 元素类型
+ */
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * 获取本页元素
+     * @return 元素列表（只读）
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * 获取续页令牌
+     * @return 下一页的令牌，已是最后一页时返回null
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /**
+     * 检查是否还有下一页
+     * @return true-有下一页
+     */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    /**
+     * 获取本页元素数量
+     * @return 元素数量
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * 检查本页是否为空
+     * @return true-为空
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
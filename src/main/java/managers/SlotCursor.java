@@ -0,0 +1,137 @@
+package managers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于槽位的游标工具（供各管理器实现分页和惰性遍历）
+ * 调用方提供三个函数：
+ * - limit：当前槽位总数
+ * - next：从某槽位（含）起下一个符合条件的槽位，没有时返回负数或不小于limit的值（如可借位图的 nextAvailable）
+ * - at：按槽位取元素
+ *
+ * 续页令牌是“范围名:槽位”的Base64编码，对调用方不透明；范围名用于拒绝把一个列表的令牌用到另一个列表上
+ */
+final class SlotCursor {
+
+    private SlotCursor() {
+    }
+
+    /**
+     * 取一页
+     * @param scope 范围名（如 all、available）
+     * @param token 续页令牌，null表示第一页
+     * @param pageSize 页大小
+     * @param limit 槽位总数
+     * @param next 查找下一个符合条件的槽位
+     * @param at 按槽位取元素
+     * @param <T> 元素类型
+     * @return 分页结果
+     * @throws IllegalArgumentException 页大小不是正数，或令牌无效/不属于该范围
+     */
+    static <T> Page<T> page(String scope, String token, int pageSize, int limit,
+                            IntUnaryOperator next, IntFunction<T> at) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("页大小必须为正数: " + pageSize);
+        }
+        int slot = token == null ? 0 : decode(scope, token);
+        List<T> items = new ArrayList<>(Math.min(pageSize, Math.max(0, limit - slot)));
+        int i = advance(next, slot, limit);
+        while (i < limit && items.size() < pageSize) {
+            items.add(at.apply(i));
+            i = advance(next, i + 1, limit);
+        }
+        return new Page<>(items, i < limit ? encode(scope, i) : null);
+    }
+
+    /**
+     * 惰性迭代器（每次next才查找下一个槽位，不生成中间列表）
+     * @param limit 槽位总数（每步重新读取）
+     * @param next 查找下一个符合条件的槽位
+     * @param at 按槽位取元素
+     * @param <T> 元素类型
+     * @return 迭代器
+     */
+    static <T> Iterator<T> iterator(IntSupplier limit, IntUnaryOperator next, IntFunction<T> at) {
+        return new Iterator<T>() {
+            private int slot = advance(next, 0, limit.getAsInt());
+
+            @Override
+            public boolean hasNext() {
+                return slot < limit.getAsInt();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = at.apply(slot);
+                slot = advance(next, slot + 1, limit.getAsInt());
+                return item;
+            }
+        };
+    }
+
+    /**
+     * 惰性顺序流
+     * @param limit 槽位总数（每步重新读取）
+     * @param next 查找下一个符合条件的槽位
+     * @param at 按槽位取元素
+     * @param <T> 元素类型
+     * @return 顺序流
+     */
+    static <T> Stream<T> stream(IntSupplier limit, IntUnaryOperator next, IntFunction<T> at) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(limit, next, at),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // ========== 内部方法 ==========
+
+    private static int advance(IntUnaryOperator next, int from, int limit) {
+        if (from >= limit) {
+            return limit;
+        }
+        int slot = next.applyAsInt(from);
+        return slot < 0 || slot > limit ? limit : slot;
+    }
+
+    private static String encode(String scope, int slot) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((scope + ":" + slot).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decode(String scope, String token) {
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("续页令牌无效: " + token, e);
+        }
+        int colon = text.lastIndexOf(':');
+        if (colon < 0 || !text.substring(0, colon).equals(scope)) {
+            throw new IllegalArgumentException("续页令牌不属于该列表: " + token);
+        }
+        int slot;
+        try {
+            slot = Integer.parseInt(text.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("续页令牌无效: " + token, e);
+        }
+        if (slot < 0) {
+            throw new IllegalArgumentException("续页令牌无效: " + token);
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,364 @@
+package managers;
+
+import models.Book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 倒排全文索引（用于按标题、作者搜索）
+ * 分词规则：
+ * 1. 中日韩文字：每个字（一元）和相邻两个字（二元）各作为一个词项，如《三体》→ 三、体、三体
+ * 2. 拉丁字母和数字：按单词切分并转为小写，查询词按前缀匹配单词（"java" 可匹配 "JavaEE"）
+ * 查询时对各词项的倒排表求交集，只对交集内的候选图书做一次原文比对
+ *
+ * 倒排表保存图书所在的槽位（按槽位升序的int数组），与可借位图、书号索引一样随槽位移动更新；
+ * 候选结果本身就是槽位顺序，调用方按槽位取书即可，不需要排序，单个词项的查询直接返回倒排表本身
+ */
+class TextIndex {
+    // 从图书中取出被索引文本的函数（标题或作者）
+    private final Function<Book, String> textExtractor;
+
+    // 拉丁单词倒排表（有序，支持前缀范围查询）
+    private final TreeMap<String, SlotList> wordPostings = new TreeMap<>();
+
+    // 中日韩一元/二元词项倒排表
+    private final Map<String, SlotList> gramPostings = new HashMap<>();
+
+    /**
+     * 构造方法
+     * @param textExtractor 被索引文本的提取函数
+     */
+    TextIndex(Function<Book, String> textExtractor) {
+        this.textExtractor = textExtractor;
+    }
+
+    /**
+     * 图书加入指定槽位
+     * @param book 图书对象
+     * @param slot 槽位号
+     */
+    void add(Book book, int slot) {
+        String text = textExtractor.apply(book);
+        if (text == null) {
+            return;
+        }
+        tokenize(text, true, (postings, term) ->
+                postings.computeIfAbsent(term, t -> new SlotList()).add(slot));
+    }
+
+    /**
+     * 图书从指定槽位删除
+     * @param book 图书对象
+     * @param slot 槽位号
+     */
+    void remove(Book book, int slot) {
+        String text = textExtractor.apply(book);
+        if (text == null) {
+            return;
+        }
+        tokenize(text, true, (postings, term) -> {
+            SlotList slots = postings.get(term);
+            if (slots != null && slots.remove(slot) && slots.size() == 0) {
+                postings.remove(term);
+            }
+        });
+    }
+
+    /**
+     * 图书从一个槽位移到另一个槽位（容器删除时用最后一本图书填补空位）
+     * @param book 被移动的图书
+     * @param from 原槽位（最后一个槽位，位于各倒排表末尾）
+     * @param to 新槽位
+     */
+    void move(Book book, int from, int to) {
+        String text = textExtractor.apply(book);
+        if (text == null) {
+            return;
+        }
+        tokenize(text, true, (postings, term) -> {
+            SlotList slots = postings.get(term);
+            if (slots != null && slots.remove(from)) {
+                slots.add(to);
+            }
+        });
+    }
+
+    /**
+     * 查询候选槽位（各词项倒排表的交集，按槽位升序）
+     * 只有一个词项时返回的就是倒排表本身，调用方只能读取，并且要在下一次增删图书之前用完
+     * @param keyword 查询关键词
+     * @return 候选槽位；关键词中没有可索引的词项时返回null，由调用方退回全表扫描
+     */
+    SlotList candidates(String keyword) {
+        List<SlotList> termSets = new ArrayList<>();
+
+        tokenize(keyword, false, (postings, term) -> {
+            if (postings == wordPostings) {
+                termSets.add(prefixUnion(term));
+            } else {
+                SlotList slots = gramPostings.get(term);
+                termSets.add(slots != null ? slots : SlotList.EMPTY);
+            }
+        });
+
+        if (termSets.isEmpty()) {
+            return null;
+        }
+        if (termSets.size() == 1) {
+            return termSets.get(0);
+        }
+
+        // 从最小的倒排表开始求交集，在其余倒排表中二分查找
+        termSets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        SlotList smallest = termSets.get(0);
+        SlotList result = new SlotList(smallest.size());
+        for (int i = 0; i < smallest.size(); i++) {
+            int slot = smallest.get(i);
+            boolean inAll = true;
+            for (int j = 1; j < termSets.size() && inAll; j++) {
+                inAll = termSets.get(j).contains(slot);
+            }
+            if (inAll) {
+                result.append(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 检查关键词是否恰好是一个完整的查询词项（如单个汉字、两字词或单个英文单词）
+     * 这时候选图书的原文必然包含关键词，调用方可以省去原文比对
+     * @param keyword 查询关键词
+     * @return true-候选即结果
+     */
+    boolean isSingleTerm(String keyword) {
+        int[] terms = {0};
+        boolean[] whole = {false};
+        tokenize(keyword, false, (postings, term) -> {
+            terms[0]++;
+            whole[0] = term.length() == keyword.length();
+        });
+        return terms[0] == 1 && whole[0];
+    }
+
+    /**
+     * 检查文本是否包含关键词（忽略大小写，不创建小写副本）
+     * 先比对首字符，首字符相同的位置再用regionMatches比对其余部分
+     * @param text 文本（可以为null）
+     * @param keyword 关键词
+     * @return true-包含
+     */
+    static boolean containsIgnoreCase(String text, String keyword) {
+        if (text == null) {
+            return false;
+        }
+        int length = keyword.length();
+        if (length == 0) {
+            return true;
+        }
+        char first = foldCase(keyword.charAt(0));
+        int last = text.length() - length;
+        for (int i = 0; i <= last; i++) {
+            if (foldCase(text.charAt(i)) == first
+                    && text.regionMatches(true, i + 1, keyword, 1, length - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 字符大小写折叠（与String.regionMatches忽略大小写时的比较规则一致）
+     */
+    private static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * 合并以prefix开头的所有单词的倒排表（内部方法）
+     * 只有一个单词时直接返回其倒排表；多个单词时在位图中按槽位标记，标记即去重，按位扫描即为升序
+     */
+    private SlotList prefixUnion(String prefix) {
+        Iterator<SlotList> range = wordPostings.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .values().iterator();
+        if (!range.hasNext()) {
+            return SlotList.EMPTY;
+        }
+        SlotList first = range.next();
+        if (!range.hasNext()) {
+            return first;
+        }
+        BitSet union = new BitSet();
+        first.markAll(union);
+        while (range.hasNext()) {
+            range.next().markAll(union);
+        }
+        SlotList result = new SlotList(union.cardinality());
+        for (int slot = union.nextSetBit(0); slot >= 0; slot = union.nextSetBit(slot + 1)) {
+            result.append(slot);
+        }
+        return result;
+    }
+
+    /**
+     * 按槽位升序排列的倒排表
+     * 新图书总是加在最后一个槽位，追加是O(1)；移动图书时从末尾删除、插入到空出的位置
+     */
+    static final class SlotList {
+        static final SlotList EMPTY = new SlotList(0);
+
+        private int[] slots;
+        private int size;
+
+        SlotList() {
+            this(4);
+        }
+
+        SlotList(int capacity) {
+            slots = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return slots[index];
+        }
+
+        boolean contains(int slot) {
+            return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+        }
+
+        /**
+         * 插入槽位（已存在时不重复插入，同一文本中重复出现的词项只记一次）
+         */
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] < slot) {
+                append(slot);
+                return;
+            }
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(slots, pos, slots, pos + 1, size - pos);
+            slots[pos] = slot;
+            size++;
+        }
+
+        /**
+         * 删除槽位
+         * @return 是否存在并已删除
+         */
+        boolean remove(int slot) {
+            int pos = Arrays.binarySearch(slots, 0, size, slot);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(slots, pos + 1, slots, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * 在位图中标记全部槽位
+         */
+        void markAll(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(slots[i]);
+            }
+        }
+
+        /**
+         * 追加槽位（调用方保证大于已有的所有槽位）
+         */
+        private void append(int slot) {
+            ensureCapacity(size + 1);
+            slots[size++] = slot;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(capacity, slots.length * 2));
+            }
+        }
+    }
+
+    /**
+     * 词项处理回调
+     */
+    private interface TermConsumer {
+        void accept(Map<String, SlotList> postings, String term);
+    }
+
+    /**
+     * 分词（内部方法）
+     * @param text 文本
+     * @param indexing true-建索引（中日韩连续文字输出全部一元和二元词项），
+     *                 false-查询（长度≥2的连续文字只输出二元词项，长度为1时输出一元词项）
+     * @param consumer 词项回调
+     */
+    private void tokenize(String text, boolean indexing, TermConsumer consumer) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < length && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                emitGrams(text.substring(start, i), indexing, consumer);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < length) {
+                    int c = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                consumer.accept(wordPostings, text.substring(start, i).toLowerCase());
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    /**
+     * 输出一段连续中日韩文字的一元/二元词项（内部方法）
+     */
+    private void emitGrams(String run, boolean indexing, TermConsumer consumer) {
+        int[] cps = run.codePoints().toArray();
+        if (indexing || cps.length == 1) {
+            for (int cp : cps) {
+                consumer.accept(gramPostings, new String(Character.toChars(cp)));
+            }
+        }
+        for (int j = 0; j + 1 < cps.length; j++) {
+            consumer.accept(gramPostings, new String(cps, j, 2));
+        }
+    }
+
+    /**
+     * 判断是否为中日韩文字（按字切分而非按单词切分）
+     */
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -1,6 +1,8 @@
 package managers;
 
+import enums.UserType;
 import models.*;
+import services.LibraryStatistics;
 
 /**
  * 用户管理器类
@@ -12,6 +14,7 @@ public class UserManager {
     private User[] users;           // 用户数组，用于存储所有用户对象
     private int userCount;          // 当前用户数量
     private final int MAX_USERS = 50; // 最大用户容量，常量
+    private final LibraryStatistics statistics = new LibraryStatistics(); // 增量统计（按用户类型计数）
 
     /**
      * 用户管理器构造方法
@@ -45,7 +48,7 @@ public class UserManager {
      * @param user 要添加的用户对象
      * @return true-添加成功, false-添加失败
      */
-    public boolean addUser(User user) {
+    public final boolean addUser(User user) {
         // 1. 检查容量限制
         if (userCount >= MAX_USERS) {
             System.out.println("错误：用户数量已达上限！");
@@ -61,6 +64,7 @@ public class UserManager {
         // 3. 添加用户到数组
         users[userCount] = user;
         userCount++;
+        statistics.userAdded(user);
 
         // 4. 显示添加成功的用户信息
         System.out.println(formatUserInfo(user));
@@ -81,6 +85,7 @@ public class UserManager {
         }
 
         // 2. 删除用户：将后面的元素前移
+        statistics.userRemoved(users[index]);
         for (int i = index; i < userCount - 1; i++) {
             users[i] = users[i + 1];
         }
@@ -163,26 +168,15 @@ public class UserManager {
      * 统计各类用户数量，显示系统容量信息
      */
     public void displayStatistics() {
-        int studentCount = 0;
-        int teacherCount = 0;
-        int librarianCount = 0;
-
-        // 统计各类用户数量
-        for (int i = 0; i < userCount; i++) {
-            String type = users[i].getUserType();
-            switch (type) {
-                case "STUDENT": studentCount++; break;
-                case "TEACHER": teacherCount++; break;
-                case "LIBRARIAN": librarianCount++; break;
-            }
-        }
+        // 各类用户数量由增量统计直接给出，不遍历数组
+        LibraryStatistics.Snapshot snapshot = statistics.snapshot();
 
         // 输出统计信息
         System.out.println("\n--- 用户统计信息 ---");
-        System.out.println("总用户数量: " + userCount);
-        System.out.println("学生用户: " + studentCount);
-        System.out.println("教师用户: " + teacherCount);
-        System.out.println("管理员: " + librarianCount);
+        System.out.println("总用户数量: " + snapshot.getTotalUsers());
+        System.out.println("学生用户: " + snapshot.getUserCount(UserType.STUDENT));
+        System.out.println("教师用户: " + snapshot.getUserCount(UserType.TEACHER));
+        System.out.println("管理员: " + snapshot.getUserCount(UserType.LIBRARIAN));
         System.out.println("可用容量: " + (MAX_USERS - userCount));
     }
 
@@ -193,4 +187,12 @@ public class UserManager {
     public int getUserCount() {
         return userCount;
     }
+
+    /**
+     * 获取增量统计引擎
+     * @return 统计引擎
+     */
+    public LibraryStatistics getStatistics() {
+        return statistics;
+    }
 }
\ No newline at end of file
@@ -1,36 +1,70 @@
 package managers;
 
+import enums.UserType;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
 import models.*;
+import persistence.FilePersistenceManager;
+import services.LibraryStatistics;
 import java.util.*;
 import java.util.stream.Collectors;
 
 /**
  * 增强版用户管理器 - 使用集合框架
+ * 用户存放在泛型槽位容器中，按ID查找和删除都是O(1)
  */
 public class UserManagerEnhanced {
-    // 主数据源：使用ArrayList存储所有用户
-    private final List<User> userList;
+    // 主数据源：泛型槽位容器（主键为用户ID）
+    private final GenericContainer<User> userContainer;
 
-    // 索引：使用HashMap实现ID到User对象的快速查找
-    private final Map<String, User> userIdIndex;
+    // 增量统计（可与图书管理器共用一个，得到合并的快照）
+    private final LibraryStatistics statistics;
 
-    // 可选：泛型容器
-    private GenericContainer<User> userContainer;
+    // 可选：持久化管理器（设置后增删用户写入日志）
+    private FilePersistenceManager persistenceManager;
 
-    // 统计信息
-    private int totalOperations;
+    // 操作指标：按操作计时（无锁，多线程下不丢计数）
+    private final MetricsRegistry metrics;
+    private final OperationTimer findTimer;
+    private final OperationTimer addTimer;
+    private final OperationTimer deleteTimer;
+    private final OperationTimer deleteBatchTimer;
+    private final OperationTimer searchTimer;
 
     /**
-     * 构造方法
+     * 构造方法（加载示例数据）
      */
     public UserManagerEnhanced() {
-        userList = new ArrayList<>();
-        userIdIndex = new HashMap<>();
-        userContainer = new GenericContainer<>("用户容器");
-        totalOperations = 0;
+        this(true);
+    }
+
+    /**
+     * 构造方法
+     * @param loadSampleData 是否加载示例用户（从持久化文件恢复时传false）
+     */
+    public UserManagerEnhanced(boolean loadSampleData) {
+        this(loadSampleData, new LibraryStatistics());
+    }
+
+    /**
+     * 构造方法
+     * @param loadSampleData 是否加载示例用户
+     * @param statistics 增量统计引擎（可与图书管理器共用）
+     */
+    public UserManagerEnhanced(boolean loadSampleData, LibraryStatistics statistics) {
+        this.statistics = statistics;
+        userContainer = new GenericContainer<>("用户容器", User::getId);
+        metrics = new MetricsRegistry("users");
+        findTimer = metrics.timer("findById");
+        addTimer = metrics.timer("add");
+        deleteTimer = metrics.timer("delete");
+        deleteBatchTimer = metrics.timer("deleteBatch");
+        searchTimer = metrics.timer("search");
 
         // 初始化示例数据
-        initSampleUsers();
+        if (loadSampleData) {
+            initSampleUsers();
+        }
     }
 
     /**
@@ -51,24 +85,57 @@ public class UserManagerEnhanced {
      * @param user 用户对象
      * @return 添加是否成功
      */
-    public boolean addUser(User user) {
-        // 检查ID是否已存在
-        if (userIdIndex.containsKey(user.getId())) {
+    public final boolean addUser(User user) {
+        long start = System.nanoTime();
+        // 添加到容器（ID已存在时失败）
+        if (!userContainer.add(user)) {
+            addTimer.recordSince(start, false);
             System.out.println("添加失败：用户ID " + user.getId() + " 已存在！");
             return false;
         }
+        statistics.userAdded(user);
+
+        // 写入持久化日志；写入失败时撤销添加，内存中不留下日志里没有的用户
+        if (persistenceManager != null) {
+            try {
+                persistenceManager.logAddUser(user);
+            } catch (RuntimeException e) {
+                userContainer.removeByKey(user.getId());
+                statistics.userRemoved(user);
+                addTimer.recordSince(start, false);
+                throw e;
+            }
+        }
 
-        // 添加到主列表
-        userList.add(user);
-
-        // 更新索引
-        userIdIndex.put(user.getId(), user);
+        addTimer.recordSince(start);
+        System.out.println("成功添加用户：" + user.getName() + " (" + user.getUserType() + ")");
+        return true;
+    }
 
-        // 可选：添加到泛型容器
-        userContainer.add(user);
+    /**
+     * 恢复用户（持久化恢复专用）：不输出、不写日志
+     * @param user 用户对象
+     * @return 添加是否成功（ID已存在时失败）
+     */
+    public boolean restoreUser(User user) {
+        if (!userContainer.add(user)) {
+            return false;
+        }
+        statistics.userAdded(user);
+        return true;
+    }
 
-        totalOperations++;
-        System.out.println("成功添加用户：" + user.getName() + " (" + user.getUserType() + ")");
+    /**
+     * 删除恢复中的用户（持久化恢复专用）：不输出、不写日志
+     * @param userId 用户ID
+     * @return 删除是否成功
+     */
+    public boolean discardUser(String userId) {
+        User user = userContainer.removeByKey(userId);
+        if (user == null) {
+            return false;
+        }
+        statistics.userRemoved(user);
         return true;
     }
 
@@ -78,8 +145,10 @@ public class UserManagerEnhanced {
      * @return 用户对象，未找到返回null
      */
     public User findUserById(String userId) {
-        totalOperations++;
-        return userIdIndex.get(userId);
+        long start = System.nanoTime();
+        User user = userContainer.get(userId);
+        findTimer.recordSince(start);
+        return user;
     }
 
     /**
@@ -88,31 +157,58 @@ public class UserManagerEnhanced {
      * @return 删除是否成功
      */
     public boolean deleteUser(String userId) {
-        User user = userIdIndex.get(userId);
+        long start = System.nanoTime();
+        // 从容器删除（最后一个用户移入空出的槽位，O(1)）
+        User user = userContainer.removeByKey(userId);
         if (user == null) {
+            deleteTimer.recordSince(start, false);
             System.out.println("删除失败：未找到ID为 " + userId + " 的用户");
             return false;
         }
+        statistics.userRemoved(user);
 
-        // 从主列表删除
-        userList.remove(user);
-
-        // 从索引删除
-        userIdIndex.remove(userId);
-
-        // 可选：从泛型容器删除
-        userContainer.remove(user);
+        // 写入持久化日志
+        if (persistenceManager != null) {
+            persistenceManager.logDeleteUser(userId);
+        }
 
-        totalOperations++;
+        deleteTimer.recordSince(start);
         System.out.println("成功删除用户：" + user.getName());
         return true;
     }
 
+    /**
+     * 批量删除用户（如毕业生注销），每个用户的删除都是O(1)
+     * @param userIds 用户ID集合（不存在的ID跳过）
+     * @return 实际删除的用户数量
+     */
+    public int deleteUsers(Collection<String> userIds) {
+        long start = System.nanoTime();
+        int deleted = 0;
+        int skipped = 0;     // 不存在或重复的ID
+        for (String userId : userIds) {
+            User user = userContainer.removeByKey(userId);
+            if (user == null) {
+                skipped++;
+                continue;
+            }
+            statistics.userRemoved(user);
+            if (persistenceManager != null) {
+                persistenceManager.logDeleteUser(userId);
+            }
+            deleted++;
+        }
+
+        deleteBatchTimer.recordSince(start);
+        System.out.println("批量删除完成：删除 " + deleted + " 个用户，跳过 " + skipped + " 个ID");
+        return deleted;
+    }
+
     /**
      * 显示所有用户
      */
     public void displayAllUsers() {
-        displayUsers(userList, "所有用户列表");
+        displayUsers(userContainer.asList(), "所有用户列表");
     }
 
     /**
@@ -163,24 +259,16 @@ public class UserManagerEnhanced {
      * 显示统计信息
      */
     public void displayStatistics() {
-        // 使用流API统计各类用户数量
-        long studentCount = userList.stream()
-                .filter(user -> "STUDENT".equals(user.getUserType()))
-                .count();
-        long teacherCount = userList.stream()
-                .filter(user -> "TEACHER".equals(user.getUserType()))
-                .count();
-        long librarianCount = userList.stream()
-                .filter(user -> "LIBRARIAN".equals(user.getUserType()))
-                .count();
+        // 各类用户数量由增量统计直接给出，不再逐个扫描
+        LibraryStatistics.Snapshot snapshot = statistics.snapshot();
 
         System.out.println("\n=== 用户统计信息 ===");
-        System.out.println("总用户数量: " + userList.size());
-        System.out.println("学生用户: " + studentCount);
-        System.out.println("教师用户: " + teacherCount);
-        System.out.println("管理员: " + librarianCount);
-        System.out.println("总操作次数: " + totalOperations);
-        System.out.println("泛型容器中的用户数量: " + userContainer.size());
+        System.out.println("总用户数量: " + snapshot.getTotalUsers());
+        System.out.println("学生用户: " + snapshot.getUserCount(UserType.STUDENT));
+        System.out.println("教师用户: " + snapshot.getUserCount(UserType.TEACHER));
+        System.out.println("管理员: " + snapshot.getUserCount(UserType.LIBRARIAN));
+        System.out.println(metrics.getSummary());
+        System.out.println(userContainer.getSummary());
     }
 
     /**
@@ -191,7 +279,7 @@ public class UserManagerEnhanced {
 
         // 创建TreeSet，按姓名排序
         Set<User> treeSetByName = new TreeSet<>(Comparator.comparing(User::getName));
-        treeSetByName.addAll(userList);
+        treeSetByName.addAll(userContainer.asList());
 
         System.out.println("TreeSet 按姓名排序（自动去重，基于姓名）：");
         int count = 1;
@@ -201,7 +289,7 @@ public class UserManagerEnhanced {
 
         // 按用户ID排序
         Set<User> treeSetById = new TreeSet<>(Comparator.comparing(User::getId));
-        treeSetById.addAll(userList);
+        treeSetById.addAll(userContainer.asList());
 
         System.out.println("\nTreeSet 按ID排序：");
         count = 1;
@@ -216,9 +304,53 @@ public class UserManagerEnhanced {
      * @return 匹配的用户列表
      */
     public List<User> searchUsers(String keyword) {
-        return userList.stream()
-                .filter(user -> user.getName().toLowerCase().contains(keyword.toLowerCase()))
+        long start = System.nanoTime();
+        String lowerKeyword = keyword.toLowerCase();
+        List<User> result = userContainer.stream()
+                .filter(user -> user.getName().toLowerCase().contains(lowerKeyword))
                 .collect(Collectors.toList());
+        searchTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 设置持久化管理器（设置为null则停止记录）
+     * @param persistenceManager 持久化管理器
+     */
+    public void setPersistenceManager(FilePersistenceManager persistenceManager) {
+        this.persistenceManager = persistenceManager;
+    }
+
+    /**
+     * 获取所有用户（只读视图）
+     * @return 所有用户列表
+     */
+    public List<User> getAllUsers() {
+        return userContainer.asList();
+    }
+
+    /**
+     * 获取增量统计引擎
+     * @return 统计引擎
+     */
+    public LibraryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 获取操作指标注册表（用于JMX注册或导出Prometheus文本）
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取总操作次数
+     * @return 操作次数
+     */
+    public long getTotalOperations() {
+        return metrics.getTotalOperations();
     }
 
     /**
@@ -226,6 +358,6 @@ public class UserManagerEnhanced {
      * @return 用户总数
      */
     public int getUserCount() {
-        return userList.size();
+        return userContainer.size();
     }
 }
\ No newline at end of file
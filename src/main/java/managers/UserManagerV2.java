@@ -1,4 +1,174 @@
 package managers;
 
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import models.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 线程安全版用户管理器 - 面向多个借还书台并发访问
+ * 使用ConcurrentHashMap存储用户，与BookManagerV2配合供并发请求按ID查找用户；
+ * 所有读操作均不加锁，增删只竞争单个哈希桶
+ */
 public class UserManagerV2 {
+    // 主数据源兼索引：ID到User对象的并发映射
+    private final ConcurrentHashMap<String, User> users;
+
+    // 操作指标（计时器与计数器都是无锁的，多线程累加无竞争）
+    private final MetricsRegistry metrics;
+    private final OperationTimer findTimer;
+    private final OperationTimer addTimer;
+    private final OperationTimer deleteTimer;
+    private final OperationTimer searchTimer;
+    private final LongAdder addCount;
+    private final LongAdder deleteCount;
+
+    /**
+     * 构造方法（加载示例数据）
+     */
+    public UserManagerV2() {
+        this(true);
+    }
+
+    /**
+     * 构造方法
+     * @param loadSampleData 是否加载示例用户
+     */
+    public UserManagerV2(boolean loadSampleData) {
+        users = new ConcurrentHashMap<>();
+        metrics = new MetricsRegistry("users_v2");
+        findTimer = metrics.timer("findById");
+        addTimer = metrics.timer("add");
+        deleteTimer = metrics.timer("delete");
+        searchTimer = metrics.timer("search");
+        addCount = metrics.counter("added");
+        deleteCount = metrics.counter("deleted");
+
+        // 初始化示例数据
+        if (loadSampleData) {
+            initSampleUsers();
+        }
+    }
+
+    /**
+     * 初始化示例用户
+     */
+    private void initSampleUsers() {
+        System.out.println("--- 线程安全版用户管理器初始化 ---");
+        addUser(new Librarian("L001", "管理员", "EMP001"));
+        addUser(new Teacher("T001", "张老师", "TEA001"));
+        addUser(new Teacher("T002", "李教授", "TEA002"));
+        addUser(new Student("S001", "王小明", "STU001"));
+        addUser(new Student("S002", "李小红", "STU002"));
+        addUser(new Student("S003", "赵小刚", "STU003"));
+    }
+
+    /**
+     * 添加用户（ID检查与插入是一个原子操作）
+     * @param user 用户对象
+     * @return 添加是否成功
+     */
+    public final boolean addUser(User user) {
+        long start = System.nanoTime();
+        if (users.putIfAbsent(user.getId(), user) != null) {
+            addTimer.recordSince(start, false);
+            System.out.println("添加失败：用户ID " + user.getId() + " 已存在！");
+            return false;
+        }
+        addCount.increment();
+        addTimer.recordSince(start);
+        System.out.println("成功添加用户：" + user.getName() + " (" + user.getUserType() + ")");
+        return true;
+    }
+
+    /**
+     * 根据ID查找用户（无锁读取）
+     * @param userId 用户ID
+     * @return 用户对象，未找到返回null
+     */
+    public User findUserById(String userId) {
+        long start = System.nanoTime();
+        User user = users.get(userId);
+        findTimer.recordSince(start);
+        return user;
+    }
+
+    /**
+     * 删除用户
+     * @param userId 用户ID
+     * @return 删除是否成功
+     */
+    public boolean deleteUser(String userId) {
+        long start = System.nanoTime();
+        User user = users.remove(userId);
+        if (user == null) {
+            deleteTimer.recordSince(start, false);
+            System.out.println("删除失败：未找到ID为 " + userId + " 的用户");
+            return false;
+        }
+        deleteCount.increment();
+        deleteTimer.recordSince(start);
+        System.out.println("成功删除用户：" + user.getName());
+        return true;
+    }
+
+    /**
+     * 搜索用户（弱一致性遍历，不加锁）
+     * @param keyword 关键词（可以是姓名的一部分）
+     * @return 匹配的用户列表
+     */
+    public List<User> searchUsers(String keyword) {
+        long start = System.nanoTime();
+        String lowerKeyword = keyword.toLowerCase();
+        List<User> result = users.values().stream()
+                .filter(user -> user.getName().toLowerCase().contains(lowerKeyword))
+                .collect(Collectors.toList());
+        searchTimer.recordSince(start);
+        return result;
+    }
+
+    /**
+     * 获取所有用户（弱一致性快照）
+     * @return 用户列表
+     */
+    public List<User> getAllUsers() {
+        return new ArrayList<>(users.values());
+    }
+
+    /**
+     * 显示统计信息
+     */
+    public void displayStatistics() {
+        System.out.println("\n=== 用户统计信息 ===");
+        System.out.println("总用户数量: " + users.size());
+        System.out.println("累计添加: " + addCount.sum() + " | 累计删除: " + deleteCount.sum());
+        System.out.println(metrics.getSummary());
+    }
+
+    /**
+     * 获取用户数量
+     * @return 用户总数
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * 获取总操作次数
+     * @return 操作次数
+     */
+    public long getTotalOperations() {
+        return metrics.getTotalOperations();
+    }
+
+    /**
+     * 获取操作指标注册表（用于JMX注册或导出Prometheus文本）
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
 }
@@ -1,9 +1,13 @@
 package menus;
 
+import exception.LibraryException;
 import managers.*;
 import models.*;
+import services.HoldService;
+import services.LibraryService;
+import java.util.List;
 import java.util.Scanner;
-import java.util.Date;
+import utils.EpochDays;
 
 /**
  * 菜单系统类
@@ -12,9 +16,12 @@ import java.util.Date;
  */
 public class Menu {
     // ========== 成员变量 ==========
+    private static final int PAGE_SIZE = 10; // 列表每页显示的图书数
     private Scanner scanner;          // 输入扫描器，用于接收用户输入
     private BookManager bookManager;  // 图书管理器依赖
     private UserManager userManager;  // 用户管理器依赖
+    private LibraryService libraryService; // 借还书事务服务
+    private HoldService holdService;  // 预约服务
     private User currentUser;         // 当前登录用户（null表示未登录）
 
     /**
@@ -26,6 +33,8 @@ public class Menu {
         this.scanner = new Scanner(System.in);        // 初始化输入扫描器
         this.bookManager = bookManager;               // 注入图书管理器
         this.userManager = userManager;               // 注入用户管理器
+        this.libraryService = new LibraryService();   // 借还书事务服务
+        this.holdService = new HoldService();         // 预约服务
         this.currentUser = null;                      // 初始状态：未登录
     }
 
@@ -111,6 +120,8 @@ public class Menu {
         System.out.println("2. 借阅图书");   // 借阅图书
         System.out.println("3. 归还图书");   // 归还图书
         System.out.println("4. 查看我的借阅"); // 查看个人借阅记录
+        System.out.println("5. 预约图书");   // 预约已借出的图书
+        System.out.println("6. 我的预约");   // 查看/取消预约
         System.out.println("0. 登出系统");   // 退出登录
     }
 
@@ -124,7 +135,7 @@ public class Menu {
                 userLogin();
                 break;
             case 2:  // 图书浏览
-                bookManager.displayAllBooks();
+                browseBooks();
                 break;
             case 0:  // 退出系统
                 System.out.println("感谢使用图书馆管理系统，再见！");
@@ -178,7 +189,7 @@ public class Menu {
     private void handleNormalUserChoice(int choice) {
         switch (choice) {
             case 1:  // 图书浏览
-                bookManager.displayAllBooks();
+                browseBooks();
                 break;
             case 2:  // 借阅图书
                 borrowBookMenu();
@@ -189,6 +200,12 @@ public class Menu {
             case 4:  // 查看我的借阅
                 showMyBorrowedBooks();
                 break;
+            case 5:  // 预约图书
+                placeHoldMenu();
+                break;
+            case 6:  // 我的预约
+                showMyHolds();
+                break;
             case 0:  // 登出
                 logout();
                 break;
@@ -231,6 +248,7 @@ public class Menu {
      */
     private void borrowBookMenu() {
         System.out.println("\n=== 借阅图书 ===");
+        holdService.expireHolds(EpochDays.today());   // 释放超过取书期限的预留
 
         // 1. 检查借阅限制
         if (currentUser.hasReachedBorrowLimit()) {
@@ -238,41 +256,70 @@ public class Menu {
             return;
         }
 
-        // 2. 获取可借图书
-        Book[] availableBooks = bookManager.getAvailableBooks();
-        if (availableBooks.length == 0) {
-            System.out.println("当前没有可借阅的图书");
+        // 2. 分页显示可借图书并选择（每次只取一页）
+        Page<Book> page = bookManager.getAvailableBooksPage(null, PAGE_SIZE);
+        if (page.isEmpty()) {
+            System.out.println("当前没有可借阅的图书，可以通过“预约图书”排队等候");
             return;
         }
+        Book book = null;
+        while (book == null) {
+            System.out.println("=== 可借图书列表 ===");
+            List<Book> items = page.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                System.out.println((i + 1) + ". " + formatBookShortInfo(items.get(i)));
+            }
 
-        // 3. 显示可借图书列表
-        System.out.println("=== 可借图书列表 ===");
-        for (int i = 0; i < availableBooks.length; i++) {
-            System.out.println((i + 1) + ". " + formatBookShortInfo(availableBooks[i]));
-        }
-
-        // 4. 用户选择
-        System.out.print("请输入要借阅的图书编号: ");
-        int choice = getIntInput();
-
-        if (choice < 1 || choice > availableBooks.length) {
-            System.out.println("错误：无效的图书编号！");
-            return;
+            // 3. 用户选择
+            System.out.print(page.hasNext() ? "请输入要借阅的图书编号（n 下一页，0 返回）: "
+                    : "请输入要借阅的图书编号（0 返回）: ");
+            String input = getStringInput();
+            if (page.hasNext() && input.equalsIgnoreCase("n")) {
+                page = bookManager.getAvailableBooksPage(page.getNextToken(), PAGE_SIZE);
+                continue;
+            }
+            int choice;
+            try {
+                choice = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                choice = -1;
+            }
+            if (choice == 0) {
+                return;
+            }
+            if (choice < 1 || choice > items.size()) {
+                System.out.println("错误：无效的图书编号！");
+                return;
+            }
+            book = items.get(choice - 1);
         }
 
-        Book book = availableBooks[choice - 1];
-
-        // 5. 检查借阅资格
-        interfaces.IBorrowable borrowable = (interfaces.IBorrowable) book;
-        if (!borrowable.canBorrow(currentUser)) {
-            System.out.println("错误：不能借阅该图书！");
-            return;
+        // 5. 执行借阅（资格检查、图书状态与用户计数在同一事务中更新）
+        try {
+            libraryService.borrowBook(currentUser, book, EpochDays.today());
+            System.out.println("借阅成功！");
+        } catch (LibraryException e) {
+            System.out.println("错误：" + e.getMessage());
         }
+    }
 
-        // 6. 执行借阅
-        if (borrowable.borrow(currentUser, new Date())) {
-            currentUser.borrowItem();  // 更新用户借阅计数
-            System.out.println("借阅成功！");
+    /**
+     * 分页浏览所有图书（每次只读取一页）
+     */
+    private void browseBooks() {
+        String token = null;
+        int pageNumber = 1;
+        while (true) {
+            System.out.println("\n=== 所有图书列表（第 " + pageNumber + " 页） ===");
+            token = bookManager.displayBooksPage(token, PAGE_SIZE);
+            if (token == null) {
+                return;
+            }
+            System.out.print("回车查看下一页，输入 q 返回: ");
+            if (getStringInput().equalsIgnoreCase("q")) {
+                return;
+            }
+            pageNumber++;
         }
     }
 
@@ -306,11 +353,12 @@ public class Menu {
 
         Book book = borrowedBooks[choice - 1];
 
-        // 4. 执行归还
-        interfaces.IReturnable returnable = (interfaces.IReturnable) book;
-        if (returnable.returnItem(new Date())) {
-            currentUser.returnItem();  // 更新用户借阅计数
+        // 4. 执行归还（图书状态与用户计数在同一事务中更新）
+        try {
+            libraryService.returnBook(currentUser, book, EpochDays.today());
             System.out.println("归还成功！");
+        } catch (LibraryException e) {
+            System.out.println("错误：" + e.getMessage());
         }
     }
 
@@ -333,6 +381,81 @@ public class Menu {
         System.out.println("共借阅 " + borrowedBooks.length + " 本图书");
     }
 
+    /**
+     * 预约图书菜单（图书归还后自动为预约者预留）
+     */
+    private void placeHoldMenu() {
+        System.out.println("\n=== 预约图书 ===");
+
+        // 1. 获取已借出的图书（不含自己借的）
+        Book[] borrowedBooks = bookManager.getBorrowedBooks();
+        int count = 0;
+        for (Book book : borrowedBooks) {
+            if (!currentUser.getId().equals(book.getBorrowerId())) {
+                borrowedBooks[count++] = book;
+            }
+        }
+        if (count == 0) {
+            System.out.println("当前没有需要预约的图书");
+            return;
+        }
+
+        // 2. 显示列表及排队人数
+        System.out.println("=== 已借出图书列表 ===");
+        for (int i = 0; i < count; i++) {
+            System.out.println((i + 1) + ". " + formatBookShortInfo(borrowedBooks[i])
+                    + " | 排队: " + holdService.getQueueLength(borrowedBooks[i]) + "人");
+        }
+
+        // 3. 用户选择
+        System.out.print("请输入要预约的图书编号: ");
+        int choice = getIntInput();
+
+        if (choice < 1 || choice > count) {
+            System.out.println("错误：无效的图书编号！");
+            return;
+        }
+
+        // 4. 加入预约队列
+        try {
+            holdService.placeHold(currentUser, borrowedBooks[choice - 1], EpochDays.today());
+            System.out.println("预约成功！图书归还后将为您预留 " + HoldService.DEFAULT_PICKUP_DAYS + " 天");
+        } catch (LibraryException e) {
+            System.out.println("错误：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 显示我的预约（可取消）
+     */
+    private void showMyHolds() {
+        System.out.println("\n=== 我的预约 ===");
+        holdService.expireHolds(EpochDays.today());
+
+        List<HoldService.Hold> holds = holdService.getHolds(currentUser.getId());
+        if (holds.isEmpty()) {
+            System.out.println("您当前没有预约");
+            return;
+        }
+
+        for (int i = 0; i < holds.size(); i++) {
+            System.out.println((i + 1) + ". " + holds.get(i));
+        }
+
+        System.out.print("输入编号取消预约（0返回）: ");
+        int choice = getIntInput();
+        if (choice < 1 || choice > holds.size()) {
+            return;
+        }
+
+        HoldService.Hold hold = holds.get(choice - 1);
+        if (holdService.cancelHold(currentUser, hold.getBook())) {
+            System.out.println("已取消预约：《" + hold.getBook().getTitle() + "》");
+        } else {
+            System.out.println("取消失败：预约已结束");
+        }
+    }
+
     /**
      * 图书管理子菜单
      */
@@ -355,7 +478,7 @@ public class Menu {
                     deleteBookMenu();
                     break;
                 case 3:  // 显示所有图书
-                    bookManager.displayAllBooks();
+                    browseBooks();
                     break;
                 case 0:  // 返回上级
                     return;
@@ -416,7 +539,7 @@ public class Menu {
      */
     private void deleteBookMenu() {
         System.out.println("\n=== 删除图书 ===");
-        bookManager.displayAllBooks();  // 先显示所有图书
+        browseBooks();  // 先分页浏览图书
 
         System.out.print("请输入要删除的图书ID: ");
         String bookId = getStringInput();
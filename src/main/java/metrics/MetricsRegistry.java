@@ -0,0 +1,288 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 指标注册表
+ * 每个管理器/服务持有一个注册表，按操作名创建计时器（OperationTimer），按事件名创建计数器（LongAdder）；
+ * 记录和累加都是无锁的，多线程下不会丢失计数
+ *
+ * 导出方式：
+ * - JMX：registerMBeans() 把注册表和各计时器注册到平台MBeanServer（jconsole/VisualVM可见）
+ * - Prometheus文本格式：writePrometheus(...) 写到任意输出、文件（原子替换，供node_exporter文本采集）或标准输出；
+ *   多个注册表写到同一份输出时用静态方法 writePrometheus(out, registries...)，每个指标族只输出一次类型说明
+ */
+public class MetricsRegistry implements MetricsRegistryMBean {
+    // 导出的指标名
+    private static final String DURATION_METRIC = "library_operation_duration_seconds";
+    private static final String FAILURE_METRIC = "library_operation_failures_total";
+    private static final String EVENT_METRIC = "library_events_total";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final String name;
+    private final ConcurrentHashMap<String, OperationTimer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    /**
+     * 构造方法
+     * @param name 注册表名称（导出时作为registry标签，如 books、users）
+     */
+    public MetricsRegistry(String name) {
+        this.name = name;
+    }
+
+    // ========== 创建指标 ==========
+
+    /**
+     * 获取或创建操作计时器
+     * @param operation 操作名称（如 findById、add、delete、search）
+     * @return 计时器（同名返回同一个）
+     */
+    public OperationTimer timer(String operation) {
+        return timers.computeIfAbsent(operation, OperationTimer::new);
+    }
+
+    /**
+     * 获取或创建事件计数器
+     * @param event 事件名称（如 added、deleted）
+     * @return 计数器（同名返回同一个）
+     */
+    public LongAdder counter(String event) {
+        return counters.computeIfAbsent(event, key -> new LongAdder());
+    }
+
+    // ========== 查询 ==========
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取所有计时器记录的操作总数
+     * @return 操作总数
+     */
+    @Override
+    public long getTotalOperations() {
+        long total = 0;
+        for (OperationTimer timer : timers.values()) {
+            total += timer.getCount();
+        }
+        return total;
+    }
+
+    /**
+     * 获取控制台摘要（每个有记录的计时器一行，按操作名排序）
+     * @return 摘要文本
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("操作统计（").append(name).append("）: 共 ").append(getTotalOperations()).append(" 次");
+        for (OperationTimer timer : new TreeMap<>(timers).values()) {
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            sb.append("\n  ").append(String.format("%-14s", timer.getOperation()))
+                    .append(timer.getHistogram().getSummary());
+            if (timer.getFailureCount() > 0) {
+                sb.append(", failed=").append(timer.getFailureCount());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (OperationTimer timer : timers.values()) {
+            timer.reset();
+        }
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    // ========== JMX ==========
+
+    /**
+     * 把注册表和当前所有计时器注册到平台MBeanServer
+     * 对象名：library:type=MetricsRegistry,name=注册表名
+     *         library:type=OperationTimer,registry=注册表名,operation=操作名
+     * 之后新建的计时器需要再次调用本方法才会出现在JMX中
+     * @return 本次新注册的MBean数量
+     * @throws JMException 对象名冲突（如同名注册表已注册）等
+     */
+    public synchronized int registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        int registered = 0;
+        ObjectName registryName = new ObjectName("library:type=MetricsRegistry,name=" + ObjectName.quote(name));
+        if (!registeredNames.contains(registryName)) {
+            server.registerMBean(this, registryName);
+            registeredNames.add(registryName);
+            registered++;
+        }
+        for (OperationTimer timer : timers.values()) {
+            ObjectName timerName = new ObjectName("library:type=OperationTimer,registry=" + ObjectName.quote(name)
+                    + ",operation=" + ObjectName.quote(timer.getOperation()));
+            if (!registeredNames.contains(timerName)) {
+                server.registerMBean(timer, timerName);
+                registeredNames.add(timerName);
+                registered++;
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * 注销本注册表注册过的所有MBean
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // 已被外部注销，忽略
+            }
+        }
+        registeredNames.clear();
+    }
+
+    // ========== Prometheus 文本格式 ==========
+
+    @Override
+    public String getPrometheusText() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writePrometheus(sb, this);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);    // StringBuilder不会抛出IOException
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 以Prometheus文本格式写出本注册表的指标
+     * @param out 输出目标
+     * @throws IOException 写出失败
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        writePrometheus(out, this);
+    }
+
+    /**
+     * 以Prometheus文本格式把指标写到文件（先写临时文件再原子替换，采集方不会读到半份内容）
+     * @param file 目标文件
+     * @throws IOException 写出失败
+     */
+    public void writePrometheus(Path file) throws IOException {
+        writePrometheusFile(file, this);
+    }
+
+    /**
+     * 以Prometheus文本格式把指标打印到标准输出
+     */
+    public void printPrometheus() {
+        System.out.print(getPrometheusText());
+    }
+
+    /**
+     * 把多个注册表的指标写到同一个文件（原子替换）
+     * @param file 目标文件
+     * @param registries 注册表
+     * @throws IOException 写出失败
+     */
+    public static void writePrometheusFile(Path file, MetricsRegistry... registries) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writePrometheus(writer, registries);
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以Prometheus文本格式写出多个注册表的指标（每个指标族只写一次HELP/TYPE）
+     * @param out 输出目标
+     * @param registries 注册表
+     * @throws IOException 写出失败
+     */
+    public static void writePrometheus(Appendable out, MetricsRegistry... registries) throws IOException {
+        out.append("# HELP ").append(DURATION_METRIC).append(" 操作耗时\n");
+        out.append("# TYPE ").append(DURATION_METRIC).append(" summary\n");
+        for (MetricsRegistry registry : registries) {
+            for (OperationTimer timer : new TreeMap<>(registry.timers).values()) {
+                String labels = "registry=\"" + escape(registry.name)
+                        + "\",operation=\"" + escape(timer.getOperation()) + "\"";
+                for (double quantile : QUANTILES) {
+                    out.append(DURATION_METRIC).append('{').append(labels)
+                            .append(",quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                            .append(seconds(timer.getHistogram().getValueAtPercentile(quantile * 100))).append('\n');
+                }
+                out.append(DURATION_METRIC).append("_sum{").append(labels).append("} ")
+                        .append(seconds(timer.getHistogram().getTotalNanos())).append('\n');
+                out.append(DURATION_METRIC).append("_count{").append(labels).append("} ")
+                        .append(Long.toString(timer.getCount())).append('\n');
+            }
+        }
+
+        out.append("# HELP ").append(FAILURE_METRIC).append(" 失败的操作数\n");
+        out.append("# TYPE ").append(FAILURE_METRIC).append(" counter\n");
+        for (MetricsRegistry registry : registries) {
+            for (OperationTimer timer : new TreeMap<>(registry.timers).values()) {
+                out.append(FAILURE_METRIC).append("{registry=\"").append(escape(registry.name))
+                        .append("\",operation=\"").append(escape(timer.getOperation())).append("\"} ")
+                        .append(Long.toString(timer.getFailureCount())).append('\n');
+            }
+        }
+
+        out.append("# HELP ").append(EVENT_METRIC).append(" 事件计数\n");
+        out.append("# TYPE ").append(EVENT_METRIC).append(" counter\n");
+        for (MetricsRegistry registry : registries) {
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(registry.counters).entrySet()) {
+                out.append(EVENT_METRIC).append("{registry=\"").append(escape(registry.name))
+                        .append("\",event=\"").append(escape(entry.getKey())).append("\"} ")
+                        .append(Long.toString(entry.getValue().sum())).append('\n');
+            }
+        }
+    }
+
+    // ========== 内部方法 ==========
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * 转义标签值中的反斜杠、双引号和换行
+     */
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
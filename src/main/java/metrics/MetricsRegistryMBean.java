@@ -0,0 +1,26 @@
+package metrics;
+
+/**
+ * 指标注册表的JMX管理接口（标准MBean）
+ */
+public interface MetricsRegistryMBean {
+    /**
+     * @return 注册表名称
+     */
+    String getName();
+
+    /**
+     * @return 所有计时器记录的操作总数
+     */
+    long getTotalOperations();
+
+    /**
+     * @return Prometheus文本格式的全部指标
+     */
+    String getPrometheusText();
+
+    /**
+     * 清空所有计时器和计数器
+     */
+    void reset();
+}
@@ -0,0 +1,106 @@
+package metrics;
+
+import concurrent.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 操作计时器
+ * 每次操作记录一次耗时到无锁延迟直方图，失败的操作另外计数；
+ * 多线程同时记录没有锁竞争，读取时得到近似的实时快照
+ *
+ * 用法：
+ *     long start = System.nanoTime();
+ *     ... 执行操作 ...
+ *     timer.recordSince(start);
+ */
+public class OperationTimer implements OperationTimerMBean {
+    private final String operation;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 构造方法（由MetricsRegistry创建）
+     * @param operation 操作名称（如 findById）
+     */
+    OperationTimer(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * 记录一次成功的操作
+     * @param startNanos 操作开始时的 System.nanoTime()
+     */
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一次操作
+     * @param startNanos 操作开始时的 System.nanoTime()
+     * @param success 操作是否成功（失败的操作同样计入耗时）
+     */
+    public void recordSince(long startNanos, boolean success) {
+        histogram.record(System.nanoTime() - startNanos);
+        if (!success) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * 获取操作名称
+     * @return 操作名称
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * 获取底层延迟直方图（用于汇总或自定义分位数）
+     * @return 延迟直方图
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return histogram.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return histogram.getValueAtPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return histogram.getValueAtPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return histogram.getValueAtPercentile(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return histogram.getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+        failures.reset();
+    }
+}
@@ -0,0 +1,25 @@
+package metrics;
+
+/**
+ * 操作计时器的JMX管理接口（标准MBean，属性单位为微秒）
+ */
+public interface OperationTimerMBean {
+    long getCount();
+
+    long getFailureCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * 清空计时记录
+     */
+    void reset();
+}
@@ -1,10 +1,14 @@
 package models;
 
 import interfaces.IBorrowable;
+import interfaces.ILoanListener;
 import interfaces.IReturnable;
 import enums.BookCategory;
+import enums.UserType;
+import utils.EpochDays;
+import utils.Isbn;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.Calendar;
 
 /**
  * 图书类
@@ -15,14 +19,27 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
     // ========== 图书基本属性 ==========
     private String author;           // 作者
     private String ISBN;             // 国际标准书号，图书唯一标识
+    private long isbnKey;            // 规范化的EAN-13书号键（Isbn.INVALID表示书号无效）
     private BookCategory category;   // 图书分类
     private int pageCount;           // 页数
     private int year;                // 出版年份
 
     // ========== 借阅相关属性 ==========
-    private String borrowerId;       // 当前借阅者ID（null表示未被借出）
-    private Date borrowDate;         // 借阅日期
-    private Date dueDate;            // 应归还日期
+    // volatile：并发管理器中的查询线程不加锁读取借阅状态
+    // 日期以日序号（自1970-01-01起的天数）保存，借还和逾期判断都是整数运算，不创建日期对象
+    private volatile String borrowerId;       // 当前借阅者ID（null表示未被借出）
+    private volatile int borrowEpochDay;      // 借阅日（EpochDays.NONE表示未被借出）
+    private volatile int dueEpochDay;         // 应归还日（EpochDays.NONE表示未被借出）
+    private volatile UserType borrowerType;   // 借阅者类型（决定罚款费率，null表示未知）
+
+    // ========== 预约预留（预约队列把归还的图书交给下一位预约者） ==========
+    private volatile String reservedFor;          // 预留给的读者ID（null表示未预留）
+    private volatile int reservedUntilEpochDay;   // 取书截止日（含当天）
+
+    // ========== 借阅事件监听 ==========
+    private static final ILoanListener[] NO_LISTENERS = new ILoanListener[0];
+    // 写时复制数组：借还时无锁遍历，未注册监听器的图书不额外占用集合对象
+    private volatile ILoanListener[] loanListeners = NO_LISTENERS;
 
     /**
      * 完整参数构造方法
@@ -36,12 +53,15 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
         super(id, title);                    // 调用父类构造方法
         this.author = author;
         this.ISBN = ISBN;
+        this.isbnKey = Isbn.toKey(ISBN);
         this.category = category;
         this.pageCount = 0;                  // 默认页数为0
         this.year = 2024;                    // 默认出版年份为2024
         this.borrowerId = null;              // 初始状态：未被借出
-        this.borrowDate = null;
-        this.dueDate = null;
+        this.borrowEpochDay = EpochDays.NONE;
+        this.dueEpochDay = EpochDays.NONE;
+        this.reservedFor = null;             // 初始状态：未预留
+        this.reservedUntilEpochDay = EpochDays.NONE;
     }
 
     /**
@@ -87,20 +107,52 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
      */
     @Override
     public boolean borrow(User user, Date borrowDate) {
+        return borrow(user, EpochDays.of(borrowDate));
+    }
+
+    /**
+     * 借阅图书（日序号版本，同步方法：检查与状态变更在同一把图书对象锁内完成）
+     * @param user 借阅用户
+     * @param borrowEpochDay 借阅日
+     * @return true-借阅成功, false-借阅失败
+     */
+    @Override
+    public boolean borrow(User user, int borrowEpochDay) {
+        return borrow(user, borrowEpochDay, LoanPolicy.current());
+    }
+
+    /**
+     * 按指定规则表借阅图书（调用方已取得规则表快照时使用，整个事务看到同一份规则）
+     * @param user 借阅用户
+     * @param borrowEpochDay 借阅日
+     * @param policy 借阅规则表（资格检查与借期计算都使用这一份）
+     * @return true-借阅成功, false-借阅失败
+     */
+    public synchronized boolean borrow(User user, int borrowEpochDay, LoanPolicy policy) {
+        UserType type = user.getUserTypeEnum();
+
         // 1. 检查是否可以借阅
-        if (!canBorrow(user)) {
+        if (!canBorrow(user, type, policy, borrowEpochDay)) {
             System.out.println("借阅失败：不满足借阅条件");
             return false;
         }
 
-        // 2. 设置借阅信息
+        // 2. 设置借阅信息（预留随之结束）
+        this.reservedFor = null;
+        this.reservedUntilEpochDay = EpochDays.NONE;
         this.borrowerId = user.getId();
-        this.borrowDate = borrowDate;
-        this.available = false;  // 标记为不可借状态
+        this.borrowerType = type;
+        this.borrowEpochDay = borrowEpochDay;
+
+        // 3. 计算应归还日（查规则表）
+        this.dueEpochDay = borrowEpochDay + policy.getLoanDays(type, getCategory());
+        setAvailable(false);     // 标记为不可借状态（通知可借状态监听器）
 
-        // 3. 计算应归还日期
-        calculateDueDate(user);
-        System.out.println("借阅成功！应还日期：" + dueDate);
+        // 4. 通知监听器（如借阅者索引）
+        for (ILoanListener listener : loanListeners) {
+            listener.onBorrowed(this);
+        }
+        System.out.println("借阅成功！应还日期：" + EpochDays.toLocalDate(dueEpochDay));
         return true;
     }
 
@@ -111,15 +163,34 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
      */
     @Override
     public boolean canBorrow(User user) {
+        return canBorrow(user, user.getUserTypeEnum(), LoanPolicy.current(), EpochDays.today());
+    }
+
+    /**
+     * 按指定规则表检查图书在指定日期是否可以被该用户借阅（私有方法）
+     * @param user 借阅用户
+     * @param type 用户类型
+     * @param policy 借阅规则表
+     * @param epochDay 借阅日
+     * @return true-可以借阅, false-不能借阅
+     */
+    private boolean canBorrow(User user, UserType type, LoanPolicy policy, int epochDay) {
         // 1. 检查图书是否已被借出
         if (!available) {
             System.out.println("图书已被借出");
             return false;
         }
 
-        // 2. 检查学生是否可以借阅参考书（特殊规则）
-        if (category == BookCategory.REFERENCE_BOOK && user instanceof Student) {
-            System.out.println("学生不能借阅参考书");
+        // 2. 检查是否在取书期限内预留给了其他读者
+        String holder = reservedFor;
+        if (holder != null && epochDay <= reservedUntilEpochDay && !holder.equals(user.getId())) {
+            System.out.println("图书已为其他读者预留");
+            return false;
+        }
+
+        // 3. 检查该类用户是否可以借阅此分类（如学生不能借阅参考书）
+        if (!policy.isEligible(type, getCategory())) {
+            System.out.println("该类用户不能借阅此分类的图书");
             return false;
         }
 
@@ -127,58 +198,38 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
     }
 
     /**
-     * 获取应归还日期
-     * @return 应归还日期
+     * 获取应归还日期（每次调用创建新的Date对象，热点路径请使用getDueEpochDay）
+     * @return 应归还日期（当天零点），未被借出时返回null
      */
     @Override
     public Date getDueDate() {
-        return dueDate;
+        return EpochDays.toDate(dueEpochDay);
     }
 
     /**
-     * 获取当前借阅者ID
-     * @return 借阅者ID（null表示未被借出）
+     * 获取应归还日
+     * @return 应归还日序号，未被借出时返回EpochDays.NONE
      */
     @Override
-    public String getBorrowerId() {
-        return borrowerId;
+    public int getDueEpochDay() {
+        return dueEpochDay;
     }
 
     /**
-     * 计算应归还日期（私有方法）
-     * @param user 借阅用户
+     * 获取当前借阅者ID
+     * @return 借阅者ID（null表示未被借出）
      */
-    private void calculateDueDate(User user) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(borrowDate);                     // 设置基准日期
-        int borrowDays = getBorrowDaysByUserAndCategory(user); // 获取可借天数
-        calendar.add(Calendar.DAY_OF_YEAR, borrowDays);   // 计算应还日期
-        this.dueDate = calendar.getTime();
+    @Override
+    public String getBorrowerId() {
+        return borrowerId;
     }
 
     /**
-     * 根据用户类型和图书类型确定借阅天数（私有方法）
-     * @param user 借阅用户
-     * @return 可借天数
+     * 获取当前借阅者类型
+     * @return 借阅者类型（未被借出或从旧数据恢复时为null）
      */
-    private int getBorrowDaysByUserAndCategory(User user) {
-        if (category == null) {
-            return user instanceof Teacher ? 60 : 30; // 默认规则
-        }
-
-        // 根据图书分类和用户类型确定借阅天数
-        switch (category) {
-            case TEXTBOOK:      // 教科书：教师90天，学生60天
-                return user instanceof Teacher ? 90 : 60;
-            case REFERENCE_BOOK: // 参考书：教师30天，学生不能借（返回0天）
-                return user instanceof Teacher ? 30 : 0;
-            case FICTION:       // 小说：统一30天
-                return 30;
-            case PERIODICAL:    // 期刊：统一14天
-                return 14;
-            default:            // 其他分类：教师60天，学生30天
-                return user instanceof Teacher ? 60 : 30;
-        }
+    public UserType getBorrowerType() {
+        return borrowerType;
     }
 
     // ========== 实现 IReturnable 接口方法 ==========
@@ -190,6 +241,16 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
      */
     @Override
     public boolean returnItem(Date returnDate) {
+        return returnItem(EpochDays.of(returnDate));
+    }
+
+    /**
+     * 归还图书（日序号版本，同步方法）
+     * @param returnEpochDay 归还日
+     * @return true-归还成功, false-归还失败
+     */
+    @Override
+    public synchronized boolean returnItem(int returnEpochDay) {
         // 1. 检查图书是否已被借出
         if (available) {
             System.out.println("图书未被借出，无需归还");
@@ -197,16 +258,22 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
         }
 
         // 2. 检查是否逾期并计算罚款
-        if (isOverdue(returnDate)) {
-            double fine = calculateFine(returnDate);
+        if (isOverdue(returnEpochDay)) {
+            double fine = calculateFine(returnEpochDay);
             System.out.println("图书已逾期，罚款金额：" + fine + "元");
         }
 
-        // 3. 重置借阅信息
+        // 3. 通知监听器（借阅信息清除前）
+        for (ILoanListener listener : loanListeners) {
+            listener.onReturning(this);
+        }
+
+        // 4. 重置借阅信息
         this.borrowerId = null;
-        this.borrowDate = null;
-        this.dueDate = null;
-        this.available = true;  // 标记为可借状态
+        this.borrowerType = null;
+        this.borrowEpochDay = EpochDays.NONE;
+        this.dueEpochDay = EpochDays.NONE;
+        setAvailable(true);     // 标记为可借状态（通知可借状态监听器）
 
         System.out.println("归还成功！");
         return true;
@@ -219,13 +286,18 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
      */
     @Override
     public double calculateFine(Date currentDate) {
-        if (!isOverdue(currentDate)) {
-            return 0.0; // 未逾期，无罚款
-        }
+        return calculateFine(EpochDays.of(currentDate));
+    }
 
-        int overdueDays = getOverdueDays(currentDate); // 计算逾期天数
-        double dailyFine = getDailyFineRate();         // 获取每日罚款费率
-        return overdueDays * dailyFine;                // 计算总罚款
+    /**
+     * 计算逾期罚款金额（日序号版本）
+     * @param currentEpochDay 当前日
+     * @return 罚款金额（单位：元）
+     */
+    @Override
+    public double calculateFine(int currentEpochDay) {
+        int overdueDays = getOverdueDays(currentEpochDay); // 计算逾期天数（未逾期为0）
+        return overdueDays * getDailyFineCents() / 100.0;  // 按分计算总罚款，避免浮点累积误差
     }
 
     /**
@@ -235,48 +307,202 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
      */
     @Override
     public boolean isOverdue(Date currentDate) {
-        if (dueDate == null || available) {
+        return isOverdue(EpochDays.of(currentDate));
+    }
+
+    /**
+     * 检查图书是否逾期（日序号版本）
+     * @param currentEpochDay 当前日
+     * @return true-已逾期, false-未逾期
+     */
+    @Override
+    public boolean isOverdue(int currentEpochDay) {
+        int due = dueEpochDay;
+        if (due == EpochDays.NONE || available) {
             return false; // 无应还日期或未被借出，不算逾期
         }
-        return currentDate.after(dueDate); // 当前日期晚于应还日期
+        return currentEpochDay > due; // 应还日之后才算逾期
     }
 
     /**
      * 计算逾期天数
      * @param currentDate 当前日期
-     * @return 逾期天数（至少1天）
+     * @return 逾期天数
      */
     @Override
     public int getOverdueDays(Date currentDate) {
-        if (!isOverdue(currentDate)) {
+        return getOverdueDays(EpochDays.of(currentDate));
+    }
+
+    /**
+     * 计算逾期天数（日序号版本）
+     * @param currentEpochDay 当前日
+     * @return 逾期天数（逾期时至少1天），未逾期返回0
+     */
+    @Override
+    public int getOverdueDays(int currentEpochDay) {
+        if (!isOverdue(currentEpochDay)) {
             return 0; // 未逾期，天数为0
         }
+        return currentEpochDay - dueEpochDay;
+    }
+
+    /**
+     * 获取每日罚款额（私有方法）
+     * 由借阅规则表按借阅者类型和图书分类查得
+     * @return 每日罚款额（单位：分/天）
+     */
+    private long getDailyFineCents() {
+        return LoanPolicy.current().getDailyFineCents(borrowerType, getCategory());
+    }
+
+    // ========== 借阅状态恢复（供持久化层重放日志使用） ==========
+
+    /**
+     * 直接恢复借阅状态，不做借阅规则检查也不输出提示
+     * 会通知借阅事件和可借状态监听器，使管理器索引同步
+     * @param borrowerId 借阅者ID
+     * @param borrowerType 借阅者类型（未知时为null，罚款按学生规则计算）
+     * @param borrowEpochDay 借阅日
+     * @param dueEpochDay 应还日
+     */
+    public synchronized void restoreLoan(String borrowerId, UserType borrowerType,
+                                         int borrowEpochDay, int dueEpochDay) {
+        if (!available) {
+            clearLoan();
+        }
+        this.borrowerId = borrowerId;
+        this.borrowerType = borrowerType;
+        this.borrowEpochDay = borrowEpochDay;
+        this.dueEpochDay = dueEpochDay;
+        setAvailable(false);
+        for (ILoanListener listener : loanListeners) {
+            listener.onBorrowed(this);
+        }
+    }
 
-        // 计算毫秒差并转换为天数
-        long diff = currentDate.getTime() - dueDate.getTime();
-        int days = (int) (diff / (1000 * 60 * 60 * 24));
-        return Math.max(1, days); // 至少算1天逾期
+    /**
+     * 直接恢复借阅状态（借阅者类型未知）
+     * @param borrowerId 借阅者ID
+     * @param borrowEpochDay 借阅日
+     * @param dueEpochDay 应还日
+     */
+    public void restoreLoan(String borrowerId, int borrowEpochDay, int dueEpochDay) {
+        restoreLoan(borrowerId, null, borrowEpochDay, dueEpochDay);
     }
 
     /**
-     * 获取每日罚款费率（私有方法）
-     * 不同分类的图书有不同的罚款费率
-     * @return 每日罚款费率（单位：元/天）
+     * 直接恢复借阅状态（Date版本）
+     * @param borrowerId 借阅者ID
+     * @param borrowDate 借阅日期
+     * @param dueDate 应还日期
      */
-    private double getDailyFineRate() {
-        if (category == null) return 0.5; // 默认费率
+    public void restoreLoan(String borrowerId, Date borrowDate, Date dueDate) {
+        restoreLoan(borrowerId, EpochDays.of(borrowDate), EpochDays.of(dueDate));
+    }
 
-        switch (category) {
-            case TEXTBOOK:       // 教科书：0.3元/天
-                return 0.3;
-            case REFERENCE_BOOK: // 参考书：1.0元/天（较贵）
-                return 1.0;
-            case FICTION:        // 小说：0.5元/天
-                return 0.5;
-            case PERIODICAL:     // 期刊：0.8元/天
-                return 0.8;
-            default:             // 其他分类：0.5元/天
-                return 0.5;
+    /**
+     * 直接清除借阅状态，不计算罚款也不输出提示
+     */
+    public synchronized void clearLoan() {
+        if (available) {
+            return;
+        }
+        for (ILoanListener listener : loanListeners) {
+            listener.onReturning(this);
+        }
+        this.borrowerId = null;
+        this.borrowerType = null;
+        this.borrowEpochDay = EpochDays.NONE;
+        this.dueEpochDay = EpochDays.NONE;
+        setAvailable(true);
+    }
+
+    /**
+     * 获取借阅日期
+     * @return 借阅日期（当天零点，null表示未被借出）
+     */
+    public Date getBorrowDate() {
+        return EpochDays.toDate(borrowEpochDay);
+    }
+
+    /**
+     * 获取借阅日
+     * @return 借阅日序号，未被借出时返回EpochDays.NONE
+     */
+    public int getBorrowEpochDay() {
+        return borrowEpochDay;
+    }
+
+    // ========== 预约预留 ==========
+
+    /**
+     * 把图书预留给指定读者（预约队列在归还时调用），取书截止日之前其他读者不能借阅
+     * @param userId 读者ID
+     * @param untilEpochDay 取书截止日（含当天）
+     */
+    public synchronized void reserve(String userId, int untilEpochDay) {
+        this.reservedFor = userId;
+        this.reservedUntilEpochDay = untilEpochDay;
+    }
+
+    /**
+     * 取消对指定读者的预留（预留已转给他人或已被借出时不做任何事）
+     * @param userId 读者ID
+     * @return true-已取消, false-图书当前没有预留给该读者
+     */
+    public synchronized boolean clearReservation(String userId) {
+        if (reservedFor == null || !reservedFor.equals(userId)) {
+            return false;
+        }
+        this.reservedFor = null;
+        this.reservedUntilEpochDay = EpochDays.NONE;
+        return true;
+    }
+
+    /**
+     * 获取预留读者ID
+     * @return 读者ID（null表示未预留）
+     */
+    public String getReservedFor() {
+        return reservedFor;
+    }
+
+    /**
+     * 获取取书截止日
+     * @return 截止日序号，未预留时返回EpochDays.NONE
+     */
+    public int getReservedUntilEpochDay() {
+        return reservedUntilEpochDay;
+    }
+
+    // ========== 借阅事件监听器管理 ==========
+
+    /**
+     * 注册借阅事件监听器
+     * @param listener 监听器
+     */
+    public synchronized void addLoanListener(ILoanListener listener) {
+        ILoanListener[] current = loanListeners;
+        ILoanListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        loanListeners = updated;
+    }
+
+    /**
+     * 移除借阅事件监听器
+     * @param listener 监听器
+     */
+    public synchronized void removeLoanListener(ILoanListener listener) {
+        ILoanListener[] current = loanListeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                ILoanListener[] updated = new ILoanListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                loanListeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return;
+            }
         }
     }
 
@@ -294,8 +520,21 @@ public class Book extends LibraryItem implements IBorrowable, IReturnable {
         return ISBN;
     }
 
+    /**
+     * 修改书号（已加入管理器的图书请先删除再重新添加，以更新书号索引）
+     * @param ISBN 新的书号
+     */
     public void setISBN(String ISBN) {
         this.ISBN = ISBN;
+        this.isbnKey = Isbn.toKey(ISBN);
+    }
+
+    /**
+     * 获取规范化的书号键
+     * @return EAN-13书号键，书号无效时返回Isbn.INVALID
+     */
+    public long getIsbnKey() {
+        return isbnKey;
     }
 
     public BookCategory getCategory() {
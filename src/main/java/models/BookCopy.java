@@ -0,0 +1,168 @@
+package models;
+
+import enums.BookCategory;
+
+/**
+ * 馆藏副本类
+ * 继承自Book，表示同一书目下的一本实体书：只有条码号（ID）、存放位置和借阅状态是副本自己的，
+ * 书名、作者、ISBN、分类、页数和出版年份都委托给共享的TitleRecord读取，副本不保存这些字段的值，
+ * 修改书目的页数、出版年份对已有副本立即可见
+ *
+ * 副本是Book的子类，可以像普通图书一样加入图书管理器、通过LibraryService借还；
+ * 登记入馆藏（register）之后、注销（withdraw）之前，可借状态变化时同步更新书目记录的可借副本计数
+ */
+public final class BookCopy extends Book {
+    private final TitleRecord titleRecord;   // 所属书目
+    private boolean counted;                 // 是否计入书目计数（受本对象锁保护）
+
+    /**
+     * 构造方法（新副本为可借状态，登记入馆藏后才计入书目计数）
+     * @param barcode 副本条码号（作为图书ID）
+     * @param titleRecord 所属书目
+     */
+    public BookCopy(String barcode, TitleRecord titleRecord) {
+        super(barcode, null, null, null, null);   // 书目字段不在副本上保存，统一从书目记录读取
+        this.titleRecord = titleRecord;
+    }
+
+    /**
+     * 设置可借状态（同时更新书目的可借副本计数）
+     * @param available 新的借阅状态
+     */
+    @Override
+    public synchronized void setAvailable(boolean available) {
+        if (this.available == available) {
+            return;
+        }
+        super.setAvailable(available);
+        if (counted) {
+            titleRecord.copyAvailabilityChanged(available);
+        }
+    }
+
+    /**
+     * 副本登记入馆藏，计入书目计数（由库存管理器在条码登记成功后调用）
+     */
+    public synchronized void register() {
+        if (!counted) {
+            counted = true;
+            titleRecord.copyAdded(available);
+        }
+    }
+
+    /**
+     * 副本从馆藏中注销，更新书目计数（由库存管理器在删除副本时调用）
+     * 注销后的状态变化不再影响书目计数
+     */
+    public synchronized void withdraw() {
+        if (counted) {
+            counted = false;
+            titleRecord.copyRemoved(available);
+        }
+    }
+
+    /**
+     * 获取副本详细信息
+     * @return 格式化的副本信息字符串
+     */
+    @Override
+    public String getDetails() {
+        return String.format("副本: %s (条码: %s, 位置: %s, %s)",
+                getTitle(), id, location, available ? "可借" : "借出");
+    }
+
+    /**
+     * 获取条码号
+     * @return 条码号（与图书ID相同）
+     */
+    public String getBarcode() {
+        return id;
+    }
+
+    /**
+     * 获取所属书目
+     * @return 书目记录
+     */
+    public TitleRecord getTitleRecord() {
+        return titleRecord;
+    }
+
+    // ========== 书目信息（委托给书目记录） ==========
+
+    @Override
+    public String getTitle() {
+        return titleRecord.getTitle();
+    }
+
+    @Override
+    public String getAuthor() {
+        return titleRecord.getAuthor();
+    }
+
+    @Override
+    public String getISBN() {
+        return titleRecord.getISBN();
+    }
+
+    @Override
+    public long getIsbnKey() {
+        return titleRecord.getIsbnKey();
+    }
+
+    @Override
+    public BookCategory getCategory() {
+        return titleRecord.getCategory();
+    }
+
+    @Override
+    public int getPageCount() {
+        return titleRecord.getPageCount();
+    }
+
+    /**
+     * 设置页数（修改的是书目记录，同一书目的所有副本一起生效）
+     * @param pageCount 页数
+     */
+    @Override
+    public void setPageCount(int pageCount) {
+        titleRecord.setPageCount(pageCount);
+    }
+
+    @Override
+    public int getYear() {
+        return titleRecord.getYear();
+    }
+
+    /**
+     * 设置出版年份（修改的是书目记录，同一书目的所有副本一起生效）
+     * @param year 出版年份
+     */
+    @Override
+    public void setYear(int year) {
+        titleRecord.setYear(year);
+    }
+
+    /**
+     * 副本的作者由书目记录决定，不能单独修改
+     */
+    @Override
+    public void setAuthor(String author) {
+        throw new IllegalStateException("副本的作者由书目记录维护，不能单独修改");
+    }
+
+    /**
+     * 副本的书号由书目记录决定，不能单独修改
+     */
+    @Override
+    public void setISBN(String ISBN) {
+        throw new IllegalStateException("副本的书号由书目记录维护，不能单独修改");
+    }
+
+    /**
+     * 副本的分类由书目记录决定，不能单独修改
+     */
+    @Override
+    public void setCategory(BookCategory category) {
+        throw new IllegalStateException("副本的分类由书目记录维护，不能单独修改");
+    }
+}
@@ -1,9 +1,14 @@
 package models;
 
+import enums.UserType;
+
 import interfaces.IBorrowable;
 import interfaces.IReturnable;
+import services.OverdueTracker;
+import utils.EpochDays;
 
 import java.util.Date;
+import java.util.Map;
 
 /**
  * 图书馆管理员类
@@ -46,6 +51,15 @@ public class Librarian extends User {
         return "LIBRARIAN";
     }
 
+    /**
+     * 获取用户类型枚举
+     * @return UserType.LIBRARIAN
+     */
+    @Override
+    public UserType getUserTypeEnum() {
+        return UserType.LIBRARIAN;
+    }
+
     /**
      * 检查管理员是否可以借阅
      * 管理员总是可以借阅（不受常规限制）
@@ -103,7 +117,7 @@ public class Librarian extends User {
             IReturnable returnable = (IReturnable) item;
 
             // 使用当前日期计算罚款
-            double fine = returnable.calculateFine(new Date());
+            double fine = returnable.calculateFine(EpochDays.today());
 
             System.out.println("处理用户 " + user.getName() + " 的罚款: " + fine + "元");
             return fine;
@@ -114,6 +128,24 @@ public class Librarian extends User {
         return 0.0;
     }
 
+    /**
+     * 批量处理逾期罚款（每晚催还任务使用）
+     * 由逾期跟踪器按应还日期只遍历已逾期的借阅，而不是对每本图书逐一调用calculateFine
+     * @param tracker 逾期跟踪器
+     * @param now 计算基准日期
+     * @return 借阅者ID → 罚款总额（元）
+     */
+    public Map<String, Double> processOverdueFines(OverdueTracker tracker, Date now) {
+        Map<String, Double> fines = tracker.calculateFines(now);
+        double total = 0.0;
+        for (double fine : fines.values()) {
+            total += fine;
+        }
+        System.out.println("管理员 " + name + " 处理逾期罚款：" + fines.size() + " 位用户，共 "
+                + String.format("%.2f", total) + "元");
+        return fines;
+    }
+
     // ============ Getter和Setter ============
 
     /**
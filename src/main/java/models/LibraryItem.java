@@ -1,5 +1,9 @@
 package models;
 
+import interfaces.IAvailabilityListener;
+
+import java.util.Arrays;
+
 /**
  * 图书馆物品抽象基类
  * 定义所有图书馆物品（如书籍、杂志、光盘等）的共同属性和行为
@@ -14,9 +18,13 @@ public abstract class LibraryItem {
     // 实例变量：每个物品特有的属性
     protected String id;          // 物品唯一标识符（如条码号、ISBN等）
     protected String title;       // 物品标题/名称
-    protected boolean available;  // 借阅状态，true表示可借，false表示已借出
+    protected volatile boolean available;  // 借阅状态，true表示可借，false表示已借出（volatile：支持无锁读取）
     protected String location;    // 物品在图书馆内的存放位置（如书架编号）
 
+    // 可借状态监听器（写时复制数组，未注册时不额外占用集合对象）
+    private static final IAvailabilityListener[] NO_LISTENERS = new IAvailabilityListener[0];
+    private volatile IAvailabilityListener[] availabilityListeners = NO_LISTENERS;
+
     /**
      * 图书馆物品构造方法
      * @param id 物品唯一标识符
@@ -59,10 +67,45 @@ public abstract class LibraryItem {
 
     /**
      * 设置物品的借阅状态
+     * 状态发生变化时通知已注册的监听器（如管理器的可借位图）
      * @param available 新的借阅状态
      */
     public void setAvailable(boolean available) {
+        if (this.available == available) {
+            return;
+        }
         this.available = available;
+        for (IAvailabilityListener listener : availabilityListeners) {
+            listener.onAvailabilityChanged(this, available);
+        }
+    }
+
+    /**
+     * 注册可借状态监听器
+     * @param listener 监听器
+     */
+    public synchronized void addAvailabilityListener(IAvailabilityListener listener) {
+        IAvailabilityListener[] current = availabilityListeners;
+        IAvailabilityListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        availabilityListeners = updated;
+    }
+
+    /**
+     * 移除可借状态监听器
+     * @param listener 监听器
+     */
+    public synchronized void removeAvailabilityListener(IAvailabilityListener listener) {
+        IAvailabilityListener[] current = availabilityListeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                IAvailabilityListener[] updated = new IAvailabilityListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                availabilityListeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return;
+            }
+        }
     }
 
     // ============ 静态方法 ============
@@ -0,0 +1,403 @@
+package models;
+
+import enums.BookCategory;
+import enums.UserType;
+import exception.InvalidInputException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 借阅规则表
+ * 把"用户类型 × 图书分类"的借阅规则预先编译成扁平数组：借期天数、日罚款额、是否可借、同类在借上限，
+ * 借还热点路径上的规则判断只是一次数组下标访问，不再有instanceof/switch分支链
+ *
+ * 规则表不可变，当前生效的规则表保存在AtomicReference中，reload/install整体替换，
+ * 正在办理的借还要么完全使用旧规则、要么完全使用新规则
+ *
+ * 配置文件为.properties格式，未配置的项沿用内置默认规则：
+ * <pre>
+ * # &lt;用户类型&gt;.&lt;图书分类&gt;.&lt;规则项&gt; = 值
+ * # 用户类型：STUDENT / TEACHER / LIBRARIAN / *（全部类型）
+ * # 图书分类：BookCategory名称 / NONE（未分类）/ *（全部分类）
+ * # 规则项：days（借期天数）、fine（日罚款，元）、eligible（true/false）、limit（同类在借上限，unlimited表示不限）
+ * TEACHER.TEXTBOOK.days = 90
+ * STUDENT.REFERENCE_BOOK.eligible = false
+ * *.PERIODICAL.fine = 0.8
+ * STUDENT.FICTION.limit = 2
+ * </pre>
+ * 同一项被多条配置覆盖时，越具体的配置优先（分类比用户类型更具体）
+ */
+public final class LoanPolicy {
+    /**
+     * 不限制同类在借数量
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // 列数：第0列为未分类，其余为 BookCategory.ordinal() + 1
+    static final int COLUMNS = BookCategory.values().length + 1;
+    private static final int ROWS = UserType.values().length;
+
+    private static final String WILDCARD = "*";
+    private static final String NO_CATEGORY = "NONE";
+
+    // 当前生效的规则表
+    private static final AtomicReference<LoanPolicy> CURRENT = new AtomicReference<>(defaults());
+
+    // ========== 规则矩阵（下标 = 用户类型行 * COLUMNS + 分类列） ==========
+    private final int[] loanDays;
+    private final long[] dailyFineCents;   // 日罚款额（分）
+    private final boolean[] eligible;
+    private final int[] categoryLimits;
+    private final String source;           // 规则来源（用于显示）
+
+    private LoanPolicy(int[] loanDays, long[] dailyFineCents, boolean[] eligible, int[] categoryLimits,
+                       String source) {
+        this.loanDays = loanDays;
+        this.dailyFineCents = dailyFineCents;
+        this.eligible = eligible;
+        this.categoryLimits = categoryLimits;
+        this.source = source;
+    }
+
+    // ========== 当前规则 ==========
+
+    /**
+     * 获取当前生效的规则表
+     * @return 规则表
+     */
+    public static LoanPolicy current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 原子替换当前规则表
+     * @param policy 新规则表
+     * @return 被替换的规则表
+     */
+    public static LoanPolicy install(LoanPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("规则表不能为null");
+        }
+        return CURRENT.getAndSet(policy);
+    }
+
+    /**
+     * 从配置文件重新加载规则并立即生效（文件有误时保持原规则不变）
+     * @param file 配置文件
+     * @return 新规则表
+     * @throws IOException 读取失败
+     * @throws InvalidInputException 配置项无效
+     */
+    public static LoanPolicy reload(Path file) throws IOException, InvalidInputException {
+        LoanPolicy policy = load(file);
+        install(policy);
+        System.out.println("借阅规则已重新加载：" + file);
+        return policy;
+    }
+
+    // ========== 构建 ==========
+
+    /**
+     * 内置默认规则
+     * - 借期：教科书 教师90天/其他60天；参考书 教师30天/其他0天；小说30天；期刊14天；
+     *   通用及未分类 教师60天/其他30天
+     * - 日罚款：教科书0.3元，参考书1.0元，期刊0.8元，其他0.5元
+     * - 学生不能借阅参考书；同类在借数量不限
+     * @return 规则表
+     */
+    public static LoanPolicy defaults() {
+        int[] days = new int[ROWS * COLUMNS];
+        long[] fines = new long[ROWS * COLUMNS];
+        boolean[] eligible = new boolean[ROWS * COLUMNS];
+        int[] limits = new int[ROWS * COLUMNS];
+
+        for (UserType type : UserType.values()) {
+            boolean teacher = type == UserType.TEACHER;
+            for (int column = 0; column < COLUMNS; column++) {
+                BookCategory category = column == 0 ? null : BookCategory.values()[column - 1];
+                int index = type.ordinal() * COLUMNS + column;
+                days[index] = defaultLoanDays(category, teacher);
+                fines[index] = defaultFineCents(category);
+                eligible[index] = !(type == UserType.STUDENT && category == BookCategory.REFERENCE_BOOK);
+                limits[index] = UNLIMITED;
+            }
+        }
+        return new LoanPolicy(days, fines, eligible, limits, "内置默认规则");
+    }
+
+    private static int defaultLoanDays(BookCategory category, boolean teacher) {
+        if (category == null) {
+            return teacher ? 60 : 30;
+        }
+        switch (category) {
+            case TEXTBOOK:       return teacher ? 90 : 60;
+            case REFERENCE_BOOK: return teacher ? 30 : 0;
+            case FICTION:        return 30;
+            case PERIODICAL:     return 14;
+            default:             return teacher ? 60 : 30;
+        }
+    }
+
+    private static long defaultFineCents(BookCategory category) {
+        if (category == null) {
+            return 50;
+        }
+        switch (category) {
+            case TEXTBOOK:       return 30;
+            case REFERENCE_BOOK: return 100;
+            case PERIODICAL:     return 80;
+            default:             return 50;
+        }
+    }
+
+    /**
+     * 从配置文件加载规则（不影响当前生效的规则）
+     * @param file 配置文件（UTF-8编码）
+     * @return 规则表
+     * @throws IOException 读取失败
+     * @throws InvalidInputException 配置项无效
+     */
+    public static LoanPolicy load(Path file) throws IOException, InvalidInputException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties, file.toString());
+    }
+
+    /**
+     * 在内置默认规则的基础上应用配置项
+     * @param properties 配置项
+     * @param source 规则来源（用于显示）
+     * @return 规则表
+     * @throws InvalidInputException 配置项无效
+     */
+    public static LoanPolicy fromProperties(Properties properties, String source) throws InvalidInputException {
+        LoanPolicy base = defaults();
+        int[] days = base.loanDays.clone();
+        long[] fines = base.dailyFineCents.clone();
+        boolean[] eligible = base.eligible.clone();
+        int[] limits = base.categoryLimits.clone();
+
+        // 按具体程度从低到高应用，具体的配置覆盖通配的配置
+        List<Map.Entry<Object, Object>> entries = new ArrayList<>(properties.entrySet());
+        entries.sort(Comparator.comparingInt(entry -> specificity(entry.getKey().toString())));
+
+        for (Map.Entry<Object, Object> entry : entries) {
+            String key = entry.getKey().toString().trim();
+            String value = entry.getValue().toString().trim();
+            String[] parts = key.split("\\.");
+            if (parts.length != 3) {
+                throw new InvalidInputException(key, "<用户类型>.<图书分类>.<days|fine|eligible|limit>");
+            }
+            int[] rows = parseRows(parts[0], key);
+            int[] columns = parseColumns(parts[1], key);
+            for (int row : rows) {
+                for (int column : columns) {
+                    int index = row * COLUMNS + column;
+                    switch (parts[2]) {
+                        case "days":
+                            days[index] = parseNonNegativeInt(value, key + " = 天数");
+                            break;
+                        case "fine":
+                            fines[index] = parseFineCents(value, key);
+                            break;
+                        case "eligible":
+                            eligible[index] = parseBoolean(value, key);
+                            break;
+                        case "limit":
+                            limits[index] = "unlimited".equalsIgnoreCase(value)
+                                    ? UNLIMITED : parseNonNegativeInt(value, key + " = 数量或unlimited");
+                            break;
+                        default:
+                            throw new InvalidInputException(key, "规则项为 days、fine、eligible 或 limit");
+                    }
+                }
+            }
+        }
+        return new LoanPolicy(days, fines, eligible, limits, source);
+    }
+
+    private static int specificity(String key) {
+        String[] parts = key.trim().split("\\.");
+        if (parts.length != 3) {
+            return 0;
+        }
+        return (WILDCARD.equals(parts[0]) ? 0 : 1) + (WILDCARD.equals(parts[1]) ? 0 : 2);
+    }
+
+    private static int[] parseRows(String name, String key) throws InvalidInputException {
+        if (WILDCARD.equals(name)) {
+            int[] rows = new int[ROWS];
+            for (int i = 0; i < ROWS; i++) {
+                rows[i] = i;
+            }
+            return rows;
+        }
+        try {
+            return new int[] {UserType.valueOf(name).ordinal()};
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(key, "用户类型为 STUDENT、TEACHER、LIBRARIAN 或 *");
+        }
+    }
+
+    private static int[] parseColumns(String name, String key) throws InvalidInputException {
+        if (WILDCARD.equals(name)) {
+            int[] columns = new int[COLUMNS];
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i] = i;
+            }
+            return columns;
+        }
+        if (NO_CATEGORY.equals(name)) {
+            return new int[] {0};
+        }
+        try {
+            return new int[] {BookCategory.valueOf(name).ordinal() + 1};
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException(key, "图书分类为 BookCategory名称、NONE 或 *");
+        }
+    }
+
+    private static int parseNonNegativeInt(String value, String expected) throws InvalidInputException {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // 按无效输入处理
+        }
+        throw new InvalidInputException(value, expected);
+    }
+
+    private static long parseFineCents(String value, String key) throws InvalidInputException {
+        try {
+            double yuan = Double.parseDouble(value);
+            if (yuan >= 0 && !Double.isInfinite(yuan)) {
+                return Math.round(yuan * 100);
+            }
+        } catch (NumberFormatException e) {
+            // 按无效输入处理
+        }
+        throw new InvalidInputException(value, key + " = 非负金额（元）");
+    }
+
+    private static boolean parseBoolean(String value, String key) throws InvalidInputException {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new InvalidInputException(value, key + " = true 或 false");
+    }
+
+    // ========== 规则查询 ==========
+
+    /**
+     * 计算规则矩阵下标（内部方法）
+     * 类型未知（如从旧数据恢复的借阅记录）时按学生规则处理
+     */
+    private static int indexOf(UserType type, BookCategory category) {
+        int row = type == null ? UserType.STUDENT.ordinal() : type.ordinal();
+        return row * COLUMNS + column(category);
+    }
+
+    /**
+     * 分类所在的列（第0列为未分类）
+     * @param category 图书分类（可为null）
+     * @return 列号
+     */
+    static int column(BookCategory category) {
+        return category == null ? 0 : category.ordinal() + 1;
+    }
+
+    /**
+     * 获取借期天数
+     * @param type 用户类型
+     * @param category 图书分类（可为null）
+     * @return 可借天数
+     */
+    public int getLoanDays(UserType type, BookCategory category) {
+        return loanDays[indexOf(type, category)];
+    }
+
+    /**
+     * 获取日罚款额（分）
+     * @param type 用户类型（借阅者类型未知时为null）
+     * @param category 图书分类（可为null）
+     * @return 日罚款额（分/天）
+     */
+    public long getDailyFineCents(UserType type, BookCategory category) {
+        return dailyFineCents[indexOf(type, category)];
+    }
+
+    /**
+     * 获取日罚款额（元）
+     * @param type 用户类型（借阅者类型未知时为null）
+     * @param category 图书分类（可为null）
+     * @return 日罚款额（元/天）
+     */
+    public double getDailyFine(UserType type, BookCategory category) {
+        return dailyFineCents[indexOf(type, category)] / 100.0;
+    }
+
+    /**
+     * 检查该类型用户能否借阅该分类的图书
+     * @param type 用户类型
+     * @param category 图书分类（可为null）
+     * @return true-可以借阅, false-不能借阅
+     */
+    public boolean isEligible(UserType type, BookCategory category) {
+        return eligible[indexOf(type, category)];
+    }
+
+    /**
+     * 获取同类图书在借上限
+     * @param type 用户类型
+     * @param category 图书分类（可为null）
+     * @return 在借上限，不限时为UNLIMITED
+     */
+    public int getCategoryLimit(UserType type, BookCategory category) {
+        return categoryLimits[indexOf(type, category)];
+    }
+
+    /**
+     * 获取规则来源
+     * @return 来源描述（内置默认规则或配置文件路径）
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 显示规则表
+     */
+    public void display() {
+        System.out.println("\n=== 借阅规则（" + source + "） ===");
+        for (UserType type : UserType.values()) {
+            System.out.println(type + ":");
+            for (int column = 0; column < COLUMNS; column++) {
+                BookCategory category = column == 0 ? null : BookCategory.values()[column - 1];
+                int index = type.ordinal() * COLUMNS + column;
+                System.out.printf("  %-15s 借期: %3d天 | 日罚款: %.2f元 | %s | 同类上限: %s%n",
+                        category == null ? NO_CATEGORY : category.name(),
+                        loanDays[index],
+                        dailyFineCents[index] / 100.0,
+                        eligible[index] ? "可借" : "不可借",
+                        categoryLimits[index] == UNLIMITED ? "不限" : String.valueOf(categoryLimits[index]));
+            }
+        }
+    }
+}
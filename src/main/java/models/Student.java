@@ -1,5 +1,7 @@
 package models;
 
+import enums.UserType;
+
 /**
  * 学生类
  * 继承自User抽象类，表示图书馆系统中的学生用户
@@ -35,6 +37,15 @@ public class Student extends User {
         return "STUDENT";
     }
 
+    /**
+     * 获取用户类型枚举
+     * @return UserType.STUDENT
+     */
+    @Override
+    public UserType getUserTypeEnum() {
+        return UserType.STUDENT;
+    }
+
     /**
      * 检查学生是否满足借阅条件
      * 学生可以借阅的条件：当前借阅数量未达到上限
@@ -1,5 +1,7 @@
 package models;
 
+import enums.UserType;
+
 /**
  * 教师用户类
  * 继承自User抽象类，代表图书馆的教师用户类型
@@ -40,6 +42,15 @@ public class Teacher extends User {
         return "TEACHER";
     }
 
+    /**
+     * 获取用户类型枚举
+     * @return UserType.TEACHER
+     */
+    @Override
+    public UserType getUserTypeEnum() {
+        return UserType.TEACHER;
+    }
+
     /**
      * 检查教师是否可以继续借阅
      * 判断条件：已借数量是否小于最大借阅限制
@@ -0,0 +1,158 @@
+package models;
+
+import enums.BookCategory;
+import utils.Isbn;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 书目记录
+ * 一种图书（同一ISBN）的书目信息只保存一份，由该书的全部馆藏副本（BookCopy）共享；
+ * 馆藏数量和可借副本数量用原子计数器维护，"是否还有可借副本"是O(1)判断
+ *
+ * 书目记录由InventoryManager按ISBN驻留（同一ISBN只创建一个实例）
+ */
+public class TitleRecord {
+    // ========== 书目信息（所有副本共享） ==========
+    private final String ISBN;             // 国际标准书号，书目唯一标识
+    private final long isbnKey;            // 规范化的EAN-13书号键（Isbn.INVALID表示书号无效）
+    private final String title;            // 书名
+    private final String author;           // 作者
+    private final BookCategory category;   // 图书分类
+    private int pageCount;                 // 页数
+    private int year;                      // 出版年份
+
+    // ========== 副本计数 ==========
+    private final AtomicInteger copyCount = new AtomicInteger();        // 馆藏副本数
+    private final AtomicInteger availableCopies = new AtomicInteger();  // 可借副本数
+
+    /**
+     * 构造方法
+     * @param ISBN 国际标准书号
+     * @param title 书名
+     * @param author 作者
+     * @param category 图书分类
+     */
+    public TitleRecord(String ISBN, String title, String author, BookCategory category) {
+        this.ISBN = ISBN;
+        this.isbnKey = Isbn.toKey(ISBN);
+        this.title = title;
+        this.author = author;
+        this.category = category;
+        this.pageCount = 0;     // 默认页数为0
+        this.year = 2024;       // 默认出版年份为2024
+    }
+
+    // ========== 副本计数维护（由BookCopy调用） ==========
+
+    /**
+     * 新增一个副本
+     * @param available 副本是否可借
+     */
+    void copyAdded(boolean available) {
+        copyCount.incrementAndGet();
+        if (available) {
+            availableCopies.incrementAndGet();
+        }
+    }
+
+    /**
+     * 移除一个副本
+     * @param available 副本是否可借
+     */
+    void copyRemoved(boolean available) {
+        copyCount.decrementAndGet();
+        if (available) {
+            availableCopies.decrementAndGet();
+        }
+    }
+
+    /**
+     * 副本可借状态变化
+     * @param available 新的可借状态
+     */
+    void copyAvailabilityChanged(boolean available) {
+        if (available) {
+            availableCopies.incrementAndGet();
+        } else {
+            availableCopies.decrementAndGet();
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 检查是否还有可借副本（O(1)）
+     * @return true-有可借副本
+     */
+    public boolean hasAvailableCopy() {
+        return availableCopies.get() > 0;
+    }
+
+    /**
+     * 获取可借副本数
+     * @return 可借副本数
+     */
+    public int getAvailableCopies() {
+        return availableCopies.get();
+    }
+
+    /**
+     * 获取馆藏副本数
+     * @return 副本数
+     */
+    public int getCopyCount() {
+        return copyCount.get();
+    }
+
+    /**
+     * 获取书目信息
+     * @return 格式化的书目信息字符串
+     */
+    public String getDetails() {
+        return String.format("《%s》 作者: %s | ISBN: %s | 馆藏: %d 册，可借: %d 册",
+                title, author, ISBN, copyCount.get(), availableCopies.get());
+    }
+
+    // ========== Getter 和 Setter 方法 ==========
+
+    public String getISBN() {
+        return ISBN;
+    }
+
+    /**
+     * 获取规范化的书号键
+     * @return EAN-13书号键，书号无效时返回Isbn.INVALID
+     */
+    public long getIsbnKey() {
+        return isbnKey;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public BookCategory getCategory() {
+        return category;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+}
@@ -1,5 +1,8 @@
 package models;
 
+import enums.BookCategory;
+import enums.UserType;
+
 /**
  * 用户抽象基类
  * 表示图书馆系统的用户，定义了用户的基本属性和行为
@@ -9,8 +12,10 @@ public abstract class User {
     // ========== 成员变量 ==========
     protected String id;             // 用户唯一标识符
     protected String name;           // 用户姓名
-    protected int borrowedCount;     // 当前已借阅物品数量
+    protected volatile int borrowedCount;     // 当前已借阅物品数量（修改在用户对象锁内进行）
     protected int maxBorrowLimit;    // 最大借阅数量限制
+    // 各分类已借数量（下标为LoanPolicy的分类列，第0列为未分类；修改在用户对象锁内进行）
+    private final int[] borrowedByCategory = new int[LoanPolicy.COLUMNS];
 
     // ========== 抽象方法 ==========
 
@@ -20,6 +25,15 @@ public abstract class User {
      */
     public abstract String getUserType();
 
+    /**
+     * 获取用户类型枚举（用于查借阅规则表）
+     * 子类应直接返回常量，默认实现按getUserType()解析
+     * @return 用户类型
+     */
+    public UserType getUserTypeEnum() {
+        return UserType.valueOf(getUserType());
+    }
+
     /**
      * 检查用户是否满足借阅条件
      * @return true-可以借阅, false-不能借阅
@@ -47,16 +61,16 @@ public abstract class User {
      * 检查用户是否已达到借阅上限
      * @return true-已达到上限, false-未达到上限
      */
-    public boolean hasReachedBorrowLimit() {
+    public synchronized boolean hasReachedBorrowLimit() {
         return borrowedCount >= getBorrowLimit();
     }
 
     /**
      * 用户借阅物品
-     * 每次借阅成功时增加借阅计数
+     * 每次借阅成功时增加借阅计数（同步方法：上限检查与计数增加是一个原子操作）
      * @return true-借阅成功, false-借阅失败（已达上限）
      */
-    public boolean borrowItem() {
+    public synchronized boolean borrowItem() {
         if (hasReachedBorrowLimit()) {
             return false; // 借阅失败：已达上限
         }
@@ -66,14 +80,40 @@ public abstract class User {
 
     /**
      * 用户归还物品
-     * 每次归还时减少借阅计数（确保计数不为负）
+     * 每次归还时减少借阅计数（确保计数不为负，同步方法）
      */
-    public void returnItem() {
+    public synchronized void returnItem() {
         if (borrowedCount > 0) {
             borrowedCount--;
         }
     }
 
+    /**
+     * 用户借阅指定分类的物品（同时增加总数和分类计数）
+     * 同类在借上限由调用方按借阅规则表检查
+     * @param category 图书分类（可为null）
+     * @return true-借阅成功, false-借阅失败（已达总上限）
+     */
+    public synchronized boolean borrowItem(BookCategory category) {
+        if (!borrowItem()) {
+            return false;
+        }
+        borrowedByCategory[LoanPolicy.column(category)]++;
+        return true;
+    }
+
+    /**
+     * 用户归还指定分类的物品（同时减少总数和分类计数）
+     * @param category 图书分类（可为null）
+     */
+    public synchronized void returnItem(BookCategory category) {
+        returnItem();
+        int column = LoanPolicy.column(category);
+        if (borrowedByCategory[column] > 0) {
+            borrowedByCategory[column]--;
+        }
+    }
+
     // ========== Getter 和 Setter 方法 ==========
 
     /**
@@ -124,6 +164,24 @@ public abstract class User {
         this.borrowedCount = borrowedCount;
     }
 
+    /**
+     * 获取指定分类的已借数量
+     * @param category 图书分类（可为null）
+     * @return 该分类已借数量
+     */
+    public synchronized int getBorrowedCount(BookCategory category) {
+        return borrowedByCategory[LoanPolicy.column(category)];
+    }
+
+    /**
+     * 设置指定分类的已借数量（供持久化层恢复数据使用）
+     * @param category 图书分类（可为null）
+     * @param count 该分类已借数量
+     */
+    public synchronized void setBorrowedCount(BookCategory category, int count) {
+        borrowedByCategory[LoanPolicy.column(category)] = count;
+    }
+
     /**
      * 获取最大借阅限制
      * @return 最大借阅数量限制
@@ -1,4 +1,899 @@
 package persistence;
 
-public class FilePersistenceManager {
+import enums.BookCategory;
+import enums.UserType;
+import interfaces.ILoanListener;
+import managers.BookManagerEnhanced;
+import managers.UserManagerEnhanced;
+import models.Book;
+import models.Librarian;
+import models.Student;
+import models.Teacher;
+import models.User;
+import utils.EpochDays;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 文件持久化管理器 - 预写日志（WAL）+ 定期快照
+ * 1. 每次增删图书/用户、借书、还书都以紧凑的二进制记录追加到日志文件
+ * 2. 组提交：后台刷盘线程把一段时间窗口内的记录合并为一次写入和一次fsync，
+ *    调用方在自己的记录落盘后才返回
+ * 3. 日志记录数达到阈值时写入全量快照并清空日志，重启时只需 加载快照 + 重放少量日志；
+ *    快照文件是内存映射目录格式（MappedCatalog），加载时直接从映射区读取记录
+ *
+ * 快照只在完整应用的状态上生成：
+ * - 借阅状态不读取图书字段（还书监听器触发时字段尚未清除，其他线程也可能正处于借还中途），
+ *   而是取自与日志同步维护的在借表——每条借还记录追加到缓冲区时在同一临界区内更新，
+ *   快照截断日志时在借表恰好反映被截断的那些记录
+ * - 快照不在借阅监听器内触发：借还记录只累计计数，到达间隔后由下一次增删图书/用户
+ *   （管理器已完成变更后才写日志）、snapshotIfDue() 或 close() 写快照
+ * - 快照只在锁内复制状态，文件写入在锁外进行：期间新的记录照常追加到缓冲区，刷盘线程暂停；
+ *   快照落盘后截断日志，并丢弃缓冲区中复制前追加的记录（已包含在快照中），其余记录写入新的日志
+ *
+ * 延迟确认：借还监听器运行在图书锁和事务锁之内，若在监听器里等待落盘，
+ * 整个组提交窗口都会占着这些锁（虚拟线程还会钉住载体线程）。事务方可以先调用 deferDurability()，
+ * 本线程随后的借还记录只追加到缓冲区，等事务释放锁之后再调用 awaitDeferredDurability() 等待落盘；
+ * 日志按追加顺序落盘，锁释放后其他事务看到的变更不会先于它所依赖的记录落盘。
+ * 内部等待使用 ReentrantLock 的 Condition：不在对象监视器内调用时（如 awaitDeferredDurability），
+ * 虚拟线程等待会让出载体线程；借还监听器在图书监视器内追加记录，在JDK 21上获取lock时仍会钉住载体线程，
+ * 但lock只在内存中的缓冲区追加期间持有，快照写文件和日志截断都在lock之外进行
+ *
+ * 日志记录格式：[int 负载长度][int CRC32][负载]，负载首字节为记录类型；
+ * 恢复时遇到不完整或校验失败的尾部记录（写入中途崩溃）会截断丢弃
+ *
+ * 使用方式：
+ * <pre>
+ *     BookManagerEnhanced bookManager = new BookManagerEnhanced(false);
+ *     UserManagerEnhanced userManager = new UserManagerEnhanced(false);
+ *     FilePersistenceManager persistence = new FilePersistenceManager(Path.of("data"));
+ *     persistence.recover(bookManager, userManager);   // 恢复数据
+ *     persistence.attach(bookManager, userManager);    // 开始记录后续变更
+ * </pre>
+ */
+public class FilePersistenceManager implements ILoanListener, Closeable {
+    // 文件名
+    public static final String WAL_FILE = "library.wal";
+    public static final String SNAPSHOT_FILE = "library.snapshot";
+
+    // 默认组提交窗口（毫秒）和快照间隔（日志记录数）
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 2;
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+    // 日志记录类型
+    private static final byte ADD_BOOK = 1;
+    private static final byte DELETE_BOOK = 2;
+    private static final byte RETURN = 4;
+    private static final byte ADD_USER = 5;
+    private static final byte DELETE_USER = 6;
+    private static final byte BORROW = 7;           // 日期为int日序号
+    private static final byte ADD_BOOK_ON_LOAN = 8; // 添加已借出的图书：图书 + 借阅者、借阅者类型、借阅日、应还日
+
+    private final Path directory;
+    private final Path walPath;
+    private final Path snapshotPath;
+    private final long groupCommitMillis;
+    private final int snapshotInterval;
+
+    private final FileChannel walChannel;
+    private final Thread flusher;
+
+    // 以下字段受lock保护，等待落盘/快照/新记录都使用stateChanged
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;     // 已追加到缓冲区的记录序号
+    private long durableSequence;      // 已落盘的记录序号
+    private int recordsSinceSnapshot;
+    private boolean closed;
+    private boolean flushing;          // 刷盘线程正在写出一批记录
+    private boolean snapshotting;      // 正在写快照，刷盘线程暂停
+    private IOException flushFailure;
+
+    // 在借表：图书ID → 借阅信息，与日志中的借还记录同步（受lock保护）
+    private final Map<String, Loan> loans = new HashMap<>();
+
+    // 快照数据来源（attach后设置）
+    private BookManagerEnhanced bookManager;
+    private UserManagerEnhanced userManager;
+
+    /**
+     * 构造方法（使用默认组提交窗口和快照间隔）
+     * @param directory 数据目录
+     * @throws IOException 打开日志文件失败
+     */
+    public FilePersistenceManager(Path directory) throws IOException {
+        this(directory, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * 构造方法
+     * @param directory 数据目录
+     * @param groupCommitMillis 组提交窗口（毫秒），0表示有记录即刷盘
+     * @param snapshotInterval 每追加多少条日志记录写一次快照
+     * @throws IOException 打开日志文件失败
+     */
+    public FilePersistenceManager(Path directory, long groupCommitMillis, int snapshotInterval) throws IOException {
+        this.directory = directory;
+        this.walPath = directory.resolve(WAL_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.groupCommitMillis = groupCommitMillis;
+        this.snapshotInterval = snapshotInterval;
+
+        Files.createDirectories(directory);
+        this.walChannel = FileChannel.open(walPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // ========== 恢复 ==========
+
+    /**
+     * 从快照和日志恢复数据到（空的）管理器中
+     * 应在attach之前调用，重放过程不会再次写入日志；
+     * 快照和日志通过管理器的恢复方法（restoreBook等）批量加载，不经过缓存，也不逐条输出
+     * @param bookManager 图书管理器
+     * @param userManager 用户管理器
+     * @throws IOException 读取文件失败或快照损坏
+     */
+    public void recover(BookManagerEnhanced bookManager, UserManagerEnhanced userManager) throws IOException {
+        lock.lock();
+        try {
+            if (Files.exists(snapshotPath)) {
+                loadSnapshot(bookManager, userManager);
+            }
+
+            long validLength = replayWal(bookManager, userManager);
+            if (validLength < walChannel.size()) {
+                System.out.println("日志尾部存在不完整记录，已截断到 " + validLength + " 字节");
+                walChannel.truncate(validLength);
+            }
+            walChannel.position(validLength);
+
+            recomputeBorrowedCounts(bookManager, userManager);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 开始记录管理器的后续变更，并作为快照的数据来源
+     * @param bookManager 图书管理器
+     * @param userManager 用户管理器
+     */
+    public void attach(BookManagerEnhanced bookManager, UserManagerEnhanced userManager) {
+        lock.lock();
+        try {
+            this.bookManager = bookManager;
+            this.userManager = userManager;
+            loans.clear();
+            for (Book book : bookManager.getAllBooks()) {
+                Loan loan = Loan.of(book);
+                if (loan != null) {
+                    loans.put(book.getId(), loan);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        bookManager.setPersistenceManager(this);
+        bookManager.addLoanListener(this);
+        userManager.setPersistenceManager(this);
+    }
+
+    private void loadSnapshot(BookManagerEnhanced books, UserManagerEnhanced users) throws IOException {
+        try (MappedCatalog catalog = MappedCatalog.open(snapshotPath)) {
+            catalog.loadInto(books, users);
+        }
+    }
+
+    /**
+     * 重放日志（内部方法）
+     * @return 最后一条完整记录之后的文件偏移
+     */
+    private long replayWal(BookManagerEnhanced books, UserManagerEnhanced users) throws IOException {
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(walPath)))) {
+            while (true) {
+                int length;
+                int crc;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (checksum(payload) != crc) {
+                    break;
+                }
+                apply(payload, books, users);
+                validLength += 8 + length;
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * 应用一条日志记录（内部方法）
+     */
+    private void apply(byte[] payload, BookManagerEnhanced books, UserManagerEnhanced users) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_BOOK:
+                books.restoreBook(readBook(in));
+                break;
+            case ADD_BOOK_ON_LOAN: {
+                Book book = readBook(in);
+                String borrowerId = in.readUTF();
+                byte borrowerType = in.readByte();
+                int borrowEpochDay = in.readInt();
+                int dueEpochDay = in.readInt();
+                if (books.restoreBook(book)) {
+                    book.restoreLoan(borrowerId,
+                            borrowerType < 0 ? typeOf(users, borrowerId) : UserType.values()[borrowerType],
+                            borrowEpochDay, dueEpochDay);
+                }
+                break;
+            }
+            case DELETE_BOOK:
+                books.discardBook(in.readUTF());
+                break;
+            case BORROW: {
+                Book book = books.findBookUncached(in.readUTF());
+                String borrowerId = in.readUTF();
+                int borrowEpochDay = in.readInt();
+                int dueEpochDay = in.readInt();
+                if (book != null) {
+                    book.restoreLoan(borrowerId, typeOf(users, borrowerId), borrowEpochDay, dueEpochDay);
+                }
+                break;
+            }
+            case RETURN: {
+                Book book = books.findBookUncached(in.readUTF());
+                if (book != null) {
+                    book.clearLoan();
+                }
+                break;
+            }
+            case ADD_USER:
+                users.restoreUser(readUser(in));
+                break;
+            case DELETE_USER:
+                users.discardUser(in.readUTF());
+                break;
+            default:
+                throw new IOException("未知的日志记录类型: " + type);
+        }
+    }
+
+    /**
+     * 查找借阅者类型（内部方法，借阅者不存在时返回null）
+     */
+    private static UserType typeOf(UserManagerEnhanced users, String borrowerId) {
+        User borrower = users.findUserById(borrowerId);
+        return borrower == null ? null : borrower.getUserTypeEnum();
+    }
+
+    /**
+     * 按图书的借阅状态重新计算用户的已借数量（总数和各分类数量，内部方法）
+     */
+    private void recomputeBorrowedCounts(BookManagerEnhanced books, UserManagerEnhanced users) {
+        BookCategory[] categories = BookCategory.values();
+        Map<String, int[]> counts = new HashMap<>();
+        for (Book book : books.getAllBooks()) {
+            if (!book.isAvailable() && book.getBorrowerId() != null) {
+                // [0]为总数，[1]为未分类，其余为 ordinal() + 2
+                int[] userCounts = counts.computeIfAbsent(book.getBorrowerId(), id -> new int[categories.length + 2]);
+                userCounts[0]++;
+                userCounts[book.getCategory() == null ? 1 : book.getCategory().ordinal() + 2]++;
+            }
+        }
+        int[] none = new int[categories.length + 2];
+        for (User user : users.getAllUsers()) {
+            int[] userCounts = counts.getOrDefault(user.getId(), none);
+            user.setBorrowedCount(userCounts[0]);
+            user.setBorrowedCount(null, userCounts[1]);
+            for (BookCategory category : categories) {
+                user.setBorrowedCount(category, userCounts[category.ordinal() + 2]);
+            }
+        }
+    }
+
+    // ========== 日志记录 ==========
+
+    /**
+     * 记录添加图书
+     * 已借出的图书（恢复或导入的数据）连同借阅状态一起记录，重放时恢复借阅
+     * @param book 图书对象
+     */
+    public void logAddBook(Book book) {
+        Loan loan = Loan.of(book);
+        boolean snapshotDue;
+        if (loan == null) {
+            snapshotDue = append(ADD_BOOK, out -> writeBook(out, book), null, false);
+        } else {
+            UserType borrowerType = book.getBorrowerType();
+            snapshotDue = append(ADD_BOOK_ON_LOAN, out -> {
+                writeBook(out, book);
+                out.writeUTF(loan.borrowerId);
+                out.writeByte(borrowerType == null ? -1 : borrowerType.ordinal());
+                out.writeInt(loan.borrowEpochDay);
+                out.writeInt(loan.dueEpochDay);
+            }, () -> loans.put(book.getId(), loan), false);
+        }
+        if (snapshotDue) {
+            snapshotAfterAppend();
+        }
+    }
+
+    /**
+     * 记录删除图书
+     * @param bookId 图书ID
+     */
+    public void logDeleteBook(String bookId) {
+        if (append(DELETE_BOOK, out -> out.writeUTF(bookId), () -> loans.remove(bookId), false)) {
+            snapshotAfterAppend();
+        }
+    }
+
+    /**
+     * 记录添加用户
+     * @param user 用户对象
+     */
+    public void logAddUser(User user) {
+        if (append(ADD_USER, out -> writeUser(out, user), null, false)) {
+            snapshotAfterAppend();
+        }
+    }
+
+    /**
+     * 记录删除用户
+     * @param userId 用户ID
+     */
+    public void logDeleteUser(String userId) {
+        if (append(DELETE_USER, out -> out.writeUTF(userId), null, false)) {
+            snapshotAfterAppend();
+        }
+    }
+
+    /**
+     * 借书事件：记录借阅者和日期（不在此触发快照）
+     */
+    @Override
+    public void onBorrowed(Book book) {
+        Loan loan = new Loan(book.getBorrowerId(), book.getBorrowEpochDay(), book.getDueEpochDay());
+        append(BORROW, out -> {
+            out.writeUTF(book.getId());
+            out.writeUTF(loan.borrowerId);
+            out.writeInt(loan.borrowEpochDay);
+            out.writeInt(loan.dueEpochDay);
+        }, () -> loans.put(book.getId(), loan), true);
+    }
+
+    /**
+     * 还书事件（图书字段此时尚未清除，不在此触发快照）
+     */
+    @Override
+    public void onReturning(Book book) {
+        String bookId = book.getId();
+        append(RETURN, out -> out.writeUTF(bookId), () -> loans.remove(bookId), true);
+    }
+
+    /**
+     * 记录内容写入回调
+     */
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // ========== 延迟确认 ==========
+
+    /**
+     * 当前线程延迟确认的记录：所属持久化管理器和最大序号
+     */
+    private static final class Deferred {
+        FilePersistenceManager manager;
+        long sequence;
+    }
+
+    private static final ThreadLocal<Deferred> DEFERRED = new ThreadLocal<>();
+
+    /**
+     * 在当前线程开始延迟确认：此后本线程的借还记录不在监听器内等待落盘
+     * 必须与 awaitDeferredDurability() 成对调用（在释放事务锁之后）
+     * @return true-开始了新的延迟确认；false-外层已经开始，由外层负责等待
+     */
+    public static boolean deferDurability() {
+        if (DEFERRED.get() != null) {
+            return false;
+        }
+        DEFERRED.set(new Deferred());
+        return true;
+    }
+
+    /**
+     * 结束当前线程的延迟确认，等待期间追加的记录落盘（没有记录时立即返回）
+     * @throws UncheckedIOException 日志刷盘失败
+     */
+    public static void awaitDeferredDurability() {
+        Deferred deferred = DEFERRED.get();
+        DEFERRED.remove();
+        if (deferred != null && deferred.manager != null) {
+            deferred.manager.lock.lock();
+            try {
+                deferred.manager.awaitDurable(deferred.sequence);
+            } finally {
+                deferred.manager.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 追加一条记录并等待其落盘（内部方法）
+     * 记录先进入内存缓冲区，由刷盘线程与同一窗口内的其他记录一起写入并fsync
+     * @param stateUpdate 与记录在同一临界区内执行的在借表更新（可为null）
+     * @param deferrable 当前线程处于延迟确认中时是否可以不在此等待（借还记录）
+     * @return true-已到达快照间隔
+     */
+    private boolean append(byte type, RecordWriter writer, Runnable stateUpdate, boolean deferrable) {
+        byte[] payload;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(type);
+            writer.write(out);
+            out.flush();
+            payload = buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Deferred deferred = deferrable ? DEFERRED.get() : null;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("持久化管理器已关闭");
+            }
+            writeInt(pending, payload.length);
+            writeInt(pending, checksum(payload));
+            pending.write(payload, 0, payload.length);
+            if (stateUpdate != null) {
+                stateUpdate.run();
+            }
+            long sequence = ++appendedSequence;
+            recordsSinceSnapshot++;
+            stateChanged.signalAll();
+
+            if (deferred != null && (deferred.manager == null || deferred.manager == this)) {
+                deferred.manager = this;
+                deferred.sequence = sequence;
+            } else {
+                awaitDurable(sequence);
+            }
+            return recordsSinceSnapshot >= snapshotInterval && bookManager != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待正在进行的快照完成（调用方持有lock，只有写快照的线程需要等待）
+     */
+    private void awaitSnapshotFinished() {
+        boolean interrupted = false;
+        while (snapshotting) {
+            try {
+                stateChanged.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待指定序号的记录落盘（调用方持有lock）
+     */
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence && flushFailure == null) {
+            try {
+                stateChanged.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushFailure != null) {
+            throw new UncheckedIOException("日志刷盘失败", flushFailure);
+        }
+    }
+
+    /**
+     * 刷盘线程主循环：等待记录 → 停留一个组提交窗口收集更多记录 → 一次写入并fsync
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            lock.lock();
+            try {
+                try {
+                    do {
+                        // 写快照期间不刷盘：快照结束时会截断日志并丢弃缓冲区中已被快照覆盖的记录
+                        while ((pending.size() == 0 || snapshotting) && !closed) {
+                            stateChanged.await();
+                        }
+                        if (pending.size() == 0) {
+                            return;
+                        }
+                        long deadline = System.currentTimeMillis() + groupCommitMillis;
+                        long remaining;
+                        while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                            stateChanged.await(remaining, TimeUnit.MILLISECONDS);
+                        }
+                    } while (snapshotting && !closed);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchSequence = appendedSequence;
+                flushing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    walChannel.write(buffer);
+                }
+                walChannel.force(false);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    flushFailure = e;
+                    flushing = false;
+                    stateChanged.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSequence = batchSequence;
+                flushing = false;
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ========== 快照 ==========
+
+    /**
+     * 已到达快照间隔时写入快照（应在管理器线程上、没有进行中的增删时调用）
+     * @return true-写入了快照
+     */
+    public boolean snapshotIfDue() {
+        lock.lock();
+        try {
+            if (recordsSinceSnapshot < snapshotInterval || bookManager == null || closed) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    /**
+     * 记录落盘后按需写快照（内部方法）
+     * 记录已经落盘，快照失败不影响本次变更：只输出提示，下一条记录到来时重试
+     */
+    private void snapshotAfterAppend() {
+        try {
+            snapshotIfDue();
+        } catch (UncheckedIOException e) {
+            System.out.println("快照写入失败，稍后重试: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 写入全量快照并清空日志
+     * 图书和用户取自管理器（应在管理器线程上调用，管理器的增删已完整应用），借阅状态取自在借表。
+     * 锁内只复制状态，快照文件在锁外写入，借还记录照常追加，不会因快照在图书锁内等待；
+     * 快照先写入临时文件并fsync，再原子替换旧快照，最后截断日志
+     * @throws IOException 写入失败
+     */
+    public void snapshot() throws IOException {
+        SnapshotState state;
+        lock.lock();
+        try {
+            if (bookManager == null || userManager == null) {
+                throw new IllegalStateException("尚未attach管理器，无法写快照");
+            }
+            awaitSnapshotFinished();
+            snapshotting = true;
+            try {
+                state = captureSnapshot();
+            } catch (IOException | RuntimeException e) {
+                snapshotting = false;
+                stateChanged.signalAll();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        boolean written = false;
+        try {
+            writeSnapshotFile(state);
+            // 刷盘线程暂停中，日志文件只有本线程访问，截断也不需要持有lock
+            walChannel.truncate(0);
+            walChannel.position(0);
+            walChannel.force(true);
+            written = true;
+        } finally {
+            lock.lock();
+            try {
+                if (written) {
+                    dropCoveredRecords(state);
+                }
+            } finally {
+                snapshotting = false;
+                stateChanged.signalAll();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 快照时刻复制的状态
+     */
+    private static final class SnapshotState {
+        List<User> users;
+        List<Book> books;
+        Map<String, Loan> loans;
+        long sequence;          // 快照覆盖到的记录序号
+        int pendingBytes;       // 复制时缓冲区中尚未落盘的字节数（这些记录已包含在快照中）
+        int records;            // 复制时距上次快照的记录数
+    }
+
+    /**
+     * 等待刷盘线程空闲后复制快照状态（调用方持有lock并已设置snapshotting）
+     */
+    private SnapshotState captureSnapshot() throws IOException {
+        boolean interrupted = false;
+        while (flushing && flushFailure == null) {
+            try {
+                stateChanged.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (flushFailure != null) {
+            throw new IOException("日志刷盘失败", flushFailure);
+        }
+
+        SnapshotState state = new SnapshotState();
+        state.users = new ArrayList<>(userManager.getAllUsers());
+        state.books = new ArrayList<>(bookManager.getAllBooks());
+        state.loans = new HashMap<>(loans);
+        state.sequence = appendedSequence;
+        state.pendingBytes = pending.size();
+        state.records = recordsSinceSnapshot;
+        return state;
+    }
+
+    /**
+     * 写入快照文件（不持有lock）
+     * 借阅状态取自在借表而不是图书字段（借还中途的图书字段与日志不一致）
+     */
+    private void writeSnapshotFile(SnapshotState state) throws IOException {
+        MappedCatalog.write(snapshotPath, state.books, state.users, state.loans);
+    }
+
+    /**
+     * 日志截断后丢弃缓冲区中已被快照覆盖的记录（调用方持有lock，刷盘线程暂停中）
+     * 这些记录随快照一起落盘，等待它们的调用方随即返回
+     */
+    private void dropCoveredRecords(SnapshotState state) {
+        byte[] buffered = pending.toByteArray();
+        pending.reset();
+        pending.write(buffered, state.pendingBytes, buffered.length - state.pendingBytes);
+        durableSequence = Math.max(durableSequence, state.sequence);
+        recordsSinceSnapshot -= state.records;
+    }
+
+    /**
+     * 关闭：刷出剩余记录并停止刷盘线程
+     * @throws IOException 关闭文件失败
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotIfDue();
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            awaitDurable(appendedSequence);
+            closed = true;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        walChannel.close();
+    }
+
+    // ========== 在借表 ==========
+
+    /**
+     * 一条在借记录（不可变，目录快照写入时也使用）
+     */
+    static final class Loan {
+        final String borrowerId;
+        final int borrowEpochDay;
+        final int dueEpochDay;
+
+        Loan(String borrowerId, int borrowEpochDay, int dueEpochDay) {
+            this.borrowerId = borrowerId;
+            this.borrowEpochDay = borrowEpochDay;
+            this.dueEpochDay = dueEpochDay;
+        }
+
+        /**
+         * 读取图书当前的借阅信息（用于attach和添加已借出的图书）
+         * @return 借阅信息，未借出返回null
+         */
+        static Loan of(Book book) {
+            String borrowerId = book.getBorrowerId();
+            int borrowEpochDay = book.getBorrowEpochDay();
+            int dueEpochDay = book.getDueEpochDay();
+            if (borrowerId == null || borrowEpochDay == EpochDays.NONE || dueEpochDay == EpochDays.NONE) {
+                return null;
+            }
+            return new Loan(borrowerId, borrowEpochDay, dueEpochDay);
+        }
+    }
+
+    // ========== 编解码 ==========
+
+    private static void writeBook(DataOutputStream out, Book book) throws IOException {
+        out.writeUTF(book.getId());
+        writeNullableUTF(out, book.getTitle());
+        writeNullableUTF(out, book.getAuthor());
+        writeNullableUTF(out, book.getISBN());
+        out.writeByte(book.getCategory() == null ? -1 : book.getCategory().ordinal());
+        out.writeInt(book.getPageCount());
+        out.writeInt(book.getYear());
+        writeNullableUTF(out, book.getLocation());
+    }
+
+    private static Book readBook(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String title = readNullableUTF(in);
+        String author = readNullableUTF(in);
+        String isbn = readNullableUTF(in);
+        byte category = in.readByte();
+        Book book = new Book(id, title, author, isbn, category < 0 ? null : BookCategory.values()[category]);
+        book.setPageCount(in.readInt());
+        book.setYear(in.readInt());
+        book.setLocation(readNullableUTF(in));
+        return book;
+    }
+
+    /**
+     * 写入可为null的字符串：先写是否存在的标志
+     */
+    private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeUTF(user.getUserType());
+        out.writeUTF(user.getId());
+        out.writeUTF(user.getName());
+        String extraId;
+        if (user instanceof Student) {
+            extraId = ((Student) user).getStudentId();
+        } else if (user instanceof Teacher) {
+            extraId = ((Teacher) user).getTeacherId();
+        } else if (user instanceof Librarian) {
+            extraId = ((Librarian) user).getEmployedd();
+        } else {
+            throw new IOException("不支持持久化的用户类型: " + user.getUserType());
+        }
+        out.writeUTF(extraId == null ? "" : extraId);
+        out.writeInt(user.getMaxBorrowLimit());
+    }
+
+    private static User readUser(DataInputStream in) throws IOException {
+        String type = in.readUTF();
+        String id = in.readUTF();
+        String name = in.readUTF();
+        String extraId = in.readUTF();
+        User user;
+        switch (type) {
+            case "STUDENT": user = new Student(id, name, extraId); break;
+            case "TEACHER": user = new Teacher(id, name, extraId); break;
+            case "LIBRARIAN": user = new Librarian(id, name, extraId); break;
+            default: throw new IOException("未知的用户类型: " + type);
+        }
+        user.setMaxBorrowLimit(in.readInt());
+        return user;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
 }
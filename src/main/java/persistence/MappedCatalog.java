@@ -0,0 +1,457 @@
+package persistence;
+
+import cache.BookCache;
+import enums.BookCategory;
+import enums.UserType;
+import managers.BookManagerEnhanced;
+import managers.UserManagerEnhanced;
+import models.Book;
+import models.Librarian;
+import models.Student;
+import models.Teacher;
+import models.User;
+import utils.EpochDays;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存映射目录快照
+ * 固定布局的二进制文件，通过MappedByteBuffer直接读取，打开文件不需要反序列化任何对象；
+ * 只有被访问的记录才创建Book/User对象
+ *
+ * 目录快照是只读的：findBookById等方法每次返回新建的独立对象，目录本身不持有它们，
+ * 对这些对象的修改不会写回文件。需要修改时用 loadInto() 把记录交给管理器，
+ * 之后的变更由管理器和预写日志负责，下一次快照时整体重写文件
+ * （FilePersistenceManager的快照文件就是这种格式，恢复时经由 loadInto() 加载）
+ *
+ * 文件布局（大端序）：
+ * <pre>
+ * 头部(32字节)：magic | version | 图书数 | 用户数 | 图书表偏移 | 用户表偏移 | 字符串区偏移 | 分类列数
+ * 图书表：每条48字节，按图书ID的UTF-8字节序排序（支持二分查找）
+ *        id | title | author | isbn | location | 分类(1字节)+填充 | 页数 | 出版年 | 借阅者 | 借阅日(int日序号) | 应还日(int日序号) | 填充
+ * 用户表：每条 24 + 4×分类列数 字节，按用户ID排序
+ *        id | name | 类型(1字节)+填充 | 学号/工号 | 借阅上限 | 已借数量 | 各分类已借数量（未分类、各BookCategory）
+ *        分类列数写在头部，与当前BookCategory不一致的文件拒绝打开
+ * 字符串区：[int 字节长度][UTF-8字节]，表中的字符串字段是字符串区内的偏移，-1表示null
+ * </pre>
+ * 使用int偏移，单个文件不超过2GB
+ *
+ * 使用方式：
+ * <pre>
+ *     try (MappedCatalog catalog = MappedCatalog.open(Path.of("data/library.snapshot"))) {
+ *         Book book = catalog.findBookById("B001");          // 打开后即可按ID查询（只读副本）
+ *         BookCache hot = catalog.newBookCache(10_000);      // 或者只在堆上保留热门图书
+ *         catalog.loadInto(bookManager, userManager);        // 或者整体加载到管理器中
+ *     }
+ * </pre>
+ */
+public class MappedCatalog implements Closeable {
+    private static final int MAGIC = 0x4C49424D; // "LIBM"
+    private static final int VERSION = 3;           // 版本3：用户记录带各分类已借数量
+    private static final int HEADER_SIZE = 32;
+    private static final int BOOK_RECORD_SIZE = 48;
+    private static final int CATEGORY_COLUMNS = BookCategory.values().length + 1;   // 未分类 + 各分类
+    private static final int USER_RECORD_SIZE = 24 + 4 * CATEGORY_COLUMNS;
+    private static final int NULL_REF = -1;
+
+    // 用户类型编码
+    private static final byte STUDENT = 0;
+    private static final byte TEACHER = 1;
+    private static final byte LIBRARIAN = 2;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int bookCount;
+    private final int userCount;
+    private final int bookTableOffset;
+    private final int userTableOffset;
+
+    private MappedCatalog(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("目录快照格式不正确");
+        }
+        if (buffer.getInt(28) != CATEGORY_COLUMNS) {
+            throw new IOException("目录快照的图书分类数与当前版本不一致");
+        }
+        this.bookCount = buffer.getInt(8);
+        this.userCount = buffer.getInt(12);
+        this.bookTableOffset = buffer.getInt(16);
+        this.userTableOffset = buffer.getInt(20);
+    }
+
+    /**
+     * 以只读方式映射快照文件（只校验头部，不解析任何记录）
+     * @param file 快照文件
+     * @return 目录快照
+     * @throws IOException 文件不存在或格式不正确
+     */
+    public static MappedCatalog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedCatalog(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 根据ID查找图书（二分查找，每次返回新建的只读副本）
+     * @param bookId 图书ID
+     * @return 图书对象，未找到返回null
+     */
+    public Book findBookById(String bookId) {
+        int index = binarySearch(bookTableOffset, BOOK_RECORD_SIZE, bookCount, bookId);
+        return index < 0 ? null : getBook(index);
+    }
+
+    /**
+     * 根据ID查找用户（每次返回新建的只读副本）
+     * @param userId 用户ID
+     * @return 用户对象，未找到返回null
+     */
+    public User findUserById(String userId) {
+        int index = binarySearch(userTableOffset, USER_RECORD_SIZE, userCount, userId);
+        return index < 0 ? null : getUser(index);
+    }
+
+    /**
+     * 创建以本目录为数据源的只读图书缓存
+     * 记录留在映射区（堆外，由操作系统页缓存按需换入换出），只有被缓存准入的热门图书驻留在堆上，
+     * 被淘汰的图书对象可以被回收；缓存只能在目录关闭前使用，取得的图书同样是只读副本
+     * @param maxEntries 最大缓存条目数
+     * @return 图书缓存
+     */
+    public BookCache newBookCache(int maxEntries) {
+        return new BookCache(maxEntries, this::findBookById);
+    }
+
+    /**
+     * 按记录序号获取图书
+     * @param index 记录序号（0 ~ getBookCount()-1，按ID排序）
+     * @return 图书对象
+     */
+    public Book getBook(int index) {
+        return readBook(bookTableOffset + index * BOOK_RECORD_SIZE);
+    }
+
+    /**
+     * 按记录序号获取用户
+     * @param index 记录序号（0 ~ getUserCount()-1，按ID排序）
+     * @return 用户对象
+     */
+    public User getUser(int index) {
+        return readUser(userTableOffset + index * USER_RECORD_SIZE);
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * 把全部记录加载到（空的）管理器中：先用户后图书，走管理器的恢复方法，不经过缓存、不输出、不写日志
+     * 加载后的对象归管理器所有，目录不再引用它们
+     * @param bookManager 图书管理器
+     * @param userManager 用户管理器
+     */
+    public void loadInto(BookManagerEnhanced bookManager, UserManagerEnhanced userManager) {
+        for (int i = 0; i < userCount; i++) {
+            userManager.restoreUser(getUser(i));
+        }
+        for (int i = 0; i < bookCount; i++) {
+            bookManager.restoreBook(getBook(i));
+        }
+    }
+
+    /**
+     * 关闭文件通道（映射区域由GC回收，已返回的对象仍可使用）
+     * @throws IOException 关闭失败
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 在按ID排序的定长记录表中二分查找（内部方法）
+     * 直接比较映射区中的UTF-8字节，不创建字符串
+     */
+    private int binarySearch(int tableOffset, int recordSize, int count, String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareString(buffer.getInt(tableOffset + mid * recordSize), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareString(int ref, byte[] key) {
+        int length = buffer.getInt(ref);
+        int start = ref + 4;
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String readString(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        int length = buffer.getInt(ref);
+        byte[] bytes = new byte[length];
+        buffer.get(ref + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Book readBook(int offset) {
+        byte category = buffer.get(offset + 20);
+        Book book = new Book(
+                readString(buffer.getInt(offset)),
+                readString(buffer.getInt(offset + 4)),
+                readString(buffer.getInt(offset + 8)),
+                readString(buffer.getInt(offset + 12)),
+                category < 0 ? null : BookCategory.values()[category]);
+        book.setLocation(readString(buffer.getInt(offset + 16)));
+        book.setPageCount(buffer.getInt(offset + 24));
+        book.setYear(buffer.getInt(offset + 28));
+        String borrowerId = readString(buffer.getInt(offset + 32));
+        if (borrowerId != null) {
+            book.restoreLoan(borrowerId, borrowerTypeOf(borrowerId),
+                    buffer.getInt(offset + 36), buffer.getInt(offset + 40));
+        }
+        return book;
+    }
+
+    /**
+     * 直接从用户表读取借阅者类型，不创建用户对象（借阅者不存在时返回null）
+     */
+    private UserType borrowerTypeOf(String borrowerId) {
+        int index = binarySearch(userTableOffset, USER_RECORD_SIZE, userCount, borrowerId);
+        if (index < 0) {
+            return null;
+        }
+        switch (buffer.get(userTableOffset + index * USER_RECORD_SIZE + 8)) {
+            case STUDENT: return UserType.STUDENT;
+            case TEACHER: return UserType.TEACHER;
+            default: return UserType.LIBRARIAN;
+        }
+    }
+
+    private User readUser(int offset) {
+        String id = readString(buffer.getInt(offset));
+        String name = readString(buffer.getInt(offset + 4));
+        byte type = buffer.get(offset + 8);
+        String extraId = readString(buffer.getInt(offset + 12));
+        User user;
+        switch (type) {
+            case STUDENT: user = new Student(id, name, extraId); break;
+            case TEACHER: user = new Teacher(id, name, extraId); break;
+            default: user = new Librarian(id, name, extraId); break;
+        }
+        user.setMaxBorrowLimit(buffer.getInt(offset + 16));
+        user.setBorrowedCount(buffer.getInt(offset + 20));
+        // 各分类已借数量（分类借阅上限依赖它们）
+        user.setBorrowedCount(null, buffer.getInt(offset + 24));
+        for (BookCategory category : BookCategory.values()) {
+            user.setBorrowedCount(category, buffer.getInt(offset + 28 + 4 * category.ordinal()));
+        }
+        return user;
+    }
+
+    // ========== 写入 ==========
+
+    /**
+     * 写入目录快照（先写临时文件再原子替换），借阅状态取自图书字段
+     * @param file 目标文件
+     * @param bookCollection 图书
+     * @param userCollection 用户
+     * @throws IOException 写入失败或超过2GB
+     */
+    public static void write(Path file, Collection<Book> bookCollection, Collection<User> userCollection)
+            throws IOException {
+        Map<String, FilePersistenceManager.Loan> loans = new HashMap<>();
+        for (Book book : bookCollection) {
+            FilePersistenceManager.Loan loan = FilePersistenceManager.Loan.of(book);
+            if (loan != null) {
+                loans.put(book.getId(), loan);
+            }
+        }
+        write(file, bookCollection, userCollection, loans);
+    }
+
+    /**
+     * 写入目录快照，借阅状态取自给定的在借表（持久化管理器的快照使用，图书字段可能正处于借还中途）
+     * @param file 目标文件
+     * @param bookCollection 图书
+     * @param userCollection 用户
+     * @param loans 图书ID → 借阅信息
+     * @throws IOException 写入失败或超过2GB
+     */
+    static void write(Path file, Collection<Book> bookCollection, Collection<User> userCollection,
+                      Map<String, FilePersistenceManager.Loan> loans) throws IOException {
+        List<Book> sortedBooks = new ArrayList<>(bookCollection);
+        List<User> sortedUsers = new ArrayList<>(userCollection);
+        sortedBooks.sort((a, b) -> compareUtf8(a.getId(), b.getId()));
+        sortedUsers.sort((a, b) -> compareUtf8(a.getId(), b.getId()));
+
+        int bookTable = HEADER_SIZE;
+        long userTable = bookTable + (long) sortedBooks.size() * BOOK_RECORD_SIZE;
+        long stringArea = userTable + (long) sortedUsers.size() * USER_RECORD_SIZE;
+        StringArea strings = new StringArea(stringArea);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sortedBooks.size());
+            out.writeInt(sortedUsers.size());
+            out.writeInt(bookTable);
+            out.writeInt((int) userTable);
+            out.writeInt((int) stringArea);
+            out.writeInt(CATEGORY_COLUMNS);
+
+            for (Book book : sortedBooks) {
+                FilePersistenceManager.Loan loan = loans.get(book.getId());
+
+                out.writeInt(strings.ref(book.getId()));
+                out.writeInt(strings.ref(book.getTitle()));
+                out.writeInt(strings.ref(book.getAuthor()));
+                out.writeInt(strings.ref(book.getISBN()));
+                out.writeInt(strings.ref(book.getLocation()));
+                out.writeByte(book.getCategory() == null ? -1 : book.getCategory().ordinal());
+                out.write(new byte[3]);
+                out.writeInt(book.getPageCount());
+                out.writeInt(book.getYear());
+                out.writeInt(loan != null ? strings.ref(loan.borrowerId) : NULL_REF);
+                out.writeInt(loan != null ? loan.borrowEpochDay : EpochDays.NONE);
+                out.writeInt(loan != null ? loan.dueEpochDay : EpochDays.NONE);
+                out.write(new byte[4]);
+            }
+
+            for (User user : sortedUsers) {
+                byte type;
+                String extraId;
+                if (user instanceof Student) {
+                    type = STUDENT;
+                    extraId = ((Student) user).getStudentId();
+                } else if (user instanceof Teacher) {
+                    type = TEACHER;
+                    extraId = ((Teacher) user).getTeacherId();
+                } else if (user instanceof Librarian) {
+                    type = LIBRARIAN;
+                    extraId = ((Librarian) user).getEmployedd();
+                } else {
+                    throw new IOException("不支持的用户类型: " + user.getUserType());
+                }
+                out.writeInt(strings.ref(user.getId()));
+                out.writeInt(strings.ref(user.getName()));
+                out.writeByte(type);
+                out.write(new byte[3]);
+                out.writeInt(strings.ref(extraId));
+                out.writeInt(user.getMaxBorrowLimit());
+                out.writeInt(user.getBorrowedCount());
+                out.writeInt(user.getBorrowedCount(null));
+                for (BookCategory category : BookCategory.values()) {
+                    out.writeInt(user.getBorrowedCount(category));
+                }
+            }
+
+            strings.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 按UTF-8字节的无符号字典序比较（与映射区中的二分查找顺序一致）
+     */
+    private static int compareUtf8(String a, String b) {
+        return Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 字符串区构建器：相同字符串只存一份（如同一作者的多本图书）
+     */
+    private static final class StringArea {
+        private final long baseOffset;
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        StringArea(long baseOffset) {
+            this.baseOffset = baseOffset;
+        }
+
+        int ref(String value) throws IOException {
+            if (value == null) {
+                return NULL_REF;
+            }
+            Integer existing = refs.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            long offset = baseOffset + bytes.size();
+            if (offset > Integer.MAX_VALUE - 8) {
+                throw new IOException("目录快照超过2GB上限");
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            int length = encoded.length;
+            bytes.write(length >>> 24);
+            bytes.write(length >>> 16);
+            bytes.write(length >>> 8);
+            bytes.write(length);
+            bytes.write(encoded);
+            refs.put(value, (int) offset);
+            return (int) offset;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            bytes.writeTo(out);
+        }
+    }
+}
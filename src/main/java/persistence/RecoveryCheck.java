@@ -0,0 +1,241 @@
+package persistence;
+
+import enums.BookCategory;
+import exception.LibraryException;
+import managers.BookManagerEnhanced;
+import managers.UserManagerEnhanced;
+import models.Book;
+import models.Teacher;
+import models.User;
+import services.LibraryService;
+import utils.EpochDays;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 持久化重启检查
+ * 写入一段操作后关闭，再用新的管理器从快照+日志恢复，逐本比较图书的借阅状态和用户的借阅计数：
+ * 1. 快照边界：快照间隔取1~8，使快照恰好落在 添加用户、添加图书、借书、还书 的每一条记录上
+ *    （还书记录触发快照时，图书字段尚未清除，快照不能把图书写成仍在借）
+ * 2. 并发：多个线程借还的同时，主线程不断增删图书触发快照
+ * 3. 添加已借出的图书（导入的数据）后未写快照即重启，借阅状态应保留
+ * 4. 书号等字段为null的图书应能记录和恢复；日志写入失败的添加应被撤销，不留在管理器中
+ *
+ * 用法：java persistence.RecoveryCheck
+ */
+public class RecoveryCheck {
+    private final List<String> violations = new ArrayList<>();
+
+    /**
+     * 快照边界检查：addUser、addBook、borrow、return 后重启，图书应为可借
+     */
+    private void checkSnapshotBoundary(int snapshotInterval) throws IOException, LibraryException {
+        Path directory = Files.createTempDirectory("recovery-check");
+        BookManagerEnhanced books = new BookManagerEnhanced(false);
+        UserManagerEnhanced users = new UserManagerEnhanced(false);
+        FilePersistenceManager persistence = new FilePersistenceManager(directory, 0, snapshotInterval);
+        persistence.recover(books, users);
+        persistence.attach(books, users);
+        LibraryService service = new LibraryService();
+        try {
+            User user = new Teacher("S1", "教师", "T1");
+            Book book = new Book("B1", "标题", "作者", "978-7-111-21382-6", BookCategory.TEXTBOOK);
+            users.addUser(user);
+            books.addBook(book);
+            service.borrowBook(user, book, EpochDays.today());
+            service.returnBook(user, book, EpochDays.today());
+        } finally {
+            service.close();
+            persistence.close();
+        }
+        compareAfterRestart("快照间隔" + snapshotInterval, directory, books, users);
+    }
+
+    /**
+     * 已借出图书检查：添加时已借出的图书只记录在日志中，重启后仍为借出
+     */
+    private void checkAddBookOnLoan() throws IOException {
+        Path directory = Files.createTempDirectory("recovery-check");
+        BookManagerEnhanced books = new BookManagerEnhanced(false);
+        UserManagerEnhanced users = new UserManagerEnhanced(false);
+        FilePersistenceManager persistence = new FilePersistenceManager(directory, 0, 1000);
+        persistence.recover(books, users);
+        persistence.attach(books, users);
+        try {
+            Book book = new Book("B1", "标题", "作者", "978-7-111-21382-6", BookCategory.TEXTBOOK);
+            // 借阅者不在本馆用户中（导入的借阅记录），不影响用户借阅计数的比较
+            book.restoreLoan("IMPORTED", EpochDays.today(), EpochDays.today() + 30);
+            books.addBook(book);
+        } finally {
+            persistence.close();
+        }
+        compareAfterRestart("添加已借出图书", directory, books, users);
+    }
+
+    /**
+     * 可空字段检查：null字段的图书重启后仍在；无法编码的图书添加失败且不留在管理器中
+     */
+    private void checkNullableFields(int snapshotInterval) throws IOException {
+        Path directory = Files.createTempDirectory("recovery-check");
+        BookManagerEnhanced books = new BookManagerEnhanced(false);
+        UserManagerEnhanced users = new UserManagerEnhanced(false);
+        FilePersistenceManager persistence = new FilePersistenceManager(directory, 0, snapshotInterval);
+        persistence.recover(books, users);
+        persistence.attach(books, users);
+        try {
+            Book book = new Book("N1", "标题", "作者", null, BookCategory.GENERAL);
+            book.setLocation(null);
+            books.addBook(book);
+            try {
+                // 超过writeUTF上限（65535字节）的标题无法写入日志
+                books.addBook(new Book("N2", "长".repeat(30_000), "作者", null, BookCategory.GENERAL));
+                violations.add("可空字段: 无法写入日志的图书添加成功");
+            } catch (RuntimeException e) {
+                if (books.findBookById("N2") != null) {
+                    violations.add("可空字段: 日志写入失败的图书仍留在管理器中");
+                }
+            }
+        } finally {
+            persistence.close();
+        }
+        compareAfterRestart("可空字段（快照间隔" + snapshotInterval + "）", directory, books, users);
+    }
+
+    /**
+     * 并发检查：借还与快照并发进行
+     */
+    private void checkConcurrentSnapshots() throws Exception {
+        Path directory = Files.createTempDirectory("recovery-check");
+        BookManagerEnhanced books = new BookManagerEnhanced(false);
+        UserManagerEnhanced users = new UserManagerEnhanced(false);
+        FilePersistenceManager persistence = new FilePersistenceManager(directory, 1, 50);
+        persistence.recover(books, users);
+        persistence.attach(books, users);
+        // 工作线程只使用预先取得的对象，不与主线程的增删并发访问管理器
+        User[] patrons = new User[20];
+        Book[] stock = new Book[200];
+        for (int i = 0; i < patrons.length; i++) {
+            Teacher teacher = new Teacher("T" + i, "教师" + i, "E" + i);
+            teacher.setMaxBorrowLimit(1000);
+            users.addUser(teacher);
+            patrons[i] = teacher;
+        }
+        for (int i = 0; i < stock.length; i++) {
+            stock[i] = new Book("B" + i, "标题" + i, "作者", "978-" + i);
+            books.addBook(stock[i]);
+        }
+
+        LibraryService service = new LibraryService();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4000; i++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    User user = patrons[random.nextInt(patrons.length)];
+                    Book book = stock[random.nextInt(stock.length)];
+                    try {
+                        if (random.nextBoolean()) {
+                            service.borrowBook(user, book, EpochDays.today());
+                        } else {
+                            service.returnBook(user, book, EpochDays.today());
+                        }
+                    } catch (LibraryException e) {
+                        // 已借出、未借出等业务拒绝
+                    }
+                }));
+            }
+            // 主线程（管理器线程）同时增删图书，到达间隔时在这里写快照
+            for (int i = 0; i < 300; i++) {
+                books.addBook(new Book("X" + i, "临时" + i, "作者", "978-x" + i));
+                books.deleteBook("X" + i);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            service.close();
+            persistence.close();
+        }
+        compareAfterRestart("并发快照", directory, books, users);
+    }
+
+    /**
+     * 重启后逐本比较借阅状态、逐个比较借阅计数
+     */
+    private void compareAfterRestart(String scenario, Path directory,
+                                     BookManagerEnhanced books, UserManagerEnhanced users) throws IOException {
+        BookManagerEnhanced restoredBooks = new BookManagerEnhanced(false);
+        UserManagerEnhanced restoredUsers = new UserManagerEnhanced(false);
+        try (FilePersistenceManager persistence = new FilePersistenceManager(directory)) {
+            persistence.recover(restoredBooks, restoredUsers);
+        }
+        if (restoredBooks.getBookCount() != books.getBookCount()) {
+            violations.add(scenario + ": 图书数 " + restoredBooks.getBookCount() + " != " + books.getBookCount());
+        }
+        for (Book book : books.getAllBooks()) {
+            Book restored = restoredBooks.findBookById(book.getId());
+            if (restored == null) {
+                violations.add(scenario + ": 图书 " + book.getId() + " 丢失");
+            } else if (restored.isAvailable() != book.isAvailable()
+                    || !Objects.equals(restored.getBorrowerId(), book.getBorrowerId())) {
+                violations.add(scenario + ": 图书 " + book.getId() + " 恢复为 available=" + restored.isAvailable()
+                        + " borrower=" + restored.getBorrowerId() + "，应为 available=" + book.isAvailable()
+                        + " borrower=" + book.getBorrowerId());
+            }
+        }
+        for (User user : users.getAllUsers()) {
+            User restored = restoredUsers.findUserById(user.getId());
+            if (restored == null || restored.getBorrowedCount() != user.getBorrowedCount()) {
+                violations.add(scenario + ": 用户 " + user.getId() + " 借阅数 "
+                        + (restored == null ? "丢失" : restored.getBorrowedCount()) + " != " + user.getBorrowedCount());
+            }
+        }
+    }
+
+    /**
+     * 运行全部检查
+     * @return true-全部通过
+     */
+    public boolean run() throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));  // 屏蔽业务输出
+        try {
+            for (int interval = 1; interval <= 8; interval++) {
+                checkSnapshotBoundary(interval);
+            }
+            checkAddBookOnLoan();
+            checkNullableFields(1);       // 经由快照恢复
+            checkNullableFields(1000);    // 经由日志恢复
+            checkConcurrentSnapshots();
+        } finally {
+            System.setOut(console);
+        }
+
+        if (violations.isEmpty()) {
+            System.out.println("重启检查通过");
+            return true;
+        }
+        System.out.println("重启检查失败，共 " + violations.size() + " 处不一致：");
+        for (int i = 0; i < Math.min(20, violations.size()); i++) {
+            System.out.println("  " + violations.get(i));
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new RecoveryCheck().run() ? 0 : 1);
+    }
+}
@@ -0,0 +1,379 @@
+package services;
+
+import enums.BookCategory;
+import enums.UserType;
+import interfaces.ILoanListener;
+import managers.BookManagerEnhanced;
+import managers.BookManagerV2;
+import managers.IdSlotIndex;
+import models.Book;
+import models.LoanPolicy;
+import utils.EpochDays;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 批量罚款计算引擎
+ * 在借记录按列存放在基本类型数组中（图书ID、借阅者、应还日序号、分类代码、借阅者类型代码、日罚款额），
+ * 学期末核算时用一个无分支的紧凑循环扫过全部在借记录，JIT可以把它编译为SIMD指令；
+ * 金额以"分"为单位用long累加，结果不受浮点误差影响
+ *
+ * 借出/归还事件在图书锁内触发，监听器不获取引擎的锁：事件（借出时的快照）追加到无锁的变更日志，
+ * 核算前由核算线程在表锁内合并——借出时追加一行，归还时用最后一行填补空位（O(1)）；
+ * 日志积压较多时由事件线程顺带合并（tryLock，抢不到直接返回）。
+ * 行号按图书ID登记在开放寻址索引中（int值，无装箱）
+ * 日罚款额列由借阅规则表派生；规则表被替换后，下一次核算前按新规则整列重算
+ * 罚款按自然日计算：应还日期之后的每一天计一天罚款
+ */
+public class FineEngine implements ILoanListener {
+    // 分类代码：0表示未分类，其余为 BookCategory.ordinal() + 1
+    private static final int CATEGORY_CODES = BookCategory.values().length + 1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // 变更日志积压到多少条时由事件线程尝试合并
+    private static final int MERGE_THRESHOLD = 4096;
+
+    // ========== 列存储（下标相同的元素构成一行，受tableLock保护） ==========
+    private final ReentrantLock tableLock = new ReentrantLock();
+    private String[] bookIds = new String[INITIAL_CAPACITY];
+    private String[] borrowerIds = new String[INITIAL_CAPACITY];
+    private long[] dueEpochDays = new long[INITIAL_CAPACITY];
+    private byte[] categoryCodes = new byte[INITIAL_CAPACITY];
+    private byte[] userTypeCodes = new byte[INITIAL_CAPACITY]; // 0表示未知，其余为 UserType.ordinal() + 1
+    private long[] rateCents = new long[INITIAL_CAPACITY];     // 由类型和分类代码派生，避免循环内查表
+    private int size;
+
+    // 派生日罚款额列时使用的规则表，及其（类型代码, 分类代码）→ 日罚款额（分）的对照表
+    private LoanPolicy ratesPolicy;
+    private long[] rateTable;
+
+    // 图书ID → 行号
+    private final IdSlotIndex rowByBookId = new IdSlotIndex(INITIAL_CAPACITY);
+
+    // ========== 变更日志（借还事件写入，合并后清空） ==========
+    private final ConcurrentLinkedQueue<LoanEvent> changes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
+    /**
+     * 借还事件（借出时记录图书字段的快照，合并时不再读取图书）
+     */
+    private static final class LoanEvent {
+        final String bookId;
+        final boolean returned;
+        final String borrowerId;
+        final int dueEpochDay;
+        final byte categoryCode;
+        final byte userTypeCode;
+
+        LoanEvent(String bookId, boolean returned, String borrowerId, int dueEpochDay,
+                  byte categoryCode, byte userTypeCode) {
+            this.bookId = bookId;
+            this.returned = returned;
+            this.borrowerId = borrowerId;
+            this.dueEpochDay = dueEpochDay;
+            this.categoryCode = categoryCode;
+            this.userTypeCode = userTypeCode;
+        }
+    }
+
+    // ========== 注册（与OverdueTracker相同） ==========
+
+    /**
+     * 跟踪增强版管理器中的全部图书，并载入当前在借记录
+     * @param bookManager 图书管理器
+     */
+    public void attach(BookManagerEnhanced bookManager) {
+        bookManager.addLoanListener(this);
+        for (Book book : bookManager.getBorrowedBooks()) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 跟踪线程安全版管理器中的全部图书，并载入当前在借记录
+     * @param bookManager 图书管理器
+     */
+    public void attach(BookManagerV2 bookManager) {
+        bookManager.addLoanListener(this);
+        for (Book book : bookManager.getBorrowedBooks()) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 跟踪单本图书
+     * @param book 图书对象
+     */
+    public void track(Book book) {
+        book.addLoanListener(this);
+        if (!book.isAvailable() && book.getDueEpochDay() != EpochDays.NONE) {
+            onBorrowed(book);
+        }
+    }
+
+    // ========== 借阅事件 ==========
+
+    @Override
+    public void onBorrowed(Book book) {
+        int dueEpochDay = book.getDueEpochDay();
+        if (dueEpochDay == EpochDays.NONE) {
+            return;
+        }
+        record(new LoanEvent(book.getId(), false, book.getBorrowerId(), dueEpochDay,
+                codeOf(book.getCategory()), codeOf(book.getBorrowerType())));
+    }
+
+    @Override
+    public void onReturning(Book book) {
+        record(new LoanEvent(book.getId(), true, null, EpochDays.NONE, (byte) 0, (byte) 0));
+    }
+
+    /**
+     * 追加事件到变更日志，积压较多时尝试合并（不等待表锁）
+     */
+    private void record(LoanEvent event) {
+        changes.offer(event);
+        if (pendingChanges.incrementAndGet() >= MERGE_THRESHOLD && tableLock.tryLock()) {
+            try {
+                mergeChanges();
+            } finally {
+                tableLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 把变更日志合并到列存储，并按当前规则表刷新日罚款额列（调用方持有tableLock）
+     * 同一本书的事件在图书锁内按发生顺序入队，因此按出队顺序应用即可
+     */
+    private void mergeChanges() {
+        LoanEvent event;
+        while ((event = changes.poll()) != null) {
+            pendingChanges.decrementAndGet();
+            if (event.returned) {
+                removeRow(event.bookId);
+            } else {
+                putRow(event);
+            }
+        }
+        refreshRates();
+    }
+
+    private void putRow(LoanEvent event) {
+        int row = rowByBookId.get(event.bookId);
+        if (row == IdSlotIndex.NOT_FOUND) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowByBookId.put(event.bookId, row);
+        }
+        bookIds[row] = event.bookId;
+        borrowerIds[row] = event.borrowerId;
+        dueEpochDays[row] = event.dueEpochDay;
+        categoryCodes[row] = event.categoryCode;
+        userTypeCodes[row] = event.userTypeCode;
+        // 规则表随后由refreshRates检查，被替换时整列重算
+        rateCents[row] = rateTable == null ? 0 : rateTable[event.userTypeCode * CATEGORY_CODES + event.categoryCode];
+    }
+
+    private void removeRow(String bookId) {
+        int row = rowByBookId.remove(bookId);
+        if (row == IdSlotIndex.NOT_FOUND) {
+            return;
+        }
+        // 用最后一行填补被删除的行
+        int last = --size;
+        if (row != last) {
+            bookIds[row] = bookIds[last];
+            borrowerIds[row] = borrowerIds[last];
+            dueEpochDays[row] = dueEpochDays[last];
+            categoryCodes[row] = categoryCodes[last];
+            userTypeCodes[row] = userTypeCodes[last];
+            rateCents[row] = rateCents[last];
+            rowByBookId.put(bookIds[row], row);
+        }
+        bookIds[last] = null;
+        borrowerIds[last] = null;
+    }
+
+    // ========== 批量计算 ==========
+
+    /**
+     * 计算截至指定日期全部在借记录的罚款总额
+     * @param date 核算日期
+     * @return 罚款总额（元）
+     */
+    public double totalFines(Date date) {
+        return totalFineCents(EpochDays.of(date)) / 100.0;
+    }
+
+    /**
+     * 计算截至指定日序号全部在借记录的罚款总额（热点循环）
+     * @param todayEpochDay 核算日（自1970-01-01起的天数）
+     * @return 罚款总额（分）
+     */
+    public long totalFineCents(long todayEpochDay) {
+        tableLock.lock();
+        try {
+            mergeChanges();
+            long[] due = dueEpochDays;
+            long[] rates = rateCents;
+            int n = size;
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                // 未逾期时天数为0，循环内没有分支
+                total += Math.max(0L, todayEpochDay - due[i]) * rates[i];
+            }
+            return total;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    /**
+     * 统计截至指定日期的逾期记录数
+     * @param date 核算日期
+     * @return 逾期记录数
+     */
+    public int countOverdue(Date date) {
+        long today = EpochDays.of(date);
+        tableLock.lock();
+        try {
+            mergeChanges();
+            long[] due = dueEpochDays;
+            int n = size;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                count += due[i] < today ? 1 : 0;
+            }
+            return count;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    /**
+     * 按分类汇总截至指定日期的罚款
+     * @param date 核算日期
+     * @return 分类 → 罚款总额（元），只包含有罚款的分类；未分类的记录以null为键
+     */
+    public Map<BookCategory, Double> finesByCategory(Date date) {
+        long[] centsByCode = new long[CATEGORY_CODES];
+        long today = EpochDays.of(date);
+        tableLock.lock();
+        try {
+            mergeChanges();
+            for (int i = 0; i < size; i++) {
+                centsByCode[categoryCodes[i]] += Math.max(0L, today - dueEpochDays[i]) * rateCents[i];
+            }
+        } finally {
+            tableLock.unlock();
+        }
+
+        Map<BookCategory, Double> result = new LinkedHashMap<>();
+        BookCategory[] categories = BookCategory.values();
+        for (int code = 0; code < centsByCode.length; code++) {
+            if (centsByCode[code] > 0) {
+                result.put(code == 0 ? null : categories[code - 1], centsByCode[code] / 100.0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按借阅者汇总截至指定日期的罚款（学期末核算）
+     * @param date 核算日期
+     * @return 借阅者ID → 罚款总额（元），只包含有罚款的借阅者
+     */
+    public Map<String, Double> finesByBorrower(Date date) {
+        long today = EpochDays.of(date);
+        Map<String, Long> cents = new HashMap<>();
+        tableLock.lock();
+        try {
+            mergeChanges();
+            for (int i = 0; i < size; i++) {
+                long days = today - dueEpochDays[i];
+                if (days > 0) {
+                    cents.merge(borrowerIds[i], days * rateCents[i], Long::sum);
+                }
+            }
+        } finally {
+            tableLock.unlock();
+        }
+
+        Map<String, Double> result = new HashMap<>(cents.size() * 2);
+        for (Map.Entry<String, Long> entry : cents.entrySet()) {
+            result.put(entry.getKey(), entry.getValue() / 100.0);
+        }
+        return result;
+    }
+
+    /**
+     * 获取在借记录数
+     * @return 记录数
+     */
+    public int size() {
+        tableLock.lock();
+        try {
+            mergeChanges();
+            return size;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    // ========== 内部方法 ==========
+
+    private void ensureCapacity(int required) {
+        if (required <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, bookIds.length + (bookIds.length >> 1));
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        borrowerIds = Arrays.copyOf(borrowerIds, capacity);
+        dueEpochDays = Arrays.copyOf(dueEpochDays, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        userTypeCodes = Arrays.copyOf(userTypeCodes, capacity);
+        rateCents = Arrays.copyOf(rateCents, capacity);
+    }
+
+    private static byte codeOf(BookCategory category) {
+        return (byte) (category == null ? 0 : category.ordinal() + 1);
+    }
+
+    private static byte codeOf(UserType type) {
+        return (byte) (type == null ? 0 : type.ordinal() + 1);
+    }
+
+    /**
+     * 当前规则表与派生日罚款额列时的不同，重建对照表并重算整列（调用方持有tableLock）
+     */
+    private void refreshRates() {
+        LoanPolicy policy = LoanPolicy.current();
+        if (policy == ratesPolicy) {
+            return;
+        }
+        BookCategory[] categories = BookCategory.values();
+        UserType[] types = UserType.values();
+        long[] table = new long[(types.length + 1) * CATEGORY_CODES];
+        for (int typeCode = 0; typeCode <= types.length; typeCode++) {
+            UserType type = typeCode == 0 ? null : types[typeCode - 1];
+            for (int code = 0; code < CATEGORY_CODES; code++) {
+                table[typeCode * CATEGORY_CODES + code] =
+                        policy.getDailyFineCents(type, code == 0 ? null : categories[code - 1]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            rateCents[i] = table[userTypeCodes[i] * CATEGORY_CODES + categoryCodes[i]];
+        }
+        rateTable = table;
+        ratesPolicy = policy;
+    }
+}
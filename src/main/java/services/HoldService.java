@@ -0,0 +1,326 @@
+package services;
+
+import enums.HoldStatus;
+import exception.LibraryException;
+import interfaces.ILoanListener;
+import models.Book;
+import models.User;
+import utils.EpochDays;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 预约服务
+ * 每本图书一个无锁FIFO预约队列，排队人数由计数器限制在队列容量以内；
+ * 图书归还时（在图书锁内）自动交给队首的预约者，并在取书期限内为其预留，读者不必反复轮询可借图书列表
+ *
+ * 预约状态：WAITING（排队）→ READY（已到书）→ FULFILLED（已取书）
+ *          WAITING/READY → CANCELLED（读者取消），READY → EXPIRED（超过取书期限，转给下一位）
+ * 取消的排队预约立即移出队列并归还名额；与交接并发时仍可能短暂留在队列中，轮到它时直接跳过
+ */
+public class HoldService implements ILoanListener {
+    // 默认取书期限（天）
+    public static final int DEFAULT_PICKUP_DAYS = 3;
+    // 默认每本图书的预约队列容量
+    public static final int DEFAULT_QUEUE_CAPACITY = 32;
+
+    /**
+     * 预约记录
+     */
+    public static final class Hold {
+        private final String userId;
+        private final Book book;
+        private final int placedEpochDay;
+        private final AtomicReference<HoldStatus> status = new AtomicReference<>(HoldStatus.WAITING);
+        private volatile int pickupDeadline = EpochDays.NONE;
+
+        private Hold(String userId, Book book, int placedEpochDay) {
+            this.userId = userId;
+            this.book = book;
+            this.placedEpochDay = placedEpochDay;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public int getPlacedEpochDay() {
+            return placedEpochDay;
+        }
+
+        public HoldStatus getStatus() {
+            return status.get();
+        }
+
+        /**
+         * 获取取书截止日
+         * @return 截止日序号，未到书时返回EpochDays.NONE
+         */
+        public int getPickupDeadline() {
+            return pickupDeadline;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format("《%s》(ID: %s) 状态: %s", book.getTitle(), book.getId(), status.get());
+            return pickupDeadline == EpochDays.NONE
+                    ? text : text + " 取书截止: " + EpochDays.toLocalDate(pickupDeadline);
+        }
+    }
+
+    /**
+     * 一本图书的预约队列
+     * waiting只统计排队中（WAITING）的预约，是队列容量的唯一依据
+     */
+    private static final class Waitlist {
+        private final ConcurrentLinkedQueue<Hold> holds = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        /**
+         * 占用一个排队名额
+         * @return false-队列已满
+         */
+        boolean tryEnter(int capacity) {
+            int count;
+            do {
+                count = waiting.get();
+                if (count >= capacity) {
+                    return false;
+                }
+            } while (!waiting.compareAndSet(count, count + 1));
+            return true;
+        }
+    }
+
+    private final int pickupDays;
+    private final int queueCapacity;
+
+    // 图书 → 预约队列（首次预约时创建，并注册为该书的借阅事件监听器）
+    private final ConcurrentHashMap<Book, Waitlist> queues = new ConcurrentHashMap<>();
+    // 读者ID + 图书ID → 未结束的预约（防止重复预约，用于取消和查询）
+    private final ConcurrentHashMap<String, Hold> activeHolds = new ConcurrentHashMap<>();
+    // 图书 → 已到书、等待取书的预约
+    private final ConcurrentHashMap<Book, Hold> readyHolds = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法（默认取书期限和队列容量）
+     */
+    public HoldService() {
+        this(DEFAULT_PICKUP_DAYS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * 构造方法
+     * @param pickupDays 取书期限（天）
+     * @param queueCapacity 每本图书的预约队列容量
+     */
+    public HoldService(int pickupDays, int queueCapacity) {
+        if (pickupDays < 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("取书期限不能为负，队列容量必须大于0");
+        }
+        this.pickupDays = pickupDays;
+        this.queueCapacity = queueCapacity;
+    }
+
+    // ========== 预约与取消 ==========
+
+    /**
+     * 预约已借出的图书
+     * @param user 读者
+     * @param book 图书
+     * @param todayEpochDay 当前日
+     * @return 预约记录
+     * @throws LibraryException 图书可以直接借阅、读者已借阅或已预约该书、预约队列已满
+     */
+    public Hold placeHold(User user, Book book, int todayEpochDay) throws LibraryException {
+        if (book.isAvailable() && book.getReservedFor() == null) {
+            throw new LibraryException("图书 " + book.getId() + " 当前可借，无需预约", "LIB_2004", "HoldService");
+        }
+        if (user.getId().equals(book.getBorrowerId())) {
+            throw new LibraryException("用户 " + user.getId() + " 已借阅图书 " + book.getId(), "LIB_2005", "HoldService");
+        }
+
+        Hold hold = new Hold(user.getId(), book, todayEpochDay);
+        String key = keyOf(user.getId(), book);
+        if (activeHolds.putIfAbsent(key, hold) != null) {
+            throw new LibraryException("用户 " + user.getId() + " 已预约图书 " + book.getId(), "LIB_2005", "HoldService");
+        }
+        Waitlist waitlist = queueOf(book);
+        if (!waitlist.tryEnter(queueCapacity)) {
+            activeHolds.remove(key, hold);
+            throw new LibraryException("图书 " + book.getId() + " 的预约队列已满", "LIB_2006", "HoldService");
+        }
+        waitlist.holds.offer(hold);
+
+        // 入队期间图书可能已经归还（归还时队列为空，没有交接），补做一次交接
+        synchronized (book) {
+            if (book.isAvailable() && book.getReservedFor() == null) {
+                handOff(book, todayEpochDay);
+            }
+        }
+        return hold;
+    }
+
+    /**
+     * 取消预约（已到书的预约取消后，图书转给下一位预约者）
+     * @param user 读者
+     * @param book 图书
+     * @return true-取消成功, false-没有未结束的预约
+     */
+    public boolean cancelHold(User user, Book book) {
+        Hold hold = activeHolds.get(keyOf(user.getId(), book));
+        if (hold == null) {
+            return false;
+        }
+        if (hold.status.compareAndSet(HoldStatus.WAITING, HoldStatus.CANCELLED)) {
+            Waitlist waitlist = queues.get(book);
+            waitlist.waiting.decrementAndGet();
+            waitlist.holds.remove(hold);
+            activeHolds.remove(keyOf(hold.userId, book), hold);
+            return true;
+        }
+        synchronized (book) {
+            if (hold.status.compareAndSet(HoldStatus.READY, HoldStatus.CANCELLED)) {
+                finishReady(hold);
+                handOff(book, EpochDays.today());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 处理超过取书期限的预约：撤销预留并转给下一位预约者
+     * @param todayEpochDay 当前日
+     * @return 过期的预约数
+     */
+    public int expireHolds(int todayEpochDay) {
+        int expired = 0;
+        for (Hold hold : readyHolds.values()) {
+            if (hold.pickupDeadline >= todayEpochDay) {
+                continue;
+            }
+            Book book = hold.book;
+            synchronized (book) {
+                if (hold.status.compareAndSet(HoldStatus.READY, HoldStatus.EXPIRED)) {
+                    finishReady(hold);
+                    expired++;
+                    System.out.println("预约过期：《" + book.getTitle() + "》读者 " + hold.userId + " 未按时取书");
+                    if (book.isAvailable()) {
+                        handOff(book, todayEpochDay);
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    // ========== 借阅事件（在图书锁内调用） ==========
+
+    @Override
+    public void onBorrowed(Book book) {
+        // 预留读者取书则预约完成；预留过期后被他人借走则预约过期
+        Hold hold = readyHolds.remove(book);
+        if (hold != null) {
+            hold.status.compareAndSet(HoldStatus.READY,
+                    hold.userId.equals(book.getBorrowerId()) ? HoldStatus.FULFILLED : HoldStatus.EXPIRED);
+            activeHolds.remove(keyOf(hold.userId, book), hold);
+        }
+    }
+
+    @Override
+    public void onReturning(Book book) {
+        handOff(book, EpochDays.today());
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 获取读者未结束的预约（排队中和已到书），按预约日期排序
+     * @param userId 读者ID
+     * @return 预约列表
+     */
+    public List<Hold> getHolds(String userId) {
+        List<Hold> holds = new ArrayList<>();
+        for (Hold hold : activeHolds.values()) {
+            if (hold.userId.equals(userId)) {
+                holds.add(hold);
+            }
+        }
+        holds.sort(Comparator.comparingInt(Hold::getPlacedEpochDay));
+        return holds;
+    }
+
+    /**
+     * 获取图书的排队人数（只统计排队中的预约）
+     * @param book 图书
+     * @return 排队人数
+     */
+    public int getQueueLength(Book book) {
+        Waitlist waitlist = queues.get(book);
+        return waitlist == null ? 0 : waitlist.waiting.get();
+    }
+
+    /**
+     * 获取等待取书的预约数
+     * @return 已到书的预约数
+     */
+    public int getReadyCount() {
+        return readyHolds.size();
+    }
+
+    // ========== 内部方法 ==========
+
+    /**
+     * 把图书交给队首的有效预约者（调用方持有图书锁）
+     */
+    private void handOff(Book book, int todayEpochDay) {
+        Waitlist waitlist = queues.get(book);
+        if (waitlist == null) {
+            return;
+        }
+        Hold hold;
+        while ((hold = waitlist.holds.poll()) != null) {
+            // 已取消的预约直接跳过
+            if (hold.status.compareAndSet(HoldStatus.WAITING, HoldStatus.READY)) {
+                waitlist.waiting.decrementAndGet();
+                hold.pickupDeadline = todayEpochDay + pickupDays;
+                book.reserve(hold.userId, hold.pickupDeadline);
+                readyHolds.put(book, hold);
+                System.out.println("预约到书：《" + book.getTitle() + "》已为读者 " + hold.userId
+                        + " 预留至 " + EpochDays.toLocalDate(hold.pickupDeadline));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 结束已到书的预约：撤销预留并移除记录（调用方持有图书锁）
+     */
+    private void finishReady(Hold hold) {
+        hold.book.clearReservation(hold.userId);
+        readyHolds.remove(hold.book, hold);
+        activeHolds.remove(keyOf(hold.userId, hold.book), hold);
+    }
+
+    private Waitlist queueOf(Book book) {
+        return queues.computeIfAbsent(book, key -> {
+            key.addLoanListener(this);
+            return new Waitlist();
+        });
+    }
+
+    private static String keyOf(String userId, Book book) {
+        return userId + '\u0000' + book.getId();
+    }
+}
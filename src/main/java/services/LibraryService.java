@@ -1,4 +1,566 @@
 package services;
 
-public class LibraryService {
+import enums.BookCategory;
+import exception.BookNotAvailableException;
+import exception.BookNotFoundException;
+import exception.BorrowLimitExceededException;
+import exception.LibraryException;
+import exception.RequestTimeoutException;
+import exception.UserNotFoundException;
+import managers.BookManagerV2;
+import managers.UserManagerV2;
+import metrics.MetricsRegistry;
+import metrics.OperationTimer;
+import models.Book;
+import models.LoanPolicy;
+import models.User;
+import persistence.FilePersistenceManager;
+import utils.EpochDays;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图书馆业务服务类
+ * 提供原子的借书/还书事务：借阅上限检查、图书状态变更、用户借阅计数更新在同一临界区内完成
+ *
+ * 加锁规则：不使用全局锁，只锁定事务涉及的用户和图书对象，
+ * 并且始终按"先用户、后图书"的固定顺序加锁，因此不会产生死锁
+ *
+ * 锁内只做内存中的状态变更：借还记录写入预写日志后不在锁内等待落盘（延迟确认），
+ * 事务释放锁之后才等待，组提交窗口不会占住用户锁和图书锁。
+ * 注意用户锁和图书锁是对象监视器：在JDK 21上虚拟线程在其中追加日志（短暂获取日志锁）时仍会钉住载体线程，
+ * 延迟确认只是把最长的等待（落盘）移出了监视器
+ *
+ * 并发请求：submit/borrowBookAsync 等方法把每个请求放到独立的虚拟线程上执行，
+ * 大量同时在线的读者会话不需要同样数量的平台线程；
+ * 同时办理的请求数由信号量限制，每个请求有截止时间，调用方可随时取消；
+ * 超时和取消只在请求进入借还事务之前生效，已开始的事务以真实结果完成，调用方不会把已办理的借还误判为超时。
+ * 执行器和截止时间调度器在第一次提交并发请求时才创建，只使用同步事务的调用方不需要close
+ */
+public class LibraryService implements AutoCloseable {
+    // 默认最大并发请求数
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 1_000;
+    // 默认请求超时时间（毫秒）
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+    // 图书管理器（按ID办理业务时使用，可为null）
+    private final BookManagerV2 bookManager;
+
+    // 用户管理器（按ID办理业务时使用，可为null；并发请求会同时查找，必须是线程安全的）
+    private final UserManagerV2 userManager;
+
+    // 请求执行器：每个请求一个虚拟线程（首次提交时创建）
+    private volatile ExecutorService requestExecutor;
+
+    // 截止时间调度器（请求完成时取消对应的超时任务；与执行器一起创建）
+    private volatile ScheduledThreadPoolExecutor deadlineScheduler;
+
+    // 已关闭：不再创建执行器
+    private boolean closed;
+
+    // 并发名额
+    private final Semaphore requestPermits;
+    private final int maxConcurrentRequests;
+
+    // 借还事务计时（含等待用户锁、图书锁的时间；被拒绝的事务计为失败）
+    private final MetricsRegistry metrics = new MetricsRegistry("service");
+    private final OperationTimer borrowTimer = metrics.timer("borrow");
+    private final OperationTimer returnTimer = metrics.timer("return");
+
+    // 当前虚拟线程正在执行的并发请求（同步调用时为null）
+    private static final ThreadLocal<RequestFuture<?>> CURRENT_REQUEST = new ThreadLocal<>();
+
+    /**
+     * 并发请求的结果
+     * 状态：未进入事务 → 已进入事务，或 未进入事务 → 已放弃（超时或取消）。
+     * 只有未进入事务的请求可以超时或取消，已进入事务的请求必须以真实结果完成
+     * @param <T> 结果类型
+     */
+    private static final class RequestFuture<T> extends CompletableFuture<T> {
+        private static final int PENDING = 0;
+        private static final int STARTED = 1;
+        private static final int ABANDONED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile Future<?> task;
+
+        /**
+         * 进入借还事务（加锁之前调用）
+         * @return false-请求已超时或被取消，不能再办理
+         */
+        boolean start() {
+            return state.compareAndSet(PENDING, STARTED) || state.get() == STARTED;
+        }
+
+        /**
+         * 截止时间到达：尚未进入事务时以超时完成并中断执行线程
+         */
+        void expire(long timeoutMillis) {
+            if (state.compareAndSet(PENDING, ABANDONED)) {
+                super.completeExceptionally(new RequestTimeoutException(timeoutMillis));
+                interruptTask();
+            }
+        }
+
+        /**
+         * 服务关闭等原因无法继续受理：尚未进入事务时以指定异常完成并中断执行线程
+         * （已进入事务的请求照常以真实结果完成）
+         */
+        void reject(Throwable error) {
+            if (state.compareAndSet(PENDING, ABANDONED)) {
+                super.completeExceptionally(error);
+                interruptTask();
+            }
+        }
+
+        /**
+         * 调用方取消：已进入事务的请求不能取消
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!state.compareAndSet(PENDING, ABANDONED)) {
+                return false;
+            }
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            interruptTask();
+            return cancelled;
+        }
+
+        private void interruptTask() {
+            Future<?> running = task;
+            if (running != null) {
+                running.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 可抛出业务异常的请求
+     * @param <T> 请求结果类型
+     */
+    @FunctionalInterface
+    public interface Request<T> {
+        T execute() throws LibraryException;
+    }
+
+    /**
+     * 构造方法（仅使用对象级事务：borrowBook(User, Book, Date) 等）
+     */
+    public LibraryService() {
+        this(null, null);
+    }
+
+    /**
+     * 构造方法
+     * @param bookManager 线程安全的图书管理器
+     * @param userManager 线程安全的用户管理器
+     */
+    public LibraryService(BookManagerV2 bookManager, UserManagerV2 userManager) {
+        this(bookManager, userManager, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * 构造方法
+     * @param bookManager 线程安全的图书管理器
+     * @param userManager 线程安全的用户管理器
+     * @param maxConcurrentRequests 最大并发请求数（超出的请求排队等待，计入截止时间）
+     */
+    public LibraryService(BookManagerV2 bookManager, UserManagerV2 userManager, int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("最大并发请求数必须大于0");
+        }
+        this.bookManager = bookManager;
+        this.userManager = userManager;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * 创建请求执行器和截止时间调度器（只在第一次提交并发请求时执行）
+     * @return false-服务已关闭
+     */
+    private synchronized boolean startExecutors() {
+        if (closed) {
+            return false;
+        }
+        if (requestExecutor == null) {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "request-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            deadlineScheduler = scheduler;
+            requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return true;
+    }
+
+    /**
+     * 借阅图书（原子事务）
+     * @param user 借阅用户
+     * @param book 要借阅的图书
+     * @param borrowDate 借阅日期
+     * @throws BookNotAvailableException 图书已被借出，或该用户不能借阅此图书
+     * @throws BorrowLimitExceededException 用户已达借阅上限
+     */
+    public void borrowBook(User user, Book book, Date borrowDate)
+            throws BookNotAvailableException, BorrowLimitExceededException {
+        borrowBook(user, book, EpochDays.of(borrowDate));
+    }
+
+    /**
+     * 借阅图书（原子事务，日序号版本）
+     * @param user 借阅用户
+     * @param book 要借阅的图书
+     * @param borrowEpochDay 借阅日
+     * @throws BookNotAvailableException 图书已被借出，或该用户不能借阅此图书
+     * @throws BorrowLimitExceededException 用户已达借阅上限或该分类的在借上限
+     */
+    public void borrowBook(User user, Book book, int borrowEpochDay)
+            throws BookNotAvailableException, BorrowLimitExceededException {
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean deferred = FilePersistenceManager.deferDurability();
+        try {
+            borrowLocked(user, book, borrowEpochDay);
+            success = true;
+        } finally {
+            // 已释放用户锁和图书锁，再等待借书记录落盘
+            if (deferred) {
+                FilePersistenceManager.awaitDeferredDurability();
+            }
+            borrowTimer.recordSince(start, success);
+        }
+    }
+
+    /**
+     * 并发请求进入借还事务（加锁之前调用，同步调用时直接返回）
+     * @throws CancellationException 请求已超时或被取消，结果已经确定，事务不再办理
+     */
+    private static void enterTransaction() {
+        RequestFuture<?> current = CURRENT_REQUEST.get();
+        if (current != null && !current.start()) {
+            throw new CancellationException("请求已超时或被取消");
+        }
+    }
+
+    /**
+     * 借阅事务本体（按先用户、后图书的顺序加锁）
+     */
+    private void borrowLocked(User user, Book book, int borrowEpochDay)
+            throws BookNotAvailableException, BorrowLimitExceededException {
+        BookCategory category = book.getCategory();
+        enterTransaction();
+        synchronized (user) {
+            synchronized (book) {
+                // 1. 检查图书状态
+                if (!book.isAvailable()) {
+                    throw new BookNotAvailableException(book.getId());
+                }
+
+                // 2. 检查用户借阅上限
+                if (user.hasReachedBorrowLimit() || !user.canBorrow()) {
+                    throw new BorrowLimitExceededException(user.getId(), user.getBorrowLimit());
+                }
+
+                // 3. 检查同类图书在借上限（整个事务使用同一份规则表，规则热替换不会导致前后检查不一致）
+                LoanPolicy policy = LoanPolicy.current();
+                int categoryLimit = policy.getCategoryLimit(user.getUserTypeEnum(), category);
+                if (user.getBorrowedCount(category) >= categoryLimit) {
+                    throw new BorrowLimitExceededException(user.getId(), category, categoryLimit);
+                }
+
+                // 4. 借阅（借阅规则、预留检查在图书锁内按借阅日进行，失败即不可借）
+                if (!book.borrow(user, borrowEpochDay, policy)) {
+                    throw new BookNotAvailableException(book.getId());
+                }
+
+                // 5. 更新用户借阅计数（已持有用户锁，上限检查已通过）
+                user.borrowItem(category);
+            }
+        }
+    }
+
+    /**
+     * 归还图书（原子事务）
+     * @param user 归还用户
+     * @param book 要归还的图书
+     * @param returnDate 归还日期
+     * @throws LibraryException 图书不是由该用户借出
+     */
+    public void returnBook(User user, Book book, Date returnDate) throws LibraryException {
+        returnBook(user, book, EpochDays.of(returnDate));
+    }
+
+    /**
+     * 归还图书（原子事务，日序号版本）
+     * @param user 归还用户
+     * @param book 要归还的图书
+     * @param returnEpochDay 归还日
+     * @throws LibraryException 图书不是由该用户借出
+     */
+    public void returnBook(User user, Book book, int returnEpochDay) throws LibraryException {
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean deferred = FilePersistenceManager.deferDurability();
+        try {
+            returnLocked(user, book, returnEpochDay);
+            success = true;
+        } finally {
+            // 已释放用户锁和图书锁，再等待还书记录落盘
+            if (deferred) {
+                FilePersistenceManager.awaitDeferredDurability();
+            }
+            returnTimer.recordSince(start, success);
+        }
+    }
+
+    /**
+     * 归还事务本体（按先用户、后图书的顺序加锁）
+     */
+    private void returnLocked(User user, Book book, int returnEpochDay) throws LibraryException {
+        enterTransaction();
+        synchronized (user) {
+            synchronized (book) {
+                if (book.isAvailable() || !user.getId().equals(book.getBorrowerId())) {
+                    throw new LibraryException("图书 " + book.getId() + " 不是由用户 " + user.getId() + " 借出",
+                            "LIB_2003", "BorrowService");
+                }
+
+                book.returnItem(returnEpochDay);
+                user.returnItem(book.getCategory());
+            }
+        }
+    }
+
+    /**
+     * 按ID借阅图书
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @throws LibraryException 用户/图书不存在、图书不可借或已达借阅上限
+     */
+    public void borrowBook(String userId, String bookId) throws LibraryException {
+        borrowBook(requireUser(userId), requireBook(bookId), EpochDays.today());
+    }
+
+    /**
+     * 按ID归还图书
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @throws LibraryException 用户/图书不存在或图书不是由该用户借出
+     */
+    public void returnBook(String userId, String bookId) throws LibraryException {
+        returnBook(requireUser(userId), requireBook(bookId), EpochDays.today());
+    }
+
+    // ========== 并发请求（虚拟线程） ==========
+
+    /**
+     * 异步按ID借阅图书（默认超时）
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @return 办理结果；失败时以LibraryException异常完成
+     */
+    public CompletableFuture<Void> borrowBookAsync(String userId, String bookId) {
+        return submit(() -> {
+            borrowBook(userId, bookId);
+            return null;
+        });
+    }
+
+    /**
+     * 异步按ID归还图书（默认超时）
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @return 办理结果；失败时以LibraryException异常完成
+     */
+    public CompletableFuture<Void> returnBookAsync(String userId, String bookId) {
+        return submit(() -> {
+            returnBook(userId, bookId);
+            return null;
+        });
+    }
+
+    /**
+     * 异步按标题搜索图书（默认超时）
+     * @param keyword 关键词
+     * @return 匹配的图书列表
+     */
+    public CompletableFuture<List<Book>> searchByTitleAsync(String keyword) {
+        return submit(() -> {
+            if (bookManager == null) {
+                throw new LibraryException("未配置图书管理器", "LIB_5002", "LibraryService");
+            }
+            return bookManager.searchByTitle(keyword);
+        });
+    }
+
+    /**
+     * 提交请求（默认超时）
+     * @param request 请求
+     * @param <T> 结果类型
+     * @return 请求结果
+     */
+    public <T> CompletableFuture<T> submit(Request<T> request) {
+        return submit(request, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交请求，在新的虚拟线程上执行
+     * 1. 等待并发名额（等待时间计入截止时间）
+     * 2. 截止时间到达时结果以RequestTimeoutException完成，并中断仍在执行的请求
+     * 3. 调用方对返回的future调用cancel时同样中断请求
+     * 超时和取消只在加锁之前生效：已进入借还事务的请求会完整办理完毕，future以真实结果完成，
+     * 此时cancel返回false，截止时间也不再生效
+     * @param request 请求
+     * @param timeout 超时时间
+     * @param unit 时间单位
+     * @param <T> 结果类型
+     * @return 请求结果；业务失败时以LibraryException异常完成
+     */
+    public <T> CompletableFuture<T> submit(Request<T> request, long timeout, TimeUnit unit) {
+        RequestFuture<T> result = new RequestFuture<>();
+        long timeoutMillis = unit.toMillis(timeout);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        try {
+            if (requestExecutor == null && !startExecutors()) {
+                throw new IllegalStateException("服务已关闭");
+            }
+            result.task = requestExecutor.submit(() -> execute(request, result, deadline, timeoutMillis));
+        } catch (RuntimeException e) {
+            // 服务已关闭
+            result.completeExceptionally(new LibraryException("服务已关闭，无法受理请求", "LIB_5003", "LibraryService"));
+            return result;
+        }
+
+        // 截止时间（已进入事务的请求不受影响）；完成时取消超时任务
+        ScheduledFuture<?> timer;
+        try {
+            timer = deadlineScheduler.schedule(() -> result.expire(timeoutMillis), timeout, unit);
+        } catch (RejectedExecutionException e) {
+            // 请求已排入执行器后服务被关闭：与受理失败同样处理，并取消已排队的请求
+            result.reject(new LibraryException("服务已关闭，无法受理请求", "LIB_5003", "LibraryService"));
+            return result;
+        }
+        result.whenComplete((value, error) -> timer.cancel(false));
+        return result;
+    }
+
+    /**
+     * 在虚拟线程上执行请求（内部方法）
+     */
+    private <T> void execute(Request<T> request, RequestFuture<T> result, long deadline, long timeoutMillis) {
+        try {
+            if (!requestPermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                result.expire(timeoutMillis);
+                return;
+            }
+        } catch (InterruptedException e) {
+            return;    // 已超时或被取消，结果已经确定
+        }
+
+        if (result.isDone()) {
+            requestPermits.release();    // 排队期间已超时或被取消
+            return;
+        }
+
+        T value;
+        CURRENT_REQUEST.set(result);
+        try {
+            value = request.execute();
+        } catch (LibraryException | RuntimeException e) {
+            requestPermits.release();
+            result.completeExceptionally(e);
+            return;
+        } finally {
+            CURRENT_REQUEST.remove();
+        }
+        // 先归还名额再完成结果，调用方拿到结果时名额已可用
+        requestPermits.release();
+        result.complete(value);
+    }
+
+    /**
+     * 获取正在办理的请求数
+     * @return 正在办理的请求数
+     */
+    public int getActiveRequestCount() {
+        return maxConcurrentRequests - requestPermits.availablePermits();
+    }
+
+    /**
+     * 获取最大并发请求数
+     * @return 最大并发请求数
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * 获取借还事务的指标注册表（用于JMX注册或导出Prometheus文本）
+     * @return 指标注册表
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 关闭服务：不再受理新的并发请求，等待已受理的请求办理完毕
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        ExecutorService requestExecutor = this.requestExecutor;
+        if (requestExecutor == null) {
+            return;     // 从未提交过并发请求
+        }
+        requestExecutor.shutdown();
+        deadlineScheduler.shutdown();
+        try {
+            if (!requestExecutor.awaitTermination(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                requestExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            requestExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 查找用户，不存在时抛出异常（内部方法）
+     */
+    private User requireUser(String userId) throws UserNotFoundException {
+        User user = userManager == null ? null : userManager.findUserById(userId);
+        if (user == null) {
+            throw new UserNotFoundException(userId);
+        }
+        return user;
+    }
+
+    /**
+     * 查找图书，不存在时抛出异常（内部方法）
+     */
+    private Book requireBook(String bookId) throws BookNotFoundException {
+        Book book = bookManager == null ? null : bookManager.findBookById(bookId);
+        if (book == null) {
+            throw new BookNotFoundException(bookId);
+        }
+        return book;
+    }
 }
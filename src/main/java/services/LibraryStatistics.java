@@ -0,0 +1,333 @@
+package services;
+
+import enums.BookCategory;
+import enums.UserType;
+import interfaces.ILoanListener;
+import models.Book;
+import models.LibraryItem;
+import models.User;
+import utils.EpochDays;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 增量统计引擎
+ * 各项计数在每次变更时就地更新，查询统计不再扫描馆藏和用户表：
+ * - 图书：总数、可借数（按分类细分）——由管理器在增删图书、可借状态变化时调用
+ * - 用户：按用户类型计数——由管理器在增删用户时调用
+ * - 借阅：在借数、逾期数——作为借阅事件监听器，按应还日维护一张计数表；
+ *   逾期数只在日期推进时累加跨过的那几天，不逐本判断
+ *
+ * 每次变更使版本号（generation）加一；snapshot() 在版本号和日期都没变时直接返回上次的快照对象，
+ * 监控程序可以高频轮询而几乎没有开销
+ *
+ * 图书分类在加入管理器之后视为不变
+ */
+public class LibraryStatistics implements ILoanListener {
+
+    /**
+     * 统计快照（不可变）
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final int epochDay;
+        private final int[] booksByCategory;      // 下标0为未分类，其余为 分类序号+1
+        private final int[] availableByCategory;
+        private final int[] usersByType;
+        private final int activeLoans;
+        private final int overdueLoans;
+
+        private Snapshot(long generation, int epochDay, int[] booksByCategory, int[] availableByCategory,
+                         int[] usersByType, int activeLoans, int overdueLoans) {
+            this.generation = generation;
+            this.epochDay = epochDay;
+            this.booksByCategory = booksByCategory;
+            this.availableByCategory = availableByCategory;
+            this.usersByType = usersByType;
+            this.activeLoans = activeLoans;
+            this.overdueLoans = overdueLoans;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int getEpochDay() {
+            return epochDay;
+        }
+
+        public int getTotalBooks() {
+            return sum(booksByCategory);
+        }
+
+        public int getAvailableBooks() {
+            return sum(availableByCategory);
+        }
+
+        public int getBorrowedBooks() {
+            return getTotalBooks() - getAvailableBooks();
+        }
+
+        /**
+         * 获取某分类的图书数
+         * @param category 图书分类（null表示未分类）
+         * @return 图书数
+         */
+        public int getBookCount(BookCategory category) {
+            return booksByCategory[column(category)];
+        }
+
+        /**
+         * 获取某分类的可借图书数
+         * @param category 图书分类（null表示未分类）
+         * @return 可借图书数
+         */
+        public int getAvailableCount(BookCategory category) {
+            return availableByCategory[column(category)];
+        }
+
+        /**
+         * 按分类列出可借数/总数（只列出有图书的分类）
+         * @return 如 TEXTBOOK 3/3, FICTION 1/2
+         */
+        public String getCategorySummary() {
+            StringBuilder sb = new StringBuilder();
+            for (int column = 0; column < booksByCategory.length; column++) {
+                if (booksByCategory[column] == 0) {
+                    continue;
+                }
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(column == 0 ? "未分类" : BookCategory.values()[column - 1].name())
+                        .append(' ').append(availableByCategory[column])
+                        .append('/').append(booksByCategory[column]);
+            }
+            return sb.toString();
+        }
+
+        public int getTotalUsers() {
+            return sum(usersByType);
+        }
+
+        /**
+         * 获取某类型的用户数
+         * @param type 用户类型
+         * @return 用户数
+         */
+        public int getUserCount(UserType type) {
+            return usersByType[type.ordinal()];
+        }
+
+        public int getActiveLoans() {
+            return activeLoans;
+        }
+
+        public int getOverdueLoans() {
+            return overdueLoans;
+        }
+
+        private static int sum(int[] counts) {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    private static final int CATEGORY_COLUMNS = BookCategory.values().length + 1;
+
+    // 以下计数都由this保护
+    private final int[] booksByCategory = new int[CATEGORY_COLUMNS];
+    private final int[] availableByCategory = new int[CATEGORY_COLUMNS];
+    private final int[] usersByType = new int[UserType.values().length];
+    private int activeLoans;
+
+    // 应还日 → 在借数；overdueLoans 为应还日早于 overdueDay 的在借数
+    private final TreeMap<Integer, Integer> loansByDueDay = new TreeMap<>();
+    private int overdueDay = EpochDays.today();
+    private int overdueLoans;
+
+    // 版本号：每次变更加一（写在锁内，读不加锁）
+    private volatile long generation;
+    private volatile Snapshot cached;
+
+    // ========== 图书 ==========
+
+    /**
+     * 图书已加入管理器
+     * @param book 图书
+     */
+    public synchronized void bookAdded(Book book) {
+        int column = column(book.getCategory());
+        booksByCategory[column]++;
+        if (book.isAvailable()) {
+            availableByCategory[column]++;
+        } else if (book.getDueEpochDay() != EpochDays.NONE) {
+            addLoan(book.getDueEpochDay());
+        }
+        generation++;
+    }
+
+    /**
+     * 图书已从管理器删除
+     * @param book 图书
+     */
+    public synchronized void bookRemoved(Book book) {
+        int column = column(book.getCategory());
+        booksByCategory[column]--;
+        if (book.isAvailable()) {
+            availableByCategory[column]--;
+        } else if (book.getDueEpochDay() != EpochDays.NONE) {
+            removeLoan(book.getDueEpochDay());
+        }
+        generation++;
+    }
+
+    /**
+     * 管理器中图书的可借状态已变化（由管理器的可借状态监听器转发）
+     * @param item 图书
+     * @param available 新的可借状态
+     */
+    public synchronized void availabilityChanged(LibraryItem item, boolean available) {
+        if (!(item instanceof Book)) {
+            return;
+        }
+        availableByCategory[column(((Book) item).getCategory())] += available ? 1 : -1;
+        generation++;
+    }
+
+    // ========== 用户 ==========
+
+    /**
+     * 用户已加入管理器
+     * @param user 用户
+     */
+    public synchronized void userAdded(User user) {
+        usersByType[user.getUserTypeEnum().ordinal()]++;
+        generation++;
+    }
+
+    /**
+     * 用户已从管理器删除
+     * @param user 用户
+     */
+    public synchronized void userRemoved(User user) {
+        usersByType[user.getUserTypeEnum().ordinal()]--;
+        generation++;
+    }
+
+    // ========== 借阅事件 ==========
+
+    @Override
+    public synchronized void onBorrowed(Book book) {
+        addLoan(book.getDueEpochDay());
+        generation++;
+    }
+
+    @Override
+    public synchronized void onReturning(Book book) {
+        removeLoan(book.getDueEpochDay());
+        generation++;
+    }
+
+    // ========== 快照 ==========
+
+    /**
+     * 获取今天的统计快照
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        return snapshot(EpochDays.today());
+    }
+
+    /**
+     * 获取统计快照（没有变更且日期相同时返回上次的快照对象）
+     * @param todayEpochDay 判断逾期用的当前日
+     * @return 快照
+     */
+    public Snapshot snapshot(int todayEpochDay) {
+        Snapshot current = cached;
+        if (current != null && current.generation == generation && current.epochDay == todayEpochDay) {
+            return current;
+        }
+        synchronized (this) {
+            advanceOverdueDay(todayEpochDay);
+            current = new Snapshot(generation, todayEpochDay,
+                    booksByCategory.clone(), availableByCategory.clone(), usersByType.clone(),
+                    activeLoans, overdueLoans);
+            cached = current;
+            return current;
+        }
+    }
+
+    /**
+     * 获取当前版本号（每次变更加一）
+     * @return 版本号
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    public synchronized void reset() {
+        Arrays.fill(booksByCategory, 0);
+        Arrays.fill(availableByCategory, 0);
+        Arrays.fill(usersByType, 0);
+        loansByDueDay.clear();
+        activeLoans = 0;
+        overdueLoans = 0;
+        generation++;
+    }
+
+    // ========== 内部方法 ==========
+
+    private void addLoan(int dueEpochDay) {
+        loansByDueDay.merge(dueEpochDay, 1, Integer::sum);
+        activeLoans++;
+        if (dueEpochDay < overdueDay) {
+            overdueLoans++;
+        }
+    }
+
+    private void removeLoan(int dueEpochDay) {
+        Integer count = loansByDueDay.get(dueEpochDay);
+        if (count == null) {
+            return;     // 不是在本引擎登记的借阅
+        }
+        if (count == 1) {
+            loansByDueDay.remove(dueEpochDay);
+        } else {
+            loansByDueDay.put(dueEpochDay, count - 1);
+        }
+        activeLoans--;
+        if (dueEpochDay < overdueDay) {
+            overdueLoans--;
+        }
+    }
+
+    /**
+     * 把逾期计数推进（或回退）到指定日期：只累加两个日期之间到期的借阅
+     */
+    private void advanceOverdueDay(int todayEpochDay) {
+        if (todayEpochDay > overdueDay) {
+            for (Map.Entry<Integer, Integer> entry : loansByDueDay.subMap(overdueDay, todayEpochDay).entrySet()) {
+                overdueLoans += entry.getValue();
+            }
+        } else if (todayEpochDay < overdueDay) {
+            for (Map.Entry<Integer, Integer> entry : loansByDueDay.subMap(todayEpochDay, overdueDay).entrySet()) {
+                overdueLoans -= entry.getValue();
+            }
+        }
+        overdueDay = todayEpochDay;
+    }
+
+    private static int column(BookCategory category) {
+        return category == null ? 0 : category.ordinal() + 1;
+    }
+}
@@ -0,0 +1,242 @@
+package services;
+
+import enums.UserType;
+import interfaces.ILoanListener;
+import managers.BookManagerEnhanced;
+import managers.BookManagerV2;
+import models.Book;
+import models.LoanPolicy;
+import utils.EpochDays;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 逾期跟踪器
+ * 把所有在借图书按应还日期排成有序队列（最小堆语义的并发跳表），由借出/归还事件实时维护：
+ * - 借出、归还：O(log n)
+ * - 查询"截至某时刻的全部逾期"：只遍历队首已到期的部分，代价与逾期数量成正比，不扫描整个馆藏
+ *
+ * 用法：tracker.attach(bookManager) 后即可调用 streamOverdue(EpochDays.today()) 生成催还通知
+ */
+public class OverdueTracker implements ILoanListener {
+
+    /**
+     * 在借记录（借出时的快照，不随图书后续状态变化）
+     */
+    public static final class Loan {
+        private final Book book;
+        private final String borrowerId;
+        private final UserType borrowerType;
+        private final int dueEpochDay;
+
+        private Loan(Book book, String borrowerId, UserType borrowerType, int dueEpochDay) {
+            this.book = book;
+            this.borrowerId = borrowerId;
+            this.borrowerType = borrowerType;
+            this.dueEpochDay = dueEpochDay;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public String getBorrowerId() {
+            return borrowerId;
+        }
+
+        public UserType getBorrowerType() {
+            return borrowerType;
+        }
+
+        public Date getDueDate() {
+            return EpochDays.toDate(dueEpochDay);
+        }
+
+        public int getDueEpochDay() {
+            return dueEpochDay;
+        }
+
+        /**
+         * 计算逾期天数（规则与Book.getOverdueDays一致）
+         * @param todayEpochDay 当前日
+         * @return 逾期天数，未逾期返回0
+         */
+        public int getOverdueDays(int todayEpochDay) {
+            return Math.max(0, todayEpochDay - dueEpochDay);
+        }
+    }
+
+    // 排序规则：先按应还日，再按图书ID（同一天到期的图书不会被去重）
+    private static final Comparator<Loan> BY_DUE_DATE = Comparator
+            .comparingInt((Loan loan) -> loan.dueEpochDay)
+            .thenComparing(loan -> loan.book.getId());
+
+    // 比较用的哨兵图书（ID为空串）
+    private static final Book SENTINEL = new Book("", "", "", "");
+
+    // 按应还时间排序的在借队列
+    private final ConcurrentSkipListSet<Loan> queue = new ConcurrentSkipListSet<>(BY_DUE_DATE);
+
+    // 图书 → 当前在借记录（用于归还时定位队列元素）
+    private final ConcurrentHashMap<Book, Loan> loansByBook = new ConcurrentHashMap<>();
+
+    // ========== 注册 ==========
+
+    /**
+     * 跟踪增强版管理器中的全部图书（包括之后加入的图书），并载入当前在借记录
+     * @param bookManager 图书管理器
+     */
+    public void attach(BookManagerEnhanced bookManager) {
+        bookManager.addLoanListener(this);
+        for (Book book : bookManager.getBorrowedBooks()) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 跟踪线程安全版管理器中的全部图书（包括之后加入的图书），并载入当前在借记录
+     * @param bookManager 图书管理器
+     */
+    public void attach(BookManagerV2 bookManager) {
+        bookManager.addLoanListener(this);
+        for (Book book : bookManager.getBorrowedBooks()) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 跟踪单本图书（用于数组版管理器等没有管理器级监听的场景）
+     * @param book 图书对象
+     */
+    public void track(Book book) {
+        book.addLoanListener(this);
+        if (!book.isAvailable() && book.getDueEpochDay() != EpochDays.NONE) {
+            onBorrowed(book);
+        }
+    }
+
+    /**
+     * 停止跟踪单本图书
+     * @param book 图书对象
+     */
+    public void untrack(Book book) {
+        book.removeLoanListener(this);
+        onReturning(book);
+    }
+
+    // ========== 借阅事件（在图书锁内调用） ==========
+
+    @Override
+    public void onBorrowed(Book book) {
+        int dueEpochDay = book.getDueEpochDay();
+        if (dueEpochDay == EpochDays.NONE) {
+            return;
+        }
+        Loan loan = new Loan(book, book.getBorrowerId(), book.getBorrowerType(), dueEpochDay);
+        Loan previous = loansByBook.put(book, loan);
+        if (previous != null) {
+            queue.remove(previous);
+        }
+        queue.add(loan);
+    }
+
+    @Override
+    public void onReturning(Book book) {
+        Loan loan = loansByBook.remove(book);
+        if (loan != null) {
+            queue.remove(loan);
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 按应还日期从早到晚输出截至now已逾期的在借记录（只访问逾期部分）
+     * 流是弱一致的：遍历期间发生的借还可能反映也可能不反映在结果中
+     * @param now 当前日期
+     * @return 逾期记录流
+     */
+    public Stream<Loan> streamOverdue(Date now) {
+        return streamOverdue(EpochDays.of(now));
+    }
+
+    /**
+     * 按应还日期从早到晚输出截至指定日已逾期的在借记录（日序号版本）
+     * @param todayEpochDay 当前日
+     * @return 逾期记录流
+     */
+    public Stream<Loan> streamOverdue(int todayEpochDay) {
+        return overdueView(todayEpochDay).stream();
+    }
+
+    /**
+     * 获取截至now已逾期的图书（按应还日期从早到晚）
+     * @param now 当前日期
+     * @return 逾期图书列表
+     */
+    public List<Book> getOverdueBooks(Date now) {
+        return streamOverdue(now).map(Loan::getBook).collect(Collectors.toList());
+    }
+
+    /**
+     * 统计截至now已逾期的在借数量
+     * @param now 当前日期
+     * @return 逾期数量
+     */
+    public int countOverdue(Date now) {
+        return overdueView(EpochDays.of(now)).size();
+    }
+
+    /**
+     * 按借阅者汇总截至now的逾期罚款（批量计算，只访问逾期部分，费率取自当前借阅规则表）
+     * @param now 当前日期
+     * @return 借阅者ID → 罚款总额（元），按最早逾期的借阅者在前排列
+     */
+    public Map<String, Double> calculateFines(Date now) {
+        int today = EpochDays.of(now);
+        LoanPolicy policy = LoanPolicy.current();
+        Map<String, Long> cents = new LinkedHashMap<>();
+        streamOverdue(today).forEach(loan -> cents.merge(loan.getBorrowerId(), loan.getOverdueDays(today)
+                * policy.getDailyFineCents(loan.getBorrowerType(), loan.getBook().getCategory()), Long::sum));
+
+        Map<String, Double> fines = new LinkedHashMap<>();
+        cents.forEach((borrowerId, amount) -> fines.put(borrowerId, amount / 100.0));
+        return fines;
+    }
+
+    /**
+     * 获取最早的应还日期（可用于安排下一次催还任务）
+     * @return 最早应还日期，没有在借图书时返回null
+     */
+    public Date getEarliestDueDate() {
+        Iterator<Loan> iterator = queue.iterator();
+        return iterator.hasNext() ? iterator.next().getDueDate() : null;
+    }
+
+    /**
+     * 获取在借记录总数
+     * @return 在借数量
+     */
+    public int size() {
+        return loansByBook.size();
+    }
+
+    /**
+     * 应还日早于当前日的部分（内部方法）
+     */
+    private NavigableSet<Loan> overdueView(int todayEpochDay) {
+        // 哨兵：应还日等于当前日、图书ID为空串，排在同一天所有记录之前（当天到期不算逾期）
+        Loan bound = new Loan(SENTINEL, null, null, todayEpochDay);
+        return queue.headSet(bound, false);
+    }
+}
@@ -1,4 +1,28 @@
 package tasks;
 
-public class BorrowTask {
+import exception.LibraryException;
+import services.LibraryService;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 批量借书任务
+ */
+public class BorrowTask extends CirculationTask {
+
+    /**
+     * 构造方法
+     * @param libraryService 业务服务
+     * @param requests 同一分片内的借书请求
+     * @param shardLock 分片锁
+     */
+    public BorrowTask(LibraryService libraryService, List<CirculationRequest> requests, Lock shardLock) {
+        super(libraryService, requests, shardLock);
+    }
+
+    @Override
+    protected void apply(CirculationRequest request) throws LibraryException {
+        libraryService.borrowBook(request.getUserId(), request.getBookId());
+    }
 }
@@ -0,0 +1,328 @@
+package tasks;
+
+import services.LibraryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 批量流通流水线（开学季扫码批量借还）
+ * 1. 提交：borrow/returnBook 把请求放入队列，立即返回future
+ * 2. 分发：分发线程每次取出队列中积压的请求（最多maxBatchSize个），按图书ID哈希分到各分片
+ * 3. 执行：每个分片的批次由工作线程池按到达顺序串行执行，批内连续的同类请求合并为一个
+ *    BorrowTask/ReturnTask，在一次分片临界区内办理完毕并逐个完成future
+ *
+ * 同一本书的请求总是落在同一分片，因此按提交顺序生效；不同分片并行处理
+ */
+public class CirculationPipeline implements AutoCloseable {
+    // 默认分片数（2的幂）
+    public static final int DEFAULT_SHARDS = 16;
+    // 默认单批最大请求数
+    public static final int DEFAULT_MAX_BATCH_SIZE = 512;
+
+    private final LibraryService libraryService;
+    private final Shard[] shards;
+    private final int maxBatchSize;
+    private final BlockingQueue<CirculationRequest> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    // 统计信息
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder requestCount = new LongAdder();
+
+    /**
+     * 单个分片：分片锁 + 待执行批次队列
+     * scheduled标记保证同一分片同一时刻最多一个工作线程在执行，批次按入队顺序处理
+     */
+    private static class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final ConcurrentLinkedQueue<List<CirculationRequest>> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    /**
+     * 构造方法（使用默认分片数、批大小，工作线程数为CPU核数）
+     * @param libraryService 业务服务（需配置图书和用户管理器）
+     */
+    public CirculationPipeline(LibraryService libraryService) {
+        this(libraryService, DEFAULT_SHARDS, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * 构造方法
+     * @param libraryService 业务服务（需配置图书和用户管理器）
+     * @param shardCount 分片数（向上取整为2的幂）
+     * @param workerThreads 工作线程数
+     * @param maxBatchSize 单次分发的最大请求数
+     */
+    public CirculationPipeline(LibraryService libraryService, int shardCount, int workerThreads, int maxBatchSize) {
+        if (shardCount <= 0 || workerThreads <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("分片数、线程数和批大小必须大于0");
+        }
+        this.libraryService = libraryService;
+        this.maxBatchSize = maxBatchSize;
+
+        int size = 1;
+        while (size < shardCount) {
+            size <<= 1;
+        }
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "circulation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "circulation-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    // ========== 提交请求 ==========
+
+    /**
+     * 提交借书请求
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @return 办理结果
+     */
+    public CompletableFuture<CirculationResult> borrow(String userId, String bookId) {
+        return submit(new CirculationRequest(CirculationRequest.Type.BORROW, userId, bookId));
+    }
+
+    /**
+     * 提交还书请求
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     * @return 办理结果
+     */
+    public CompletableFuture<CirculationResult> returnBook(String userId, String bookId) {
+        return submit(new CirculationRequest(CirculationRequest.Type.RETURN, userId, bookId));
+    }
+
+    /**
+     * 提交请求
+     * @param request 流通请求
+     * @return 办理结果
+     */
+    public CompletableFuture<CirculationResult> submit(CirculationRequest request) {
+        if (closed) {
+            request.getFuture().completeExceptionally(new IllegalStateException("流水线已关闭"));
+            return request.getFuture();
+        }
+        queue.offer(request);
+        // 与close()竞争：关闭后的最后一次清理可能已经结束，撤回请求
+        if (closed && queue.remove(request)) {
+            request.getFuture().completeExceptionally(new IllegalStateException("流水线已关闭"));
+        }
+        return request.getFuture();
+    }
+
+    // ========== 分发与执行（内部方法） ==========
+
+    /**
+     * 分发线程主循环：阻塞等待第一个请求，再一次取走积压的请求
+     */
+    private void dispatchLoop() {
+        List<CirculationRequest> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            dispatch(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 把一批请求按分片拆分并交给各分片执行
+     */
+    private void dispatch(List<CirculationRequest> batch) {
+        List<List<CirculationRequest>> groups = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            groups.add(null);
+        }
+        for (CirculationRequest request : batch) {
+            int shard = shardOf(request.getBookId());
+            List<CirculationRequest> group = groups.get(shard);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.set(shard, group);
+            }
+            group.add(request);
+        }
+
+        batchCount.increment();
+        requestCount.add(batch.size());
+        for (int i = 0; i < shards.length; i++) {
+            List<CirculationRequest> group = groups.get(i);
+            if (group != null) {
+                Shard shard = shards[i];
+                shard.pending.offer(group);
+                schedule(shard);
+            }
+        }
+    }
+
+    /**
+     * 分片还没有工作线程在处理时，提交一个处理任务
+     */
+    private void schedule(Shard shard) {
+        if (shard.scheduled.compareAndSet(false, true)) {
+            workers.execute(() -> drainShard(shard));
+        }
+    }
+
+    /**
+     * 依次执行分片中积压的批次（工作线程）
+     */
+    private void drainShard(Shard shard) {
+        do {
+            List<CirculationRequest> group;
+            while ((group = shard.pending.poll()) != null) {
+                runGroup(shard, group);
+            }
+            shard.scheduled.set(false);
+            // 释放标记之后可能有新批次入队，由当前线程继续处理（不重新提交，关闭时不会被线程池拒绝）
+        } while (!shard.pending.isEmpty() && shard.scheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * 把分片批次按连续的同类请求切分为借书/还书任务并执行
+     */
+    private void runGroup(Shard shard, List<CirculationRequest> group) {
+        int start = 0;
+        while (start < group.size()) {
+            CirculationRequest.Type type = group.get(start).getType();
+            int end = start + 1;
+            while (end < group.size() && group.get(end).getType() == type) {
+                end++;
+            }
+            List<CirculationRequest> run = group.subList(start, end);
+            CirculationTask task = type == CirculationRequest.Type.BORROW
+                    ? new BorrowTask(libraryService, run, shard.lock)
+                    : new ReturnTask(libraryService, run, shard.lock);
+            try {
+                task.call();
+            } catch (RuntimeException e) {
+                for (CirculationRequest request : run) {
+                    request.getFuture().completeExceptionally(e);
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * 计算图书ID所属分片（内部方法）
+     */
+    private int shardOf(String bookId) {
+        int h = bookId == null ? 0 : bookId.hashCode();
+        h ^= h >>> 16;
+        return h & (shards.length - 1);
+    }
+
+    // ========== 关闭与统计 ==========
+
+    /**
+     * 关闭流水线：停止接收新请求，办理完已提交的请求后返回
+     * 等待期间被中断时恢复中断标记；超时或被中断时未办理的请求以异常完成
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.interrupt();
+        boolean interrupted = false;
+        while (dispatcher.isAlive()) {
+            try {
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                // 分发线程已被中断，很快退出；继续等待以免与下面的清理交错分发
+                interrupted = true;
+            }
+        }
+
+        // 分发线程退出后队列中剩余的请求
+        List<CirculationRequest> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            dispatch(remaining);
+        }
+
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("流水线关闭超时，未办理的请求已取消");
+                abandonPending();
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+            abandonPending();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止工作线程，并以异常完成各分片中尚未办理的请求（内部方法）
+     */
+    private void abandonPending() {
+        workers.shutdownNow();
+        IllegalStateException cancelled = new IllegalStateException("流水线已关闭，请求未办理");
+        for (Shard shard : shards) {
+            List<CirculationRequest> group;
+            while ((group = shard.pending.poll()) != null) {
+                for (CirculationRequest request : group) {
+                    request.getFuture().completeExceptionally(cancelled);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取已分发的批次数
+     * @return 批次数
+     */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * 获取已分发的请求数
+     * @return 请求数
+     */
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    /**
+     * 获取平均批大小
+     * @return 平均每批请求数
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.sum();
+        return batches == 0 ? 0.0 : (double) requestCount.sum() / batches;
+    }
+}
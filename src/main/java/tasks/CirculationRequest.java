@@ -0,0 +1,55 @@
+package tasks;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 流通请求（一次借书或还书）
+ * 由扫码批次或业务界面提交，处理完成后通过future返回结果
+ */
+public class CirculationRequest {
+    /**
+     * 请求类型
+     */
+    public enum Type {
+        BORROW,   // 借书
+        RETURN    // 还书
+    }
+
+    private final Type type;
+    private final String userId;
+    private final String bookId;
+    private final CompletableFuture<CirculationResult> future;
+
+    /**
+     * 构造方法
+     * @param type 请求类型
+     * @param userId 用户ID
+     * @param bookId 图书ID
+     */
+    public CirculationRequest(Type type, String userId, String bookId) {
+        this.type = type;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.future = new CompletableFuture<>();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    /**
+     * 获取处理结果的future
+     * @return 处理完成后得到结果；处理过程出现非预期异常时异常完成
+     */
+    public CompletableFuture<CirculationResult> getFuture() {
+        return future;
+    }
+}
@@ -0,0 +1,76 @@
+package tasks;
+
+import exception.LibraryException;
+
+/**
+ * 流通请求的处理结果
+ */
+public class CirculationResult {
+    private final CirculationRequest.Type type;
+    private final String userId;
+    private final String bookId;
+    private final boolean success;
+    private final String errorCode;    // 失败时的错误代码（如LIB_2001），成功时为null
+    private final String message;      // 失败原因，成功时为null
+
+    private CirculationResult(CirculationRequest request, boolean success, String errorCode, String message) {
+        this.type = request.getType();
+        this.userId = request.getUserId();
+        this.bookId = request.getBookId();
+        this.success = success;
+        this.errorCode = errorCode;
+        this.message = message;
+    }
+
+    /**
+     * 创建成功结果
+     * @param request 对应的请求
+     * @return 成功结果
+     */
+    public static CirculationResult success(CirculationRequest request) {
+        return new CirculationResult(request, true, null, null);
+    }
+
+    /**
+     * 创建失败结果
+     * @param request 对应的请求
+     * @param e 业务异常
+     * @return 失败结果
+     */
+    public static CirculationResult failure(CirculationRequest request, LibraryException e) {
+        return new CirculationResult(request, false, e.getErrorCode(), e.getMessage());
+    }
+
+    public CirculationRequest.Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getBookId() {
+        return bookId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        String action = type == CirculationRequest.Type.BORROW ? "借书" : "还书";
+        if (success) {
+            return String.format("%s成功 (用户: %s, 图书: %s)", action, userId, bookId);
+        }
+        return String.format("%s失败 (用户: %s, 图书: %s) [%s] %s", action, userId, bookId, errorCode, message);
+    }
+}
@@ -0,0 +1,104 @@
+package tasks;
+
+import exception.LibraryException;
+import persistence.FilePersistenceManager;
+import services.LibraryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 批量流通任务基类
+ * 一个任务处理同一分片内的一批请求：整批在一次分片临界区内按提交顺序依次办理，
+ * 释放分片锁后等待整批的借还记录落盘（一次组提交），再逐个完成future，最后返回整批的结果列表
+ *
+ * 分片锁保证同一分片的批次不会交错执行（同一本书的借、还按到达顺序生效）；
+ * 单个请求内部的用户/图书加锁仍由LibraryService负责
+ */
+public abstract class CirculationTask implements Callable<List<CirculationResult>> {
+    protected final LibraryService libraryService;
+    private final List<CirculationRequest> requests;
+    private final Lock shardLock;
+
+    /**
+     * 构造方法
+     * @param libraryService 业务服务（需配置图书和用户管理器）
+     * @param requests 同一分片内的请求（按到达顺序）
+     * @param shardLock 分片锁
+     */
+    protected CirculationTask(LibraryService libraryService, List<CirculationRequest> requests, Lock shardLock) {
+        this.libraryService = libraryService;
+        this.requests = requests;
+        this.shardLock = shardLock;
+    }
+
+    /**
+     * 办理单个请求
+     * @param request 请求
+     * @throws LibraryException 业务失败（记录为失败结果，不影响同批其他请求）
+     */
+    protected abstract void apply(CirculationRequest request) throws LibraryException;
+
+    @Override
+    public List<CirculationResult> call() {
+        int size = requests.size();
+        CirculationResult[] outcomes = new CirculationResult[size];
+        RuntimeException[] errors = new RuntimeException[size];
+
+        // 整批共用一个延迟确认：批内请求不各自在分片锁内等待组提交，释放分片锁后一次等待落盘
+        boolean deferred = FilePersistenceManager.deferDurability();
+        RuntimeException durabilityFailure = null;
+        try {
+            shardLock.lock();
+            try {
+                for (int i = 0; i < size; i++) {
+                    CirculationRequest request = requests.get(i);
+                    try {
+                        apply(request);
+                        outcomes[i] = CirculationResult.success(request);
+                    } catch (LibraryException e) {
+                        outcomes[i] = CirculationResult.failure(request, e);
+                    } catch (RuntimeException e) {
+                        errors[i] = e;
+                    }
+                }
+            } finally {
+                shardLock.unlock();
+            }
+        } finally {
+            if (deferred) {
+                try {
+                    FilePersistenceManager.awaitDeferredDurability();
+                } catch (RuntimeException e) {
+                    durabilityFailure = e;
+                }
+            }
+        }
+
+        // 记录落盘之后才完成future，报告的成功一定已经持久化
+        List<CirculationResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            CirculationRequest request = requests.get(i);
+            CirculationResult result = outcomes[i];
+            if (errors[i] != null) {
+                request.getFuture().completeExceptionally(errors[i]);
+            } else if (durabilityFailure != null && result.isSuccess()) {
+                request.getFuture().completeExceptionally(durabilityFailure);
+            } else {
+                results.add(result);
+                request.getFuture().complete(result);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 获取本批请求数
+     * @return 请求数
+     */
+    public int getBatchSize() {
+        return requests.size();
+    }
+}
@@ -1,4 +1,28 @@
 package tasks;
 
-public class ReturnTask {
+import exception.LibraryException;
+import services.LibraryService;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 批量还书任务
+ */
+public class ReturnTask extends CirculationTask {
+
+    /**
+     * 构造方法
+     * @param libraryService 业务服务
+     * @param requests 同一分片内的还书请求
+     * @param shardLock 分片锁
+     */
+    public ReturnTask(LibraryService libraryService, List<CirculationRequest> requests, Lock shardLock) {
+        super(libraryService, requests, shardLock);
+    }
+
+    @Override
+    protected void apply(CirculationRequest request) throws LibraryException {
+        libraryService.returnBook(request.getUserId(), request.getBookId());
+    }
 }
@@ -0,0 +1,108 @@
+package utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+/**
+ * 日序号工具类
+ * 借阅日期统一表示为int日序号（自1970-01-01起的天数，按系统默认时区划分日期），
+ * 日期加减和比较都是整数运算，借还热点路径上不需要创建Date/Calendar对象
+ *
+ * 与Date/LocalDate之间的转换只在界面显示、持久化等边界处进行
+ */
+public final class EpochDays {
+    /**
+     * 表示"没有日期"（未借出图书的借阅日期、应还日期）
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // 当天的缓存：[dayStartMillis, dayEndMillis) 区间内today()直接返回缓存值
+    private static volatile CachedDay cachedDay = new CachedDay(LocalDate.now(ZONE).toEpochDay());
+
+    private EpochDays() {
+    }
+
+    /**
+     * 缓存的当天信息（不可变，整体替换）
+     */
+    private static final class CachedDay {
+        final int epochDay;
+        final long startMillis;
+        final long endMillis;
+
+        CachedDay(long epochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            this.epochDay = (int) epochDay;
+            this.startMillis = date.atStartOfDay(ZONE).toInstant().toEpochMilli();
+            this.endMillis = date.plusDays(1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * 获取今天的日序号（同一天内的调用不创建任何对象）
+     * @return 今天的日序号
+     */
+    public static int today() {
+        long now = System.currentTimeMillis();
+        CachedDay day = cachedDay;
+        if (now >= day.startMillis && now < day.endMillis) {
+            return day.epochDay;
+        }
+        day = new CachedDay(Instant.ofEpochMilli(now).atZone(ZONE).toLocalDate().toEpochDay());
+        cachedDay = day;
+        return day.epochDay;
+    }
+
+    /**
+     * 把Date转换为日序号
+     * @param date 日期（为null时返回NONE）
+     * @return 日序号
+     */
+    public static int of(Date date) {
+        if (date == null) {
+            return NONE;
+        }
+        long millis = date.getTime();
+        CachedDay day = cachedDay;
+        if (millis >= day.startMillis && millis < day.endMillis) {
+            return day.epochDay;
+        }
+        return (int) Instant.ofEpochMilli(millis).atZone(ZONE).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * 把LocalDate转换为日序号
+     * @param date 日期（为null时返回NONE）
+     * @return 日序号
+     */
+    public static int of(LocalDate date) {
+        return date == null ? NONE : (int) date.toEpochDay();
+    }
+
+    /**
+     * 把日序号转换为Date（当天零点）
+     * @param epochDay 日序号
+     * @return 日期，NONE时返回null
+     */
+    public static Date toDate(int epochDay) {
+        if (epochDay == NONE) {
+            return null;
+        }
+        ZonedDateTime start = LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE);
+        return Date.from(start.toInstant());
+    }
+
+    /**
+     * 把日序号转换为LocalDate
+     * @param epochDay 日序号
+     * @return 日期，NONE时返回null
+     */
+    public static LocalDate toLocalDate(int epochDay) {
+        return epochDay == NONE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,154 @@
+package utils;
+
+/**
+ * ISBN/ISSN规范化工具类
+ * 把各种书写形式的书号统一转换为EAN-13条码对应的long键（13位十进制数），并校验校验位：
+ * - ISBN-13：978/979开头的13位数字，按EAN-13规则校验
+ * - ISBN-10：9位数字加校验位（0-9或X，模11），转换为978前缀的EAN-13
+ * - ISSN：7位数字加校验位（0-9或X，模11），转换为977前缀的EAN-13（977 + 7位 + 00 + 校验位）
+ * 连字符、空格会被忽略；扫描枪读到的EAN-13条码与手工录入的书号得到同一个键
+ *
+ * 键只是数值运算的结果，建立和查找索引时不需要计算字符串哈希
+ */
+public final class Isbn {
+    /**
+     * 无效书号（格式错误或校验位不符）
+     */
+    public static final long INVALID = -1L;
+
+    private Isbn() {
+    }
+
+    /**
+     * 把书号转换为EAN-13键
+     * @param text ISBN-13、ISBN-10、ISSN或EAN-13条码（可含连字符、空格）
+     * @return EAN-13键，无效时返回INVALID
+     */
+    public static long toKey(String text) {
+        if (text == null) {
+            return INVALID;
+        }
+        // 提取数字（最后一位允许X），不创建中间字符串
+        long digits = 0;
+        int length = 0;
+        boolean checkX = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (checkX || length == 13) {
+                    return INVALID;
+                }
+                digits = digits * 10 + (c - '0');
+                length++;
+            } else if (c == 'X' || c == 'x') {
+                if (checkX) {
+                    return INVALID;
+                }
+                checkX = true;
+                length++;
+            } else if (c != '-' && c != ' ') {
+                return INVALID;
+            }
+        }
+
+        switch (length) {
+            case 13:
+                return !checkX && ean13CheckDigit(digits / 10) == digits % 10 ? digits : INVALID;
+            case 10:
+                return mod11Valid(digits, 9, checkX) ? withEan13CheckDigit(978_000_000_000L + body(digits, checkX))
+                        : INVALID;
+            case 8:
+                return mod11Valid(digits, 7, checkX) ? withEan13CheckDigit(977_000_000_000L + body(digits, checkX) * 100)
+                        : INVALID;
+            default:
+                return INVALID;
+        }
+    }
+
+    /**
+     * 检查书号是否有效
+     * @param text 书号
+     * @return true-格式和校验位都正确
+     */
+    public static boolean isValid(String text) {
+        return toKey(text) != INVALID;
+    }
+
+    /**
+     * 比较两个书号文本是否相同（忽略连字符、空格和大小写，用于无效书号的兜底比较）
+     * @param a 书号
+     * @param b 书号
+     * @return true-相同
+     */
+    public static boolean sameText(String a, String b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        int i = 0;
+        int j = 0;
+        while (true) {
+            while (i < a.length() && (a.charAt(i) == '-' || a.charAt(i) == ' ')) {
+                i++;
+            }
+            while (j < b.length() && (b.charAt(j) == '-' || b.charAt(j) == ' ')) {
+                j++;
+            }
+            if (i == a.length() || j == b.length()) {
+                return i == a.length() && j == b.length();
+            }
+            if (Character.toUpperCase(a.charAt(i)) != Character.toUpperCase(b.charAt(j))) {
+                return false;
+            }
+            i++;
+            j++;
+        }
+    }
+
+    /**
+     * 把EAN-13键格式化为13位数字
+     * @param key EAN-13键
+     * @return 13位数字字符串，无效键返回null
+     */
+    public static String format(long key) {
+        return key == INVALID ? null : String.format("%013d", key);
+    }
+
+    // ========== 内部方法 ==========
+
+    /**
+     * 去掉校验位后的数字部分
+     */
+    private static long body(long digits, boolean checkX) {
+        return checkX ? digits : digits / 10;
+    }
+
+    /**
+     * 模11校验（ISBN-10、ISSN）：权重从 bodyLength+1 递减到2，加上校验位后总和为11的倍数
+     */
+    private static boolean mod11Valid(long digits, int bodyLength, boolean checkX) {
+        long body = body(digits, checkX);
+        int check = checkX ? 10 : (int) (digits % 10);
+        int sum = check;
+        for (int weight = 2; weight <= bodyLength + 1; weight++) {
+            sum += (int) (body % 10) * weight;
+            body /= 10;
+        }
+        return sum % 11 == 0;
+    }
+
+    /**
+     * 计算EAN-13校验位：12位数字从右往左交替乘3和1
+     */
+    private static long ean13CheckDigit(long first12) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (int) (first12 % 10) * (i % 2 == 0 ? 3 : 1);
+            first12 /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static long withEan13CheckDigit(long first12) {
+        return first12 * 10 + ean13CheckDigit(first12);
+    }
+}